@@ -0,0 +1,99 @@
+package ceng.ceng351.carpoolingdb.benchmarks;
+
+import ceng.ceng351.carpoolingdb.CarPoolingSystem;
+import ceng.ceng351.carpoolingdb.FileOperations;
+import ceng.ceng351.carpoolingdb.ICarPoolingSystem;
+import ceng.ceng351.carpoolingdb.InMemoryCarPoolingSystem;
+import ceng.ceng351.carpoolingdb.QueryResult;
+import ceng.ceng351.carpoolingdb.Trip;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same queries against CarPoolingSystem on H2 and against InMemoryCarPoolingSystem, both
+ * loaded with the bundled data files: a point lookup, an index seek, a join and two aggregates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BackendBenchmark {
+
+    @Param({"h2", "inMemory"})
+    public String backend;
+
+    private String url;
+    private Connection connection;
+    private ICarPoolingSystem carPoolingSystem;
+
+    @Setup(Level.Trial)
+    public void load() throws SQLException {
+        if (backend.equals("h2")) {
+            url = BenchmarkDatabase.newUrl();
+            connection = BenchmarkDatabase.connect(url);
+            carPoolingSystem = new CarPoolingSystem();
+        } else {
+            carPoolingSystem = new InMemoryCarPoolingSystem();
+        }
+
+        carPoolingSystem.initialize(connection);
+        carPoolingSystem.dropTables();
+        carPoolingSystem.createTables();
+        carPoolingSystem.insertParticipants(FileOperations.readParticipantsFile());
+        carPoolingSystem.insertPassengers(FileOperations.readPassengersFile());
+        carPoolingSystem.insertDrivers(FileOperations.readDriversFile());
+        carPoolingSystem.insertCars(FileOperations.readCarsFile());
+        carPoolingSystem.insertTrips(FileOperations.readTripsFile());
+        carPoolingSystem.insertBookings(FileOperations.readBookingsFile());
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws SQLException {
+        if (connection != null) {
+            connection.close();
+            BenchmarkDatabase.destroy(url);
+        }
+    }
+
+    @Benchmark
+    public QueryResult.PassengerPINNameAgeMembershipStatus[] passengersInTrip() {
+        return carPoolingSystem.getPassengerInGivenTrip(1);
+    }
+
+    @Benchmark
+    public Trip[] tripsFromToCitiesOnSpecificDate() {
+        return carPoolingSystem.getTripsFromToCitiesOnSpecificDate("New York", "Chicago", "2025-01-12");
+    }
+
+    @Benchmark
+    public QueryResult.PassengerPINNameAgeMembershipStatus[] passengersWithBookingsToAllTripsForCity() {
+        return carPoolingSystem.getPassengersWithBookingsToAllTripsForCity("Seattle");
+    }
+
+    @Benchmark
+    public QueryResult.DriverScoreRatingNumberOfBookingsPIN[] driversScores() {
+        return carPoolingSystem.getDriversScores();
+    }
+
+    @Benchmark
+    public QueryResult.FullCars[] fullCars() {
+        return carPoolingSystem.getFullCars();
+    }
+}
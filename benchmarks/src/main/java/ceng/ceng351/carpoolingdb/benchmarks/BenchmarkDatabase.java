@@ -0,0 +1,34 @@
+package ceng.ceng351.carpoolingdb.benchmarks;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opens a private in-memory H2 database per benchmark trial so trials never see each other's rows.
+ */
+final class BenchmarkDatabase {
+
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private static final String user = "sa";          // H2 default username
+    private static final String password = "";        // H2 default password
+
+    private BenchmarkDatabase() {
+    }
+
+    static String newUrl() {
+        return "jdbc:h2:mem:carpoolingbench" + COUNTER.incrementAndGet() + ";DB_CLOSE_DELAY=-1";
+    }
+
+    static Connection connect(String url) throws SQLException {
+        return DriverManager.getConnection(url, user, password);
+    }
+
+    static void destroy(String url) throws SQLException {
+        try (Connection connection = connect(url)) {
+            connection.createStatement().execute("DROP ALL OBJECTS");
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package ceng.ceng351.carpoolingdb.benchmarks;
+
+import ceng.ceng351.carpoolingdb.Booking;
+import ceng.ceng351.carpoolingdb.Car;
+import ceng.ceng351.carpoolingdb.CarPoolingSystem;
+import ceng.ceng351.carpoolingdb.Driver;
+import ceng.ceng351.carpoolingdb.FileOperations;
+import ceng.ceng351.carpoolingdb.Participant;
+import ceng.ceng351.carpoolingdb.Passenger;
+import ceng.ceng351.carpoolingdb.Trip;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows/second of the insert* methods: batchSize = 0 is the original one-executeUpdate-per-row loop,
+ * any other value is the batched, chunk-committed path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InsertBenchmark {
+
+    private static final int PARTICIPANT_ROWS = 10_000;
+    // Rows in the bundled data files: 1000 + 700 + 400 + 601 + 1698 + 2125
+    private static final int BUNDLED_ROWS = 6_524;
+
+    @Param({"0", "100", "1000"})
+    public int batchSize;
+
+    private String url;
+    private Connection connection;
+    private CarPoolingSystem carPoolingSystem;
+
+    private Participant[] syntheticParticipants;
+    private Participant[] participants;
+    private Passenger[] passengers;
+    private Driver[] drivers;
+    private Car[] cars;
+    private Trip[] trips;
+    private Booking[] bookings;
+
+    @Setup(Level.Trial)
+    public void openDatabase() throws SQLException {
+        url = BenchmarkDatabase.newUrl();
+        connection = BenchmarkDatabase.connect(url);
+        carPoolingSystem = new CarPoolingSystem();
+        carPoolingSystem.initialize(connection);
+        carPoolingSystem.setBatchSize(batchSize);
+
+        syntheticParticipants = new Participant[PARTICIPANT_ROWS];
+        for (int i = 0; i < PARTICIPANT_ROWS; i++) {
+            syntheticParticipants[i] = new Participant(i + 1, "Participant " + (i + 1), 18 + i % 60);
+        }
+
+        participants = FileOperations.readParticipantsFile();
+        passengers = FileOperations.readPassengersFile();
+        drivers = FileOperations.readDriversFile();
+        cars = FileOperations.readCarsFile();
+        trips = FileOperations.readTripsFile();
+        bookings = FileOperations.readBookingsFile();
+    }
+
+    @Setup(Level.Invocation)
+    public void recreateTables() {
+        carPoolingSystem.dropTables();
+        carPoolingSystem.createTables();
+    }
+
+    @TearDown(Level.Trial)
+    public void closeDatabase() throws SQLException {
+        connection.close();
+        BenchmarkDatabase.destroy(url);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PARTICIPANT_ROWS)
+    public int insertParticipants() {
+        return carPoolingSystem.insertParticipants(syntheticParticipants);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BUNDLED_ROWS)
+    public int loadBundledDataset() {
+        return carPoolingSystem.insertParticipants(participants)
+                + carPoolingSystem.insertPassengers(passengers)
+                + carPoolingSystem.insertDrivers(drivers)
+                + carPoolingSystem.insertCars(cars)
+                + carPoolingSystem.insertTrips(trips)
+                + carPoolingSystem.insertBookings(bookings);
+    }
+}
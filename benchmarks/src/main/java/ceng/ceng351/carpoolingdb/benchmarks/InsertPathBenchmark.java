@@ -0,0 +1,108 @@
+package ceng.ceng351.carpoolingdb.benchmarks;
+
+import ceng.ceng351.carpoolingdb.CarPoolingSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each of the six insert* methods on its own, inserting every row of one ScaledDataset table.
+ * Before each call the tables are recreated and the tables it references are filled (with
+ * batched inserts, outside the measurement), so the call pays for its foreign key checks but
+ * not for its parents' rows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class InsertPathBenchmark {
+
+    // Tables in insertion order: each one references only tables before it
+    private static final String[] TABLES = {"Participants", "Passengers", "Drivers", "Cars", "Trips", "Bookings"};
+
+    private static final int PARENT_BATCH_SIZE = 1000;
+
+    @Param({"Participants", "Passengers", "Drivers", "Cars", "Trips", "Bookings"})
+    public String table;
+
+    @Param({"0", "1000"})
+    public int batchSize;
+
+    @Param({"1", "10"})
+    public int scale;
+
+    private String url;
+    private Connection connection;
+    private CarPoolingSystem carPoolingSystem;
+    private ScaledDataset dataset;
+
+    @Setup(Level.Trial)
+    public void openDatabase() throws SQLException {
+        url = BenchmarkDatabase.newUrl();
+        connection = BenchmarkDatabase.connect(url);
+        carPoolingSystem = new CarPoolingSystem();
+        carPoolingSystem.initialize(connection);
+        dataset = new ScaledDataset(scale);
+    }
+
+    @Setup(Level.Iteration)
+    public void loadParents() {
+        carPoolingSystem.dropTables();
+        carPoolingSystem.createTables();
+
+        carPoolingSystem.setBatchSize(PARENT_BATCH_SIZE);
+        for (String parent : TABLES) {
+            if (parent.equals(table)) {
+                break;
+            }
+            insert(parent);
+        }
+        carPoolingSystem.setBatchSize(batchSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeDatabase() throws SQLException {
+        connection.close();
+        BenchmarkDatabase.destroy(url);
+    }
+
+    @Benchmark
+    public int insert() {
+        return insert(table);
+    }
+
+    private int insert(String tableName) {
+        switch (tableName) {
+            case "Participants":
+                return carPoolingSystem.insertParticipants(dataset.participants);
+            case "Passengers":
+                return carPoolingSystem.insertPassengers(dataset.passengers);
+            case "Drivers":
+                return carPoolingSystem.insertDrivers(dataset.drivers);
+            case "Cars":
+                return carPoolingSystem.insertCars(dataset.cars);
+            case "Trips":
+                return carPoolingSystem.insertTrips(dataset.trips);
+            case "Bookings":
+                return carPoolingSystem.insertBookings(dataset.bookings);
+            default:
+                throw new IllegalArgumentException("Unknown table: " + tableName);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ceng.ceng351.carpoolingdb.benchmarks;
+
+import ceng.ceng351.carpoolingdb.QueryResult;
+import ceng.ceng351.carpoolingdb.Trip;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/**
+ * The original row readers, which look every column up by label on every row, kept as the
+ * baseline for RowDecodeBenchmark.
+ */
+final class LabelReaders {
+
+    private LabelReaders() {
+    }
+
+    static Trip readTrip(ResultSet resultSet) throws SQLException {
+        int tripEpochDay = (int) resultSet.getObject("date", LocalDate.class).toEpochDay();
+        String tripDeparture = resultSet.getString("departure");
+        String tripDestination = resultSet.getString("destination");
+        int carID = resultSet.getInt("CarID");
+        int tripID = resultSet.getInt("TripID");
+        int numSeatsAvailable = resultSet.getInt("num_seats_available");
+
+        return new Trip(tripID, carID, tripEpochDay, tripDeparture, tripDestination, numSeatsAvailable);
+    }
+
+    static QueryResult.PassengerPINNameAgeMembershipStatus readPassenger(ResultSet resultSet) throws SQLException {
+        String pName = resultSet.getString("p_name");
+        int pin = resultSet.getInt("PIN");
+        int age = resultSet.getInt("age");
+        String membershipStatus = resultSet.getString("membership_status");
+
+        return new QueryResult.PassengerPINNameAgeMembershipStatus(pin, pName, age, membershipStatus);
+    }
+}
@@ -0,0 +1,101 @@
+package ceng.ceng351.carpoolingdb.benchmarks;
+
+import ceng.ceng351.carpoolingdb.CarPoolingSystem;
+import ceng.ceng351.carpoolingdb.ICarPoolingSystem;
+import ceng.ceng351.carpoolingdb.InMemoryCarPoolingSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ICarPoolingSystem methods that change the database: deleteDriversWithNoCars(),
+ * updateDriverRatings(), createTables() and dropTables(). A second call would find nothing left to
+ * do, so each call is timed once (single shot) on freshly loaded or freshly dropped tables; the
+ * reload is not part of the measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class MutationBenchmark {
+
+    @Param({"h2", "inMemory"})
+    public String backend;
+
+    @Param({"1", "10"})
+    public int scale;
+
+    private String url;
+    private Connection connection;
+    private ICarPoolingSystem carPoolingSystem;
+    private ScaledDataset dataset;
+
+    @Setup(Level.Trial)
+    public void open() throws SQLException {
+        if (backend.equals("h2")) {
+            url = BenchmarkDatabase.newUrl();
+            connection = BenchmarkDatabase.connect(url);
+            carPoolingSystem = new CarPoolingSystem();
+        } else {
+            carPoolingSystem = new InMemoryCarPoolingSystem();
+        }
+
+        carPoolingSystem.initialize(connection);
+        dataset = new ScaledDataset(scale);
+    }
+
+    // Single shot: one call per iteration, so this runs before every call
+    @Setup(Level.Iteration)
+    public void prepareTables(BenchmarkParams params) {
+        if (params.getBenchmark().endsWith(".createTables")) {
+            carPoolingSystem.dropTables();
+        } else {
+            dataset.load(carPoolingSystem);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws SQLException {
+        if (connection != null) {
+            connection.close();
+            BenchmarkDatabase.destroy(url);
+        }
+    }
+
+    @Benchmark
+    public int deleteDriversWithNoCars() {
+        return carPoolingSystem.deleteDriversWithNoCars();
+    }
+
+    @Benchmark
+    public int updateDriverRatings() {
+        return carPoolingSystem.updateDriverRatings();
+    }
+
+    @Benchmark
+    public int dropTables() {
+        return carPoolingSystem.dropTables();
+    }
+
+    @Benchmark
+    public int createTables() {
+        return carPoolingSystem.createTables();
+    }
+}
@@ -0,0 +1,27 @@
+package ceng.ceng351.carpoolingdb.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs benchmarks like org.openjdk.jmh.Main, taking the same command line, but always with the GC
+ * profiler attached so every result comes with its allocation rate and bytes per operation:
+ *
+ *   java -cp target/benchmarks.jar ceng.ceng351.carpoolingdb.benchmarks.ProfiledRunner QueryBenchmark -p scale=10
+ */
+public final class ProfiledRunner {
+
+    private ProfiledRunner() {
+    }
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
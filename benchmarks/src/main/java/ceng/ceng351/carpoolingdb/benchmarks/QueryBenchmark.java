@@ -0,0 +1,168 @@
+package ceng.ceng351.carpoolingdb.benchmarks;
+
+import ceng.ceng351.carpoolingdb.Car;
+import ceng.ceng351.carpoolingdb.CarPoolingSystem;
+import ceng.ceng351.carpoolingdb.Driver;
+import ceng.ceng351.carpoolingdb.ICarPoolingSystem;
+import ceng.ceng351.carpoolingdb.InMemoryCarPoolingSystem;
+import ceng.ceng351.carpoolingdb.Participant;
+import ceng.ceng351.carpoolingdb.Passenger;
+import ceng.ceng351.carpoolingdb.QueryResult;
+import ceng.ceng351.carpoolingdb.Trip;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every read-only ICarPoolingSystem method, on a ScaledDataset loaded once per trial, with the
+ * arguments Evaluation uses. None of them writes, so all benchmarks share one loaded database.
+ * The write and schema methods are in MutationBenchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+
+    private static final String CITY = "New York";
+    private static final String CITY_CHICAGO = "Chicago";
+    private static final String CITY_SEATTLE = "Seattle";
+    private static final String DATE_NY_C = "2024-12-07";
+    private static final int DRIVER_PIN = 464159;
+    private static final String START_DATE = "2024-12-05";
+    private static final String END_DATE = "2024-12-15";
+    private static final int GIVEN_TRIP_ID = 1698;
+
+    @Param({"h2", "inMemory"})
+    public String backend;
+
+    @Param({"1", "10"})
+    public int scale;
+
+    private String url;
+    private Connection connection;
+    private ICarPoolingSystem carPoolingSystem;
+
+    @Setup(Level.Trial)
+    public void load() throws SQLException {
+        if (backend.equals("h2")) {
+            url = BenchmarkDatabase.newUrl();
+            connection = BenchmarkDatabase.connect(url);
+            carPoolingSystem = new CarPoolingSystem();
+        } else {
+            carPoolingSystem = new InMemoryCarPoolingSystem();
+        }
+
+        carPoolingSystem.initialize(connection);
+        new ScaledDataset(scale).load(carPoolingSystem);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws SQLException {
+        if (connection != null) {
+            connection.close();
+            BenchmarkDatabase.destroy(url);
+        }
+    }
+
+    @Benchmark
+    public Driver[] allDrivers() {
+        return carPoolingSystem.getAllDrivers();
+    }
+
+    @Benchmark
+    public Participant[] bothPassengersAndDrivers() {
+        return carPoolingSystem.getBothPassengersAndDrivers();
+    }
+
+    @Benchmark
+    public QueryResult.DriverPINNameAgeRating[] driversWithNoCars() {
+        return carPoolingSystem.getDriversWithNoCars();
+    }
+
+    @Benchmark
+    public Car[] carsWithNoTrips() {
+        return carPoolingSystem.getCarsWithNoTrips();
+    }
+
+    @Benchmark
+    public Passenger[] passengersWithNoBooks() {
+        return carPoolingSystem.getPassengersWithNoBooks();
+    }
+
+    @Benchmark
+    public Trip[] tripsFromToCitiesOnSpecificDate() {
+        return carPoolingSystem.getTripsFromToCitiesOnSpecificDate(CITY, CITY_CHICAGO, DATE_NY_C);
+    }
+
+    @Benchmark
+    public QueryResult.PassengerPINNameAgeMembershipStatus[] passengersWithBookingsToAllTripsForCity() {
+        return carPoolingSystem.getPassengersWithBookingsToAllTripsForCity(CITY_SEATTLE);
+    }
+
+    @Benchmark
+    public Integer[] driverCarsWithAtMost2Bookings() {
+        return carPoolingSystem.getDriverCarsWithAtMost2Bookings(DRIVER_PIN);
+    }
+
+    @Benchmark
+    public Double avgAgeOfPassengersDepartFromCityBetweenTwoDates() {
+        return carPoolingSystem.getAvgAgeOfPassengersDepartFromCityBetweenTwoDates(CITY, START_DATE, END_DATE);
+    }
+
+    @Benchmark
+    public QueryResult.PassengerPINNameAgeMembershipStatus[] passengerInGivenTrip() {
+        return carPoolingSystem.getPassengerInGivenTrip(GIVEN_TRIP_ID);
+    }
+
+    @Benchmark
+    public QueryResult.DriverScoreRatingNumberOfBookingsPIN[] driversScores() {
+        return carPoolingSystem.getDriversScores();
+    }
+
+    @Benchmark
+    public QueryResult.CityAndAverageDriverRating[] driversAverageRatingsToEachDestinatedCity() {
+        return carPoolingSystem.getDriversAverageRatingsToEachDestinatedCity();
+    }
+
+    @Benchmark
+    public QueryResult.MembershipStatusAndTotalBookings[] totalBookingsEachMembershipStatus() {
+        return carPoolingSystem.getTotalBookingsEachMembershipStatus();
+    }
+
+    @Benchmark
+    public Trip[] tripsFromCity() {
+        return carPoolingSystem.getTripsFromCity(CITY);
+    }
+
+    @Benchmark
+    public Trip[] tripsWithNoBooks() {
+        return carPoolingSystem.getTripsWithNoBooks();
+    }
+
+    @Benchmark
+    public QueryResult.DriverPINandTripIDandNumberOfBookings[] theMostBookedTripsPerDriver() {
+        return carPoolingSystem.getTheMostBookedTripsPerDriver();
+    }
+
+    @Benchmark
+    public QueryResult.FullCars[] fullCars() {
+        return carPoolingSystem.getFullCars();
+    }
+}
@@ -0,0 +1,81 @@
+package ceng.ceng351.carpoolingdb.benchmarks;
+
+import ceng.ceng351.carpoolingdb.Booking;
+import ceng.ceng351.carpoolingdb.Car;
+import ceng.ceng351.carpoolingdb.Driver;
+import ceng.ceng351.carpoolingdb.FileOperations;
+import ceng.ceng351.carpoolingdb.Participant;
+import ceng.ceng351.carpoolingdb.Passenger;
+import ceng.ceng351.carpoolingdb.Trip;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FileOperations' byte-level TSV readers against the original String.split readers, and the
+ * readers of the remaining data files.
+ * Run with -prof gc to compare allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReaderBenchmark {
+
+    @Benchmark
+    public Trip[] tripsSplit() throws IOException {
+        return SplitReaders.readTripsFile();
+    }
+
+    @Benchmark
+    public Trip[] tripsTsvReader() {
+        return FileOperations.readTripsFile();
+    }
+
+    @Benchmark
+    public Booking[] bookingsSplit() throws IOException {
+        return SplitReaders.readBookingsFile();
+    }
+
+    @Benchmark
+    public Booking[] bookingsTsvReader() {
+        return FileOperations.readBookingsFile();
+    }
+
+    @Benchmark
+    public int bookingsTsvReaderStreaming(Blackhole blackhole) {
+        return FileOperations.readBookingsFile(1024, blackhole::consume);
+    }
+
+    @Benchmark
+    public Participant[] participantsTsvReader() {
+        return FileOperations.readParticipantsFile();
+    }
+
+    @Benchmark
+    public Passenger[] passengersTsvReader() {
+        return FileOperations.readPassengersFile();
+    }
+
+    @Benchmark
+    public Driver[] driversTsvReader() {
+        return FileOperations.readDriversFile();
+    }
+
+    @Benchmark
+    public Car[] carsTsvReader() {
+        return FileOperations.readCarsFile();
+    }
+}
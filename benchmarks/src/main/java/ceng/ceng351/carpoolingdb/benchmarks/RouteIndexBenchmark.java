@@ -0,0 +1,91 @@
+package ceng.ceng351.carpoolingdb.benchmarks;
+
+import ceng.ceng351.carpoolingdb.RouteIndex;
+import ceng.ceng351.carpoolingdb.Trip;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search latency of RouteIndex over synthetic trips: 50 cities, dates spread over three years,
+ * so an exact (departure, destination, date) search finds a few trips and a departure search
+ * about 2% of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class RouteIndexBenchmark {
+
+    private static final int CITIES = 50;
+    private static final int DAYS = 3 * 365;
+    private static final int FIRST_DAY = (int) LocalDate.of(2024, 1, 1).toEpochDay();
+    private static final int CHUNK = 100_000;
+
+    // Searches cycle through SEARCHES random routes, so lookups do not all hit one posting list
+    private static final int SEARCHES = 1024;
+
+    @Param({"10000000"})
+    public int trips;
+
+    private RouteIndex routeIndex;
+    private String[] cities;
+
+    private final String[] searchDepartures = new String[SEARCHES];
+    private final String[] searchDestinations = new String[SEARCHES];
+    private final int[] searchDays = new int[SEARCHES];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void build() {
+        cities = new String[CITIES];
+        for (int i = 0; i < CITIES; i++) {
+            cities[i] = "City " + i;
+        }
+
+        SplittableRandom random = new SplittableRandom(42);
+        routeIndex = new RouteIndex();
+        Trip[] chunk = new Trip[CHUNK];
+        for (int from = 0; from < trips; from += CHUNK) {
+            int count = Math.min(CHUNK, trips - from);
+            for (int i = 0; i < count; i++) {
+                chunk[i] = new Trip(from + i + 1, random.nextInt(100_000) + 1, FIRST_DAY + random.nextInt(DAYS),
+                        cities[random.nextInt(CITIES)], cities[random.nextInt(CITIES)], random.nextInt(4) + 1);
+            }
+            routeIndex.addTrips(chunk, count);
+        }
+
+        for (int i = 0; i < SEARCHES; i++) {
+            searchDepartures[i] = cities[random.nextInt(CITIES)];
+            searchDestinations[i] = cities[random.nextInt(CITIES)];
+            searchDays[i] = FIRST_DAY + random.nextInt(DAYS);
+        }
+    }
+
+    @Benchmark
+    public Trip[] tripsOnRouteAndDate() {
+        int i = next++ & (SEARCHES - 1);
+        return routeIndex.getTrips(searchDepartures[i], searchDestinations[i], searchDays[i]);
+    }
+
+    @Benchmark
+    public Trip[] tripsFromCity() {
+        int i = next++ & (SEARCHES - 1);
+        return routeIndex.getTripsFrom(searchDepartures[i]);
+    }
+}
@@ -0,0 +1,135 @@
+package ceng.ceng351.carpoolingdb.benchmarks;
+
+import ceng.ceng351.carpoolingdb.QueryResult;
+import ceng.ceng351.carpoolingdb.RowMappers;
+import ceng.ceng351.carpoolingdb.RowReader;
+import ceng.ceng351.carpoolingdb.Trip;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding every row of a large result into objects, with the columns looked up by label on
+ * every row (LabelReaders) against the RowMappers, which look them up once per result.
+ * Both run the same query, so the difference is the decoding.
+ * Run with -prof gc to compare allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class RowDecodeBenchmark {
+
+    private static final String TRIPS_SQL =
+            "SELECT TripID, CarID, date, departure, destination, num_seats_available FROM DecodeTrips";
+
+    private static final String PASSENGERS_SQL =
+            "SELECT PIN, p_name, age, membership_status FROM DecodePassengers";
+
+    @Param({"1000000"})
+    public int rows;
+
+    private String url;
+    private Connection connection;
+    private PreparedStatement trips;
+    private PreparedStatement passengers;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        url = BenchmarkDatabase.newUrl();
+        connection = BenchmarkDatabase.connect(url);
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE DecodeTrips AS " +
+                    "SELECT CAST(X AS INT) AS TripID, CAST(MOD(X, 5000) AS INT) AS CarID, " +
+                    "       DATEADD(DAY, MOD(X, 1000), DATE '2024-01-01') AS date, " +
+                    "       'City ' || MOD(X, 50) AS departure, 'City ' || MOD(X * 7, 50) AS destination, " +
+                    "       CAST(MOD(X, 4) + 1 AS INT) AS num_seats_available " +
+                    "FROM SYSTEM_RANGE(1, " + rows + ")");
+            statement.execute("CREATE TABLE DecodePassengers AS " +
+                    "SELECT CAST(X AS INT) AS PIN, 'Passenger ' || X AS p_name, CAST(18 + MOD(X, 60) AS INT) AS age, " +
+                    "       CASEWHEN(MOD(X, 3) = 0, 'Gold', CASEWHEN(MOD(X, 3) = 1, 'Silver', 'Bronze')) AS membership_status " +
+                    "FROM SYSTEM_RANGE(1, " + rows + ")");
+        }
+
+        trips = connection.prepareStatement(TRIPS_SQL);
+        passengers = connection.prepareStatement(PASSENGERS_SQL);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+        BenchmarkDatabase.destroy(url);
+    }
+
+    @Benchmark
+    public int tripsByLabel(Blackhole blackhole) throws SQLException {
+        int decoded = 0;
+        try (ResultSet resultSet = trips.executeQuery()) {
+            while (resultSet.next()) {
+                blackhole.consume(LabelReaders.readTrip(resultSet));
+                decoded++;
+            }
+        }
+        return decoded;
+    }
+
+    @Benchmark
+    public int tripsByIndex(Blackhole blackhole) throws SQLException {
+        int decoded = 0;
+        try (ResultSet resultSet = trips.executeQuery()) {
+            RowReader<Trip> reader = RowMappers.TRIP.bind(resultSet);
+            while (resultSet.next()) {
+                blackhole.consume(reader.read(resultSet));
+                decoded++;
+            }
+        }
+        return decoded;
+    }
+
+    @Benchmark
+    public int passengersByLabel(Blackhole blackhole) throws SQLException {
+        int decoded = 0;
+        try (ResultSet resultSet = passengers.executeQuery()) {
+            while (resultSet.next()) {
+                blackhole.consume(LabelReaders.readPassenger(resultSet));
+                decoded++;
+            }
+        }
+        return decoded;
+    }
+
+    @Benchmark
+    public int passengersByIndex(Blackhole blackhole) throws SQLException {
+        int decoded = 0;
+        try (ResultSet resultSet = passengers.executeQuery()) {
+            RowReader<QueryResult.PassengerPINNameAgeMembershipStatus> reader =
+                    RowMappers.PASSENGER_PIN_NAME_AGE_MEMBERSHIP_STATUS.bind(resultSet);
+            while (resultSet.next()) {
+                blackhole.consume(reader.read(resultSet));
+                decoded++;
+            }
+        }
+        return decoded;
+    }
+}
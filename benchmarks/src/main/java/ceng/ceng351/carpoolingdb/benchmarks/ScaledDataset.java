@@ -0,0 +1,123 @@
+package ceng.ceng351.carpoolingdb.benchmarks;
+
+import ceng.ceng351.carpoolingdb.Booking;
+import ceng.ceng351.carpoolingdb.Car;
+import ceng.ceng351.carpoolingdb.CarPoolingSystem;
+import ceng.ceng351.carpoolingdb.Driver;
+import ceng.ceng351.carpoolingdb.FileOperations;
+import ceng.ceng351.carpoolingdb.ICarPoolingSystem;
+import ceng.ceng351.carpoolingdb.Participant;
+import ceng.ceng351.carpoolingdb.Passenger;
+import ceng.ceng351.carpoolingdb.Trip;
+
+/**
+ * The bundled data files repeated scale times. Copy k shifts every PIN, CarID and TripID by k
+ * times the largest one in the files, so the copies never collide and every foreign key stays
+ * inside its own copy; cities, dates, ages and statuses are unchanged, so the same query
+ * arguments find scale times the rows.
+ */
+final class ScaledDataset {
+
+    // Rows per executeBatch()/commit() when a CarPoolingSystem is loaded
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    final int scale;
+    final Participant[] participants;
+    final Passenger[] passengers;
+    final Driver[] drivers;
+    final Car[] cars;
+    final Trip[] trips;
+    final Booking[] bookings;
+
+    ScaledDataset(int scale) {
+        if (scale < 1) {
+            throw new IllegalArgumentException("scale must be >= 1: " + scale);
+        }
+        this.scale = scale;
+
+        Participant[] baseParticipants = FileOperations.readParticipantsFile();
+        Passenger[] basePassengers = FileOperations.readPassengersFile();
+        Driver[] baseDrivers = FileOperations.readDriversFile();
+        Car[] baseCars = FileOperations.readCarsFile();
+        Trip[] baseTrips = FileOperations.readTripsFile();
+        Booking[] baseBookings = FileOperations.readBookingsFile();
+
+        int pinStride = 0;
+        for (Participant participant : baseParticipants) {
+            pinStride = Math.max(pinStride, participant.getPIN());
+        }
+        int carStride = 0;
+        for (Car car : baseCars) {
+            carStride = Math.max(carStride, car.getCarID());
+        }
+        int tripStride = 0;
+        for (Trip trip : baseTrips) {
+            tripStride = Math.max(tripStride, trip.getTripID());
+        }
+
+        participants = new Participant[baseParticipants.length * scale];
+        passengers = new Passenger[basePassengers.length * scale];
+        drivers = new Driver[baseDrivers.length * scale];
+        cars = new Car[baseCars.length * scale];
+        trips = new Trip[baseTrips.length * scale];
+        bookings = new Booking[baseBookings.length * scale];
+
+        for (int k = 0; k < scale; k++) {
+            int pinOffset = k * pinStride;
+            int carOffset = k * carStride;
+            int tripOffset = k * tripStride;
+
+            for (int i = 0; i < baseParticipants.length; i++) {
+                Participant participant = baseParticipants[i];
+                participants[k * baseParticipants.length + i] = new Participant(participant.getPIN() + pinOffset,
+                        participant.getP_name(), participant.getAge());
+            }
+            for (int i = 0; i < basePassengers.length; i++) {
+                Passenger passenger = basePassengers[i];
+                passengers[k * basePassengers.length + i] = new Passenger(passenger.getPIN() + pinOffset,
+                        passenger.getMembership_status());
+            }
+            for (int i = 0; i < baseDrivers.length; i++) {
+                Driver driver = baseDrivers[i];
+                drivers[k * baseDrivers.length + i] = new Driver(driver.getPIN() + pinOffset, driver.getRating());
+            }
+            for (int i = 0; i < baseCars.length; i++) {
+                Car car = baseCars[i];
+                cars[k * baseCars.length + i] = new Car(car.getCarID() + carOffset, car.getPIN() + pinOffset,
+                        car.getColor(), car.getBrand());
+            }
+            for (int i = 0; i < baseTrips.length; i++) {
+                Trip trip = baseTrips[i];
+                trips[k * baseTrips.length + i] = new Trip(trip.getTripID() + tripOffset, trip.getCarID() + carOffset,
+                        trip.getEpochDay(), trip.getDeparture(), trip.getDestination(), trip.getNum_seats_available());
+            }
+            for (int i = 0; i < baseBookings.length; i++) {
+                Booking booking = baseBookings[i];
+                bookings[k * baseBookings.length + i] = new Booking(booking.getTripID() + tripOffset,
+                        booking.getPIN() + pinOffset, booking.getBooking_status());
+            }
+        }
+    }
+
+    int rowCount() {
+        return participants.length + passengers.length + drivers.length + cars.length + trips.length + bookings.length;
+    }
+
+    /**
+     * Recreates the tables of carPoolingSystem and inserts every row.
+     */
+    void load(ICarPoolingSystem carPoolingSystem) {
+        if (carPoolingSystem instanceof CarPoolingSystem) {
+            ((CarPoolingSystem) carPoolingSystem).setBatchSize(LOAD_BATCH_SIZE);
+        }
+
+        carPoolingSystem.dropTables();
+        carPoolingSystem.createTables();
+        carPoolingSystem.insertParticipants(participants);
+        carPoolingSystem.insertPassengers(passengers);
+        carPoolingSystem.insertDrivers(drivers);
+        carPoolingSystem.insertCars(cars);
+        carPoolingSystem.insertTrips(trips);
+        carPoolingSystem.insertBookings(bookings);
+    }
+}
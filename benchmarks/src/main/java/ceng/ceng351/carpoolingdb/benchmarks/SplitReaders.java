@@ -0,0 +1,73 @@
+package ceng.ceng351.carpoolingdb.benchmarks;
+
+import ceng.ceng351.carpoolingdb.Booking;
+import ceng.ceng351.carpoolingdb.Trip;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The original String.split based readers, kept as the baseline for ReaderBenchmark.
+ */
+final class SplitReaders {
+
+    private SplitReaders() {
+    }
+
+    private static BufferedReader getBufferedReader(String resourcePath) {
+        return new BufferedReader(new InputStreamReader(
+                SplitReaders.class.getClassLoader().getResourceAsStream(resourcePath)));
+    }
+
+    static Trip[] readTripsFile() throws IOException {
+        List<Trip> tripList = new ArrayList<>();
+
+        try (BufferedReader bufferedReader = getBufferedReader("data/Trips.txt")) {
+            String strLine;
+
+            // Skip the header line
+            bufferedReader.readLine();
+
+            while ((strLine = bufferedReader.readLine()) != null) {
+                String[] words = strLine.split("\t");
+
+                int TripID = Integer.parseInt(words[0]);
+                int CarID = Integer.parseInt(words[1]);
+                String date = words[2];
+                String departure = words[3];
+                String destination = words[4];
+                int num_seats_available = Integer.parseInt(words[5]);
+
+                tripList.add(new Trip(TripID, CarID, date, departure, destination, num_seats_available));
+            }
+        }
+
+        return tripList.toArray(new Trip[0]);
+    }
+
+    static Booking[] readBookingsFile() throws IOException {
+        List<Booking> bookingList = new ArrayList<>();
+
+        try (BufferedReader bufferedReader = getBufferedReader("data/Bookings.txt")) {
+            String strLine;
+
+            // Skip the header line
+            bufferedReader.readLine();
+
+            while ((strLine = bufferedReader.readLine()) != null) {
+                String[] words = strLine.split("\t");
+
+                int TripID = Integer.parseInt(words[0]);
+                int PIN = Integer.parseInt(words[1]);
+                String booking_status = words[2];
+
+                bookingList.add(new Booking(TripID, PIN, booking_status));
+            }
+        }
+
+        return bookingList.toArray(new Booking[0]);
+    }
+}
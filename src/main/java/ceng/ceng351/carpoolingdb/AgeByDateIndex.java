@@ -0,0 +1,279 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sum of passenger ages and number of confirmed bookings per departure city and trip date, for
+ * query 11. Each city has a Fenwick tree over days, so the average over any date range takes two
+ * O(log days) prefix sums instead of a join over Participants, Bookings and Trips.
+ *
+ * To count a booking the index needs its trip's departure and date and its passenger's age, so it
+ * also keeps TripID -> (departure, day) and PIN -> age for the rows added through it.
+ */
+final class AgeByDateIndex {
+
+    static final String LOAD_PARTICIPANTS_SQL = "SELECT PIN, age FROM Participants";
+
+    static final String LOAD_TRIPS_SQL =
+            "SELECT t.TripID, t.date, dep.name AS departure " +
+                    "FROM Trips t " +
+                    "LEFT JOIN Dictionary dep ON dep.code = t.departure";
+
+    // COUNT(p.age), not COUNT(*): like AVG, the totals skip passengers without an age
+    static final String LOAD_CONFIRMED_BOOKINGS_SQL =
+            "SELECT dep.name AS departure, t.date, SUM(p.age) AS age_sum, COUNT(p.age) AS booking_count " +
+                    "FROM Bookings b " +
+                    "JOIN Trips t ON b.TripID = t.TripID " +
+                    "JOIN Participants p ON b.PIN = p.PIN " +
+                    "LEFT JOIN Dictionary dep ON dep.code = t.departure " +
+                    "WHERE b.booking_status = " + DictionaryTable.codeOf(DictionaryTable.BOOKING_STATUS, "Confirmed") + " " +
+                    "GROUP BY dep.name, t.date";
+
+    // Age of a participant whose age column is NULL
+    private static final int NO_AGE = Integer.MIN_VALUE;
+
+    private final KeyIndex participantRows = new KeyIndex();
+    private int[] ages = new int[0];
+
+    private final KeyIndex tripRows = new KeyIndex();
+    private int[] tripDepartures = new int[0];
+    private int[] tripDays = new int[0];
+
+    // Keyed by StringDictionary.CITIES code
+    private final Map<Integer, DayTree> treesByDeparture = new HashMap<>();
+
+    /**
+     * Adds the first rowCount participants, which were just inserted.
+     */
+    synchronized void addParticipants(Participant[] participants, int rowCount) {
+        for (int i = 0; i < rowCount; i++) {
+            addParticipant(participants[i].getPIN(), participants[i].getAge());
+        }
+    }
+
+    /**
+     * Adds the first rowCount trips, which were just inserted.
+     */
+    synchronized void addTrips(Trip[] trips, int rowCount) {
+        for (int i = 0; i < rowCount; i++) {
+            addTrip(trips[i].getTripID(), trips[i].getDepartureCode(), trips[i].getEpochDay());
+        }
+    }
+
+    /**
+     * Counts the confirmed ones of the first rowCount bookings, which were just inserted.
+     */
+    synchronized void addBookings(Booking[] bookings, int rowCount) {
+        int confirmed = StringDictionary.BOOKING_STATUSES.lookup("Confirmed");
+        for (int i = 0; i < rowCount; i++) {
+            if (bookings[i].getBookingStatusCode() == confirmed) {
+                addConfirmedBooking(bookings[i].getTripID(), bookings[i].getPIN());
+            }
+        }
+    }
+
+    synchronized void clear() {
+        participantRows.clear();
+        tripRows.clear();
+        treesByDeparture.clear();
+    }
+
+    /**
+     * Replaces the contents of the index with the rows of Participants, Trips and Bookings.
+     */
+    synchronized void load(Connection connection) throws SQLException {
+        clear();
+
+        try (PreparedStatement preparedStatement = CancellableCall.track(connection.prepareStatement(LOAD_PARTICIPANTS_SQL));
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            // Columns by index, looked up once rather than for every row
+            int pin = resultSet.findColumn("PIN");
+            int ageColumn = resultSet.findColumn("age");
+
+            while (resultSet.next()) {
+                int age = resultSet.getInt(ageColumn);
+                addParticipant(resultSet.getInt(pin), resultSet.wasNull() ? NO_AGE : age);
+            }
+        }
+
+        try (PreparedStatement preparedStatement = CancellableCall.track(connection.prepareStatement(LOAD_TRIPS_SQL));
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            int tripID = resultSet.findColumn("TripID");
+            int departure = resultSet.findColumn("departure");
+            int date = resultSet.findColumn("date");
+
+            while (resultSet.next()) {
+                addTrip(resultSet.getInt(tripID), StringDictionary.CITIES.encode(resultSet.getString(departure)),
+                        (int) resultSet.getObject(date, LocalDate.class).toEpochDay());
+            }
+        }
+
+        try (PreparedStatement preparedStatement = CancellableCall.track(connection.prepareStatement(LOAD_CONFIRMED_BOOKINGS_SQL));
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            int departureColumn = resultSet.findColumn("departure");
+            int date = resultSet.findColumn("date");
+            int ageSum = resultSet.findColumn("age_sum");
+            int bookingCount = resultSet.findColumn("booking_count");
+
+            while (resultSet.next()) {
+                int departure = StringDictionary.CITIES.encode(resultSet.getString(departureColumn));
+                int day = (int) resultSet.getObject(date, LocalDate.class).toEpochDay();
+                treeOf(departure).add(day, resultSet.getLong(ageSum), resultSet.getLong(bookingCount));
+            }
+        }
+    }
+
+    /**
+     * Average age over the confirmed bookings of trips from city between startDay and endDay
+     * (epoch days, both inclusive), or null if there are none.
+     */
+    synchronized Double averageAge(String city, int startDay, int endDay) {
+        DayTree tree = treesByDeparture.get(StringDictionary.CITIES.lookup(city));
+        if (tree == null) {
+            return null;
+        }
+
+        long count = tree.count(startDay, endDay);
+        if (count == 0) {
+            return null;
+        }
+        return (double) tree.ageSum(startDay, endDay) / count;
+    }
+
+    private void addParticipant(int pin, int age) {
+        int row = participantRows.size();
+        if (row == ages.length) {
+            ages = Arrays.copyOf(ages, Math.max(16, row * 2));
+        }
+        ages[row] = age;
+        participantRows.put(pin, row);
+    }
+
+    private void addTrip(int tripId, int departure, int day) {
+        int row = tripRows.size();
+        if (row == tripDays.length) {
+            tripDepartures = Arrays.copyOf(tripDepartures, Math.max(16, row * 2));
+            tripDays = Arrays.copyOf(tripDays, Math.max(16, row * 2));
+        }
+        tripDepartures[row] = departure;
+        tripDays[row] = day;
+        tripRows.put(tripId, row);
+    }
+
+    private void addConfirmedBooking(int tripId, int pin) {
+        int tripRow = tripRows.get(tripId);
+        int participantRow = participantRows.get(pin);
+        // The foreign keys make both exist, unless they were written around the index
+        if (tripRow == KeyIndex.NOT_FOUND || participantRow == KeyIndex.NOT_FOUND || ages[participantRow] == NO_AGE) {
+            return;
+        }
+
+        treeOf(tripDepartures[tripRow]).add(tripDays[tripRow], ages[participantRow], 1);
+    }
+
+    private DayTree treeOf(int departure) {
+        return treesByDeparture.computeIfAbsent(departure, code -> new DayTree());
+    }
+
+    /**
+     * Fenwick trees of age sums and booking counts over the days firstDay .. firstDay + days - 1.
+     * The range grows, rebuilding the trees, when a day outside it is added.
+     */
+    private static final class DayTree {
+        private int firstDay;
+        private int days;
+
+        // Per-day totals, kept to rebuild the trees on growth
+        private long[] dayAgeSums = new long[0];
+        private long[] dayCounts = new long[0];
+
+        // 1-based Fenwick arrays over the same days
+        private long[] ageSumTree = new long[1];
+        private long[] countTree = new long[1];
+
+        void add(int day, long ageSum, long count) {
+            cover(day);
+
+            int index = day - firstDay;
+            dayAgeSums[index] += ageSum;
+            dayCounts[index] += count;
+            for (int i = index + 1; i <= days; i += i & -i) {
+                ageSumTree[i] += ageSum;
+                countTree[i] += count;
+            }
+        }
+
+        long ageSum(int fromDay, int toDay) {
+            return rangeSum(ageSumTree, fromDay, toDay);
+        }
+
+        long count(int fromDay, int toDay) {
+            return rangeSum(countTree, fromDay, toDay);
+        }
+
+        private long rangeSum(long[] tree, int fromDay, int toDay) {
+            int from = Math.max(fromDay, firstDay) - firstDay;
+            int to = Math.min(toDay, firstDay + days - 1) - firstDay;
+            if (days == 0 || from > to) {
+                return 0;
+            }
+            return prefixSum(tree, to) - prefixSum(tree, from - 1);
+        }
+
+        // Sum over day indexes 0 .. index
+        private static long prefixSum(long[] tree, int index) {
+            long sum = 0;
+            for (int i = index + 1; i > 0; i -= i & -i) {
+                sum += tree[i];
+            }
+            return sum;
+        }
+
+        private void cover(int day) {
+            if (days > 0 && day >= firstDay && day < firstDay + days) {
+                return;
+            }
+
+            int from = days == 0 ? day : Math.min(firstDay, day);
+            int to = days == 0 ? day : Math.max(firstDay + days - 1, day);
+            int newDays = Math.max(64, Integer.highestOneBit(to - from + 1) * 2);
+            // Leave the spare days on the side the range grew towards
+            int newFirstDay = days > 0 && day < firstDay ? to - newDays + 1 : from;
+
+            long[] newAgeSums = new long[newDays];
+            long[] newCounts = new long[newDays];
+            int offset = firstDay - newFirstDay;
+            for (int i = 0; i < days; i++) {
+                newAgeSums[offset + i] = dayAgeSums[i];
+                newCounts[offset + i] = dayCounts[i];
+            }
+
+            firstDay = newFirstDay;
+            days = newDays;
+            dayAgeSums = newAgeSums;
+            dayCounts = newCounts;
+            ageSumTree = build(newAgeSums);
+            countTree = build(newCounts);
+        }
+
+        // O(n) Fenwick construction: each node passes its total on to its parent
+        private static long[] build(long[] values) {
+            long[] tree = new long[values.length + 1];
+            for (int i = 1; i <= values.length; i++) {
+                tree[i] += values[i - 1];
+                int parent = i + (i & -i);
+                if (parent <= values.length) {
+                    tree[parent] += tree[i];
+                }
+            }
+            return tree;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * IAsyncCarPoolingSystem that runs each call of a blocking ICarPoolingSystem on a thread of its
+ * own: a virtual thread on Java 21 and later, otherwise a pooled platform thread. The delegate
+ * must be safe for concurrent calls, e.g. PooledCarPoolingSystem, which also bounds how many
+ * calls hit the database at once.
+ *
+ * At most maxInFlight calls are started and not yet finished; beyond that a call is not queued
+ * but its future fails right away with a RejectedExecutionException, so a caller that does not
+ * block cannot pile up work either. Cancelling a future before its call started skips the call;
+ * cancelling it while it runs calls Statement.cancel() on the statements it is executing (see
+ * CancellableCall), so the database stops working on it.
+ */
+public class AsyncCarPoolingSystem implements IAsyncCarPoolingSystem, AutoCloseable {
+
+    private final ICarPoolingSystem delegate;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+
+    public AsyncCarPoolingSystem(ICarPoolingSystem delegate, int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be > 0: " + maxInFlight);
+        }
+        this.delegate = delegate;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+
+        ExecutorService virtualThreadExecutor = newVirtualThreadPerTaskExecutor();
+        this.virtualThreads = virtualThreadExecutor != null;
+        this.executor = virtualThreads ? virtualThreadExecutor : Executors.newCachedThreadPool(new AsyncThreadFactory());
+    }
+
+    public ICarPoolingSystem getDelegate() {
+        return delegate;
+    }
+
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Calls started and not yet finished.
+     */
+    public int getInFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    /**
+     * Calls refused because maxInFlight calls were running, or because this was closed.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getCancelled() {
+        return cancelled.sum();
+    }
+
+    /**
+     * Refuses new calls; the ones already started still complete.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    @Override
+    public CompletableFuture<Driver[]> getAllDriversAsync() {
+        return submit(delegate::getAllDrivers);
+    }
+
+    @Override
+    public CompletableFuture<Integer> createTablesAsync() {
+        return submit(delegate::createTables);
+    }
+
+    @Override
+    public CompletableFuture<Integer> dropTablesAsync() {
+        return submit(delegate::dropTables);
+    }
+
+    @Override
+    public CompletableFuture<Integer> insertParticipantsAsync(Participant[] participants) {
+        return submit(() -> delegate.insertParticipants(participants));
+    }
+
+    @Override
+    public CompletableFuture<Integer> insertPassengersAsync(Passenger[] passengers) {
+        return submit(() -> delegate.insertPassengers(passengers));
+    }
+
+    @Override
+    public CompletableFuture<Integer> insertDriversAsync(Driver[] drivers) {
+        return submit(() -> delegate.insertDrivers(drivers));
+    }
+
+    @Override
+    public CompletableFuture<Integer> insertCarsAsync(Car[] cars) {
+        return submit(() -> delegate.insertCars(cars));
+    }
+
+    @Override
+    public CompletableFuture<Integer> insertTripsAsync(Trip[] trips) {
+        return submit(() -> delegate.insertTrips(trips));
+    }
+
+    @Override
+    public CompletableFuture<Integer> insertBookingsAsync(Booking[] bookings) {
+        return submit(() -> delegate.insertBookings(bookings));
+    }
+
+    @Override
+    public CompletableFuture<Participant[]> getBothPassengersAndDriversAsync() {
+        return submit(delegate::getBothPassengersAndDrivers);
+    }
+
+    @Override
+    public CompletableFuture<QueryResult.DriverPINNameAgeRating[]> getDriversWithNoCarsAsync() {
+        return submit(delegate::getDriversWithNoCars);
+    }
+
+    @Override
+    public CompletableFuture<Integer> deleteDriversWithNoCarsAsync() {
+        return submit(delegate::deleteDriversWithNoCars);
+    }
+
+    @Override
+    public CompletableFuture<Car[]> getCarsWithNoTripsAsync() {
+        return submit(delegate::getCarsWithNoTrips);
+    }
+
+    @Override
+    public CompletableFuture<Passenger[]> getPassengersWithNoBooksAsync() {
+        return submit(delegate::getPassengersWithNoBooks);
+    }
+
+    @Override
+    public CompletableFuture<Trip[]> getTripsFromToCitiesOnSpecificDateAsync(String departure, String destination, String date) {
+        return submit(() -> delegate.getTripsFromToCitiesOnSpecificDate(departure, destination, date));
+    }
+
+    @Override
+    public CompletableFuture<QueryResult.PassengerPINNameAgeMembershipStatus[]> getPassengersWithBookingsToAllTripsForCityAsync(String city) {
+        return submit(() -> delegate.getPassengersWithBookingsToAllTripsForCity(city));
+    }
+
+    @Override
+    public CompletableFuture<Integer[]> getDriverCarsWithAtMost2BookingsAsync(int driverPIN) {
+        return submit(() -> delegate.getDriverCarsWithAtMost2Bookings(driverPIN));
+    }
+
+    @Override
+    public CompletableFuture<Double> getAvgAgeOfPassengersDepartFromCityBetweenTwoDatesAsync(String city, String start_date, String end_date) {
+        return submit(() -> delegate.getAvgAgeOfPassengersDepartFromCityBetweenTwoDates(city, start_date, end_date));
+    }
+
+    @Override
+    public CompletableFuture<QueryResult.PassengerPINNameAgeMembershipStatus[]> getPassengerInGivenTripAsync(int TripID) {
+        return submit(() -> delegate.getPassengerInGivenTrip(TripID));
+    }
+
+    @Override
+    public CompletableFuture<QueryResult.DriverScoreRatingNumberOfBookingsPIN[]> getDriversScoresAsync() {
+        return submit(delegate::getDriversScores);
+    }
+
+    @Override
+    public CompletableFuture<QueryResult.CityAndAverageDriverRating[]> getDriversAverageRatingsToEachDestinatedCityAsync() {
+        return submit(delegate::getDriversAverageRatingsToEachDestinatedCity);
+    }
+
+    @Override
+    public CompletableFuture<QueryResult.MembershipStatusAndTotalBookings[]> getTotalBookingsEachMembershipStatusAsync() {
+        return submit(delegate::getTotalBookingsEachMembershipStatus);
+    }
+
+    @Override
+    public CompletableFuture<Integer> updateDriverRatingsAsync() {
+        return submit(delegate::updateDriverRatings);
+    }
+
+    @Override
+    public CompletableFuture<Trip[]> getTripsFromCityAsync(String city) {
+        return submit(() -> delegate.getTripsFromCity(city));
+    }
+
+    @Override
+    public CompletableFuture<Trip[]> getTripsWithNoBooksAsync() {
+        return submit(delegate::getTripsWithNoBooks);
+    }
+
+    @Override
+    public CompletableFuture<QueryResult.DriverPINandTripIDandNumberOfBookings[]> getTheMostBookedTripsPerDriverAsync() {
+        return submit(delegate::getTheMostBookedTripsPerDriver);
+    }
+
+    @Override
+    public CompletableFuture<QueryResult.FullCars[]> getFullCarsAsync() {
+        return submit(delegate::getFullCars);
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (!inFlight.tryAcquire()) {
+            rejected.increment();
+            future.completeExceptionally(new RejectedExecutionException(maxInFlight + " calls already in flight"));
+            return future;
+        }
+
+        CancellableCall cancellableCall = new CancellableCall();
+        future.whenComplete((result, failure) -> {
+            if (future.isCancelled()) {
+                cancelled.increment();
+                cancellableCall.cancel();
+            }
+        });
+
+        try {
+            executor.execute(() -> run(call, future, cancellableCall));
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            rejected.increment();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private <T> void run(Supplier<T> call, CompletableFuture<T> future, CancellableCall cancellableCall) {
+        try {
+            // Cancelled before it got a thread
+            if (future.isDone()) {
+                return;
+            }
+
+            cancellableCall.enter();
+            try {
+                future.complete(call.get());
+            } finally {
+                cancellableCall.exit();
+            }
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() exists from Java 21 on (as a preview before,
+    // which throws unless enabled); looked up so that the build can still target Java 17
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private static final class AsyncThreadFactory implements ThreadFactory {
+        private final AtomicInteger threads = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "carpooling-async-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
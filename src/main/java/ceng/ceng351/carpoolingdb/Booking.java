@@ -4,12 +4,12 @@ public class Booking {
 
     private int TripID;
     private int PIN; // Passenger's PIN
-    private String booking_status;
+    private int booking_status;     // code in StringDictionary.BOOKING_STATUSES
 
     public Booking(int TripID, int PIN, String booking_status) {
         this.TripID = TripID;
         this.PIN = PIN;
-        this.booking_status = booking_status;
+        this.booking_status = StringDictionary.BOOKING_STATUSES.encode(booking_status);
     }
 
     public int getTripID() {
@@ -29,11 +29,15 @@ public class Booking {
     }
 
     public String getBooking_status() {
-        return booking_status;
+        return StringDictionary.BOOKING_STATUSES.decode(booking_status);
     }
 
     public void setBooking_status(String booking_status) {
-        this.booking_status = booking_status;
+        this.booking_status = StringDictionary.BOOKING_STATUSES.encode(booking_status);
+    }
+
+    public int getBookingStatusCode() {
+        return booking_status;
     }
 
     @Override
@@ -41,7 +45,7 @@ public class Booking {
         return "Booking{" +
                 "TripID=" + TripID +
                 ", PIN=" + PIN +
-                ", booking_status='" + booking_status + '\'' +
+                ", booking_status='" + getBooking_status() + '\'' +
                 '}';
     }
 }
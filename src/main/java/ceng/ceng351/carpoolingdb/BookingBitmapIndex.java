@@ -0,0 +1,113 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory bitmaps of TripIDs for relational division over Bookings: the trips to each
+ * destination city, and the trips each passenger booked. "Passengers who booked every trip to
+ * X" becomes one subset test per passenger instead of a NOT EXISTS probe per passenger and trip.
+ *
+ * The index mirrors the tables as written through addTrips()/addBookings(); load() reads the
+ * current rows when the index is first built or the tables were written some other way.
+ */
+final class BookingBitmapIndex {
+
+    static final String LOAD_TRIPS_SQL =
+            "SELECT t.TripID, city.name AS destination " +
+                    "FROM Trips t " +
+                    "LEFT JOIN Dictionary city ON city.code = t.destination";
+
+    static final String LOAD_BOOKINGS_SQL = "SELECT TripID, PIN FROM Bookings";
+
+    // Keyed by StringDictionary.CITIES code
+    private final Map<Integer, CompressedBitmap> tripsByDestination = new HashMap<>();
+    private final Map<Integer, CompressedBitmap> tripsByPassenger = new HashMap<>();
+
+    /**
+     * Adds the first rowCount trips, which were just inserted.
+     */
+    synchronized void addTrips(Trip[] trips, int rowCount) {
+        for (int i = 0; i < rowCount; i++) {
+            addTrip(trips[i].getDestinationCode(), trips[i].getTripID());
+        }
+    }
+
+    /**
+     * Adds the first rowCount bookings, which were just inserted.
+     */
+    synchronized void addBookings(Booking[] bookings, int rowCount) {
+        for (int i = 0; i < rowCount; i++) {
+            addBooking(bookings[i].getPIN(), bookings[i].getTripID());
+        }
+    }
+
+    synchronized void clear() {
+        tripsByDestination.clear();
+        tripsByPassenger.clear();
+    }
+
+    /**
+     * Replaces the contents of the index with the rows of Trips and Bookings.
+     */
+    synchronized void load(Connection connection) throws SQLException {
+        clear();
+
+        try (PreparedStatement preparedStatement = CancellableCall.track(connection.prepareStatement(LOAD_TRIPS_SQL));
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            // Columns by index, looked up once rather than for every row
+            int destination = resultSet.findColumn("destination");
+            int tripID = resultSet.findColumn("TripID");
+
+            while (resultSet.next()) {
+                addTrip(StringDictionary.CITIES.encode(resultSet.getString(destination)), resultSet.getInt(tripID));
+            }
+        }
+
+        try (PreparedStatement preparedStatement = CancellableCall.track(connection.prepareStatement(LOAD_BOOKINGS_SQL));
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            int pin = resultSet.findColumn("PIN");
+            int tripID = resultSet.findColumn("TripID");
+
+            while (resultSet.next()) {
+                addBooking(resultSet.getInt(pin), resultSet.getInt(tripID));
+            }
+        }
+    }
+
+    /**
+     * PINs, in ascending order, of the passengers who booked every trip destined for city.
+     * Empty if no trip goes there.
+     */
+    synchronized int[] passengersWithBookingsToAllTripsTo(String city) {
+        CompressedBitmap tripsToCity = tripsByDestination.get(StringDictionary.CITIES.lookup(city));
+        if (tripsToCity == null || tripsToCity.isEmpty()) {
+            return new int[0];
+        }
+
+        int[] pins = new int[tripsByPassenger.size()];
+        int count = 0;
+        for (Map.Entry<Integer, CompressedBitmap> passenger : tripsByPassenger.entrySet()) {
+            if (tripsToCity.isSubsetOf(passenger.getValue())) {
+                pins[count++] = passenger.getKey();
+            }
+        }
+
+        pins = Arrays.copyOf(pins, count);
+        Arrays.sort(pins);
+        return pins;
+    }
+
+    private void addTrip(int destination, int tripId) {
+        tripsByDestination.computeIfAbsent(destination, code -> new CompressedBitmap()).add(tripId);
+    }
+
+    private void addBooking(int pin, int tripId) {
+        tripsByPassenger.computeIfAbsent(pin, key -> new CompressedBitmap()).add(tripId);
+    }
+}
@@ -0,0 +1,205 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.function.Function;
+
+/**
+ * Error-tolerant loader for the car-pooling tables.
+ *
+ * Rows are sent in batches of batchSize and committed per batch. When a batch fails (FK or PK
+ * violation, bad value, ...) it is rolled back and replayed row by row, each row under its own
+ * savepoint, so only the offending rows are skipped. Every skipped row is written to the reject
+ * file as "table TAB row (in the data file format) TAB reason".
+ */
+public class BulkLoader implements AutoCloseable {
+
+    private final Connection connection;
+    private final int batchSize;
+    private final String rejectFilePath;
+
+    private BufferedWriter rejectWriter;
+
+    public BulkLoader(Connection connection, int batchSize, String rejectFilePath) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be > 0: " + batchSize);
+        }
+        this.connection = connection;
+        this.batchSize = batchSize;
+        this.rejectFilePath = rejectFilePath;
+    }
+
+    public LoadResult loadParticipants(Participant[] participants) throws SQLException {
+        return load("Participants", CarPoolingSystem.INSERT_PARTICIPANTS_SQL, participants,
+                CarPoolingSystem.PARTICIPANT_BINDER,
+                p -> p.getPIN() + "\t" + p.getP_name() + "\t" + p.getAge());
+    }
+
+    public LoadResult loadPassengers(Passenger[] passengers) throws SQLException {
+        register(DictionaryTable.MEMBERSHIP_STATUS, passengers, Passenger::getMembership_status);
+        return load("Passengers", CarPoolingSystem.INSERT_PASSENGERS_SQL, passengers,
+                CarPoolingSystem.PASSENGER_BINDER,
+                p -> p.getPIN() + "\t" + p.getMembership_status());
+    }
+
+    public LoadResult loadDrivers(Driver[] drivers) throws SQLException {
+        return load("Drivers", CarPoolingSystem.INSERT_DRIVERS_SQL, drivers,
+                CarPoolingSystem.DRIVER_BINDER,
+                d -> d.getPIN() + "\t" + d.getRating());
+    }
+
+    public LoadResult loadCars(Car[] cars) throws SQLException {
+        register(DictionaryTable.COLOR, cars, Car::getColor);
+        register(DictionaryTable.BRAND, cars, Car::getBrand);
+        return load("Cars", CarPoolingSystem.INSERT_CARS_SQL, cars,
+                CarPoolingSystem.CAR_BINDER,
+                c -> c.getCarID() + "\t" + c.getPIN() + "\t" + c.getColor() + "\t" + c.getBrand());
+    }
+
+    public LoadResult loadTrips(Trip[] trips) throws SQLException {
+        register(DictionaryTable.CITY, trips, Trip::getDeparture);
+        register(DictionaryTable.CITY, trips, Trip::getDestination);
+        return load("Trips", CarPoolingSystem.INSERT_TRIPS_SQL, trips,
+                CarPoolingSystem.TRIP_BINDER,
+                t -> t.getTripID() + "\t" + t.getCarID() + "\t" + t.getDate() + "\t" + t.getDeparture()
+                        + "\t" + t.getDestination() + "\t" + t.getNum_seats_available());
+    }
+
+    public LoadResult loadBookings(Booking[] bookings) throws SQLException {
+        register(DictionaryTable.BOOKING_STATUS, bookings, Booking::getBooking_status);
+        LoadResult result = load("Bookings", CarPoolingSystem.INSERT_BOOKINGS_SQL, bookings,
+                CarPoolingSystem.BOOKING_BINDER,
+                b -> b.getTripID() + "\t" + b.getPIN() + "\t" + b.getBooking_status());
+
+        // Rejected rows can be anywhere in the array, so recount instead of adding
+        DriverStatsTable.rebuild(connection);
+        if (!connection.getAutoCommit()) {
+            connection.commit();
+        }
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (rejectWriter != null) {
+            rejectWriter.close();
+            rejectWriter = null;
+        }
+    }
+
+    // Dictionary values are committed up front, so rolling back a failed batch keeps them
+    private <T> void register(int category, T[] rows, Function<T, String> column) throws SQLException {
+        DictionaryTable.register(connection, category, rows, column);
+        if (!connection.getAutoCommit()) {
+            connection.commit();
+        }
+    }
+
+    private <T> LoadResult load(String table, String insertSQL, T[] rows, RowBinder<T> binder,
+                                Function<T, String> formatter) throws SQLException {
+        int loaded = 0;
+        int rejected = 0;
+        boolean autoCommit = connection.getAutoCommit();
+
+        connection.setAutoCommit(false);
+        try (PreparedStatement preparedStatement = CancellableCall.track(connection.prepareStatement(insertSQL))) {
+            for (int from = 0; from < rows.length; from += batchSize) {
+                int to = Math.min(from + batchSize, rows.length);
+
+                try {
+                    for (int i = from; i < to; i++) {
+                        binder.bind(preparedStatement, rows[i]);
+                        preparedStatement.addBatch();
+                    }
+                    loaded += CarPoolingSystem.countRows(preparedStatement.executeBatch());
+                    connection.commit();
+                    continue;
+                } catch (SQLException e) {
+                    preparedStatement.clearBatch();
+                    connection.rollback();
+                }
+
+                // Replay the failed batch one row at a time to find the bad rows
+                for (int i = from; i < to; i++) {
+                    Savepoint savepoint = connection.setSavepoint();
+                    try {
+                        binder.bind(preparedStatement, rows[i]);
+                        loaded += preparedStatement.executeUpdate();
+                        connection.releaseSavepoint(savepoint);
+                    } catch (SQLException e) {
+                        connection.rollback(savepoint);
+                        reject(table, formatter.apply(rows[i]), e);
+                        rejected++;
+                    }
+                }
+                connection.commit();
+            }
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+
+        return new LoadResult(table, loaded, rejected);
+    }
+
+    private void reject(String table, String row, SQLException cause) throws SQLException {
+        String reason = cause.getMessage() == null ? cause.toString() : cause.getMessage();
+        // Keep one reject per line: drivers like H2 append the statement text after a newline
+        int newline = reason.indexOf('\n');
+        if (newline >= 0) {
+            reason = reason.substring(0, newline);
+        }
+        reason = reason.replace('\t', ' ').trim();
+
+        try {
+            if (rejectWriter == null) {
+                rejectWriter = new BufferedWriter(FileOperations.createFileWriter(rejectFilePath));
+            }
+            rejectWriter.write(table + "\t" + row + "\t" + reason + System.lineSeparator());
+        } catch (IOException e) {
+            throw new SQLException("Cannot write reject file " + rejectFilePath, e);
+        }
+    }
+
+    /**
+     * Outcome of one load call.
+     */
+    public static class LoadResult {
+        private final String table;
+        private final int loaded;
+        private final int rejected;
+
+        public LoadResult(String table, int loaded, int rejected) {
+            this.table = table;
+            this.loaded = loaded;
+            this.rejected = rejected;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public int getLoaded() {
+            return loaded;
+        }
+
+        public int getRejected() {
+            return rejected;
+        }
+
+        @Override
+        public String toString() {
+            return "LoadResult{" +
+                    "table='" + table + '\'' +
+                    ", loaded=" + loaded +
+                    ", rejected=" + rejected +
+                    '}';
+        }
+    }
+}
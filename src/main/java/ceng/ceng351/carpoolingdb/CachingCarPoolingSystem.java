@@ -0,0 +1,433 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * ICarPoolingSystem decorator that memoizes query results per method and parameters.
+ *
+ * Each query method declares the tables it reads. A write method that changes rows drops exactly
+ * the entries that read one of the tables it writes, so e.g. updateDriverRatings() keeps the
+ * cached passenger queries. Entries are also dropped after a time to live, and the least
+ * recently used entry goes once more than maxEntries are cached.
+ *
+ * Thread-safe if the delegate is (e.g. PooledCarPoolingSystem). A query that overlaps a write of
+ * one of its tables returns its result without caching it, as it may have seen the old rows.
+ * Cached arrays are copied on the way out, but the result objects in them are shared: callers
+ * must not modify them.
+ */
+public class CachingCarPoolingSystem implements ICarPoolingSystem {
+
+    static final int DEFAULT_MAX_ENTRIES = 256;
+    static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * The tables of the schema, as dependencies of the cached queries.
+     */
+    public enum Table {
+        PARTICIPANTS, PASSENGERS, DRIVERS, CARS, TRIPS, BOOKINGS
+    }
+
+    private static final Set<Table> ALL_TABLES = Collections.unmodifiableSet(EnumSet.allOf(Table.class));
+
+    private final ICarPoolingSystem delegate;
+    private final int maxEntries;
+    private final long ttlNanos;
+
+    // Access order, so the eldest entry is the least recently used result
+    private final LinkedHashMap<List<Object>, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Bumped by every write of the table; guarded by this, like the counters below
+    private final long[] tableVersions = new long[Table.values().length];
+
+    private long hits;
+    private long misses;
+    private long invalidations;
+    private long evictions;
+    private long expirations;
+
+    public CachingCarPoolingSystem(ICarPoolingSystem delegate) {
+        this(delegate, DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param ttl time an entry stays valid; 0 keeps entries until a write or eviction drops them.
+     */
+    public CachingCarPoolingSystem(ICarPoolingSystem delegate, int maxEntries, long ttl, TimeUnit unit) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("maxEntries must be >= 0: " + maxEntries);
+        }
+        if (ttl < 0) {
+            throw new IllegalArgumentException("ttl must be >= 0: " + ttl);
+        }
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    public ICarPoolingSystem getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Drops every cached result, e.g. after the tables were changed behind the decorator's back.
+     */
+    public synchronized void invalidateAll() {
+        invalidate(ALL_TABLES);
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(maxEntries, entries.size(), hits, misses, invalidations, evictions, expirations);
+    }
+
+    @Override
+    public void initialize(Connection connection) {
+        delegate.initialize(connection);
+        invalidateAll();
+    }
+
+    @Override
+    public Driver[] getAllDrivers() {
+        return cached(tables(Table.DRIVERS), delegate::getAllDrivers, "getAllDrivers");
+    }
+
+    @Override
+    public int createTables() {
+        return write(ALL_TABLES, delegate::createTables, true);
+    }
+
+    @Override
+    public int dropTables() {
+        return write(ALL_TABLES, delegate::dropTables, true);
+    }
+
+    @Override
+    public int insertParticipants(Participant[] participants) {
+        return write(tables(Table.PARTICIPANTS), () -> delegate.insertParticipants(participants), false);
+    }
+
+    @Override
+    public int insertPassengers(Passenger[] passengers) {
+        return write(tables(Table.PASSENGERS), () -> delegate.insertPassengers(passengers), false);
+    }
+
+    @Override
+    public int insertDrivers(Driver[] drivers) {
+        return write(tables(Table.DRIVERS), () -> delegate.insertDrivers(drivers), false);
+    }
+
+    @Override
+    public int insertCars(Car[] cars) {
+        return write(tables(Table.CARS), () -> delegate.insertCars(cars), false);
+    }
+
+    @Override
+    public int insertTrips(Trip[] trips) {
+        return write(tables(Table.TRIPS), () -> delegate.insertTrips(trips), false);
+    }
+
+    @Override
+    public int insertBookings(Booking[] bookings) {
+        return write(tables(Table.BOOKINGS), () -> delegate.insertBookings(bookings), false);
+    }
+
+    @Override
+    public Participant[] getBothPassengersAndDrivers() {
+        return cached(tables(Table.PARTICIPANTS, Table.PASSENGERS, Table.DRIVERS),
+                delegate::getBothPassengersAndDrivers, "getBothPassengersAndDrivers");
+    }
+
+    @Override
+    public QueryResult.DriverPINNameAgeRating[] getDriversWithNoCars() {
+        return cached(tables(Table.PARTICIPANTS, Table.DRIVERS, Table.CARS),
+                delegate::getDriversWithNoCars, "getDriversWithNoCars");
+    }
+
+    @Override
+    public int deleteDriversWithNoCars() {
+        return write(tables(Table.DRIVERS), delegate::deleteDriversWithNoCars, false);
+    }
+
+    @Override
+    public Car[] getCarsWithNoTrips() {
+        return cached(tables(Table.CARS, Table.TRIPS), delegate::getCarsWithNoTrips, "getCarsWithNoTrips");
+    }
+
+    @Override
+    public Passenger[] getPassengersWithNoBooks() {
+        return cached(tables(Table.PASSENGERS, Table.BOOKINGS),
+                delegate::getPassengersWithNoBooks, "getPassengersWithNoBooks");
+    }
+
+    @Override
+    public Trip[] getTripsFromToCitiesOnSpecificDate(String departure, String destination, String date) {
+        return cached(tables(Table.TRIPS),
+                () -> delegate.getTripsFromToCitiesOnSpecificDate(departure, destination, date),
+                "getTripsFromToCitiesOnSpecificDate", departure, destination, date);
+    }
+
+    @Override
+    public QueryResult.PassengerPINNameAgeMembershipStatus[] getPassengersWithBookingsToAllTripsForCity(String city) {
+        return cached(tables(Table.PARTICIPANTS, Table.PASSENGERS, Table.TRIPS, Table.BOOKINGS),
+                () -> delegate.getPassengersWithBookingsToAllTripsForCity(city),
+                "getPassengersWithBookingsToAllTripsForCity", city);
+    }
+
+    @Override
+    public Integer[] getDriverCarsWithAtMost2Bookings(int driverPIN) {
+        return cached(tables(Table.CARS, Table.TRIPS, Table.BOOKINGS),
+                () -> delegate.getDriverCarsWithAtMost2Bookings(driverPIN),
+                "getDriverCarsWithAtMost2Bookings", driverPIN);
+    }
+
+    @Override
+    public Double getAvgAgeOfPassengersDepartFromCityBetweenTwoDates(String city, String start_date, String end_date) {
+        return cached(tables(Table.PARTICIPANTS, Table.TRIPS, Table.BOOKINGS),
+                () -> delegate.getAvgAgeOfPassengersDepartFromCityBetweenTwoDates(city, start_date, end_date),
+                "getAvgAgeOfPassengersDepartFromCityBetweenTwoDates", city, start_date, end_date);
+    }
+
+    @Override
+    public QueryResult.PassengerPINNameAgeMembershipStatus[] getPassengerInGivenTrip(int TripID) {
+        return cached(tables(Table.PARTICIPANTS, Table.PASSENGERS, Table.BOOKINGS),
+                () -> delegate.getPassengerInGivenTrip(TripID), "getPassengerInGivenTrip", TripID);
+    }
+
+    @Override
+    public QueryResult.DriverScoreRatingNumberOfBookingsPIN[] getDriversScores() {
+        return cached(tables(Table.DRIVERS, Table.CARS, Table.TRIPS, Table.BOOKINGS),
+                delegate::getDriversScores, "getDriversScores");
+    }
+
+    @Override
+    public QueryResult.CityAndAverageDriverRating[] getDriversAverageRatingsToEachDestinatedCity() {
+        return cached(tables(Table.DRIVERS, Table.CARS, Table.TRIPS),
+                delegate::getDriversAverageRatingsToEachDestinatedCity, "getDriversAverageRatingsToEachDestinatedCity");
+    }
+
+    @Override
+    public QueryResult.MembershipStatusAndTotalBookings[] getTotalBookingsEachMembershipStatus() {
+        return cached(tables(Table.PASSENGERS, Table.BOOKINGS),
+                delegate::getTotalBookingsEachMembershipStatus, "getTotalBookingsEachMembershipStatus");
+    }
+
+    @Override
+    public int updateDriverRatings() {
+        return write(tables(Table.DRIVERS), delegate::updateDriverRatings, false);
+    }
+
+    @Override
+    public Trip[] getTripsFromCity(String city) {
+        return cached(tables(Table.TRIPS), () -> delegate.getTripsFromCity(city), "getTripsFromCity", city);
+    }
+
+    @Override
+    public Trip[] getTripsWithNoBooks() {
+        return cached(tables(Table.TRIPS, Table.BOOKINGS), delegate::getTripsWithNoBooks, "getTripsWithNoBooks");
+    }
+
+    @Override
+    public QueryResult.DriverPINandTripIDandNumberOfBookings[] getTheMostBookedTripsPerDriver() {
+        return cached(tables(Table.CARS, Table.TRIPS, Table.BOOKINGS),
+                delegate::getTheMostBookedTripsPerDriver, "getTheMostBookedTripsPerDriver");
+    }
+
+    @Override
+    public QueryResult.FullCars[] getFullCars() {
+        return cached(tables(Table.PARTICIPANTS, Table.CARS, Table.TRIPS, Table.BOOKINGS),
+                delegate::getFullCars, "getFullCars");
+    }
+
+    private static Set<Table> tables(Table first, Table... rest) {
+        return EnumSet.of(first, rest);
+    }
+
+    private <T> T cached(Set<Table> tables, Supplier<T> query, String method, Object... parameters) {
+        List<Object> key = key(method, parameters);
+        long version;
+
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (ttlNanos == 0 || System.nanoTime() - entry.expiresAt < 0) {
+                    hits++;
+                    return copy(entry.<T>value());
+                }
+                entries.remove(key);
+                expirations++;
+            }
+            misses++;
+            version = version(tables);
+        }
+
+        T value = query.get();
+
+        synchronized (this) {
+            // A write of a table the query read ran meanwhile: the result may predate it
+            if (maxEntries > 0 && version(tables) == version) {
+                entries.put(key, new Entry(value, tables, System.nanoTime() + ttlNanos));
+                evictOverflow();
+            }
+        }
+
+        return copy(value);
+    }
+
+    // Writes that change no rows keep the cache, except for createTables() and dropTables()
+    private int write(Set<Table> tables, IntSupplier write, boolean always) {
+        int rows = write.getAsInt();
+        if (rows > 0 || always) {
+            synchronized (this) {
+                invalidate(tables);
+            }
+        }
+        return rows;
+    }
+
+    private void invalidate(Set<Table> tables) {
+        for (Table table : tables) {
+            tableVersions[table.ordinal()]++;
+        }
+
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (!Collections.disjoint(iterator.next().tables, tables)) {
+                iterator.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    // Versions only grow, so the sum changes whenever one of the tables is written
+    private long version(Set<Table> tables) {
+        long version = 0;
+        for (Table table : tables) {
+            version += tableVersions[table.ordinal()];
+        }
+        return version;
+    }
+
+    private void evictOverflow() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries) {
+            eldest.next();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private static List<Object> key(String method, Object[] parameters) {
+        Object[] key = new Object[parameters.length + 1];
+        key[0] = method;
+        System.arraycopy(parameters, 0, key, 1, parameters.length);
+        return Arrays.asList(key);
+    }
+
+    // Callers get their own array, so reordering it does not change the cached result
+    @SuppressWarnings("unchecked")
+    private static <T> T copy(T value) {
+        if (value instanceof Object[]) {
+            return (T) ((Object[]) value).clone();
+        }
+        return value;
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final Set<Table> tables;
+        private final long expiresAt;       // System.nanoTime()
+
+        Entry(Object value, Set<Table> tables, long expiresAt) {
+            this.value = value;
+            this.tables = tables;
+            this.expiresAt = expiresAt;
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> T value() {
+            return (T) value;
+        }
+    }
+
+    /**
+     * Point-in-time cache metrics. Invalidations count the entries dropped by writes, evictions
+     * those dropped for space and expirations those found past their time to live.
+     */
+    public static class Stats {
+        private final int maxEntries;
+        private final int size;
+        private final long hits;
+        private final long misses;
+        private final long invalidations;
+        private final long evictions;
+        private final long expirations;
+
+        public Stats(int maxEntries, int size, long hits, long misses, long invalidations, long evictions,
+                     long expirations) {
+            this.maxEntries = maxEntries;
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+            this.invalidations = invalidations;
+            this.evictions = evictions;
+            this.expirations = expirations;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getInvalidations() {
+            return invalidations;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getExpirations() {
+            return expirations;
+        }
+
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0.0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return "CachingCarPoolingSystem.Stats{" +
+                    "maxEntries=" + maxEntries +
+                    ", size=" + size +
+                    ", hits=" + hits +
+                    ", misses=" + misses +
+                    ", invalidations=" + invalidations +
+                    ", evictions=" + evictions +
+                    ", expirations=" + expirations +
+                    ", hitRate=" + String.format(Locale.US, "%.3f", getHitRate()) +
+                    '}';
+        }
+    }
+}
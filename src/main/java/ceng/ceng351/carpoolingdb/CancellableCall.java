@@ -0,0 +1,98 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lets another thread cancel a call that runs on this one, for AsyncCarPoolingSystem.
+ *
+ * While a call is entered on a thread, StatementCache reports every statement it hands out and
+ * gets back, so cancel() can call Statement.cancel() on those still running. Statements that do
+ * not come from a StatementCache (cursors, index loads, DDL, DriverStats updates) are reported
+ * through track() instead. A statement is only cancelled between prepare() and release(), or
+ * between track() and close(), and never once its connection went back to the pool, so a
+ * cancel cannot hit a statement of another call. Statements started after cancel() fail right
+ * away.
+ */
+final class CancellableCall {
+
+    private static final ThreadLocal<CancellableCall> CURRENT = new ThreadLocal<>();
+
+    // Guarded by this
+    private final List<PreparedStatement> running = new ArrayList<>();
+    private boolean cancelled;
+
+    static CancellableCall current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * preparedStatement, which the call entered on this thread, if any, can cancel until it is
+     * closed. Throws, closing preparedStatement, if the call was cancelled already.
+     */
+    static PreparedStatement track(PreparedStatement preparedStatement) throws SQLException {
+        CancellableCall call = current();
+        if (call == null) {
+            return preparedStatement;
+        }
+        try {
+            call.started(preparedStatement);
+        } catch (SQLException e) {
+            preparedStatement.close();
+            throw e;
+        }
+        return (PreparedStatement) Proxy.newProxyInstance(CancellableCall.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("close")) {
+                        call.finished(preparedStatement);
+                    }
+                    try {
+                        return method.invoke(preparedStatement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    void enter() {
+        CURRENT.set(this);
+    }
+
+    void exit() {
+        CURRENT.remove();
+        connectionReleased();
+    }
+
+    /**
+     * Forgets the running statements, as their connection is about to be used by someone else.
+     */
+    synchronized void connectionReleased() {
+        running.clear();
+    }
+
+    synchronized void started(PreparedStatement preparedStatement) throws SQLException {
+        if (cancelled) {
+            throw new SQLException("Call was cancelled");
+        }
+        running.add(preparedStatement);
+    }
+
+    synchronized void finished(PreparedStatement preparedStatement) {
+        running.remove(preparedStatement);
+    }
+
+    synchronized void cancel() {
+        cancelled = true;
+        for (PreparedStatement preparedStatement : running) {
+            try {
+                preparedStatement.cancel();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
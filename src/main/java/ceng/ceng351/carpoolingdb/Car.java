@@ -4,14 +4,14 @@ public class Car {
 
     private int CarID;
     private int PIN; // Driver's PIN
-    private String color;
-    private String brand;
+    private int color;      // code in StringDictionary.COLORS
+    private int brand;      // code in StringDictionary.BRANDS
 
     public Car(int CarID, int PIN, String color, String brand) {
         this.CarID = CarID;
         this.PIN = PIN;
-        this.color = color;
-        this.brand = brand;
+        this.color = StringDictionary.COLORS.encode(color);
+        this.brand = StringDictionary.BRANDS.encode(brand);
     }
 
     public int getCarID() {
@@ -31,19 +31,27 @@ public class Car {
     }
 
     public String getColor() {
-        return color;
+        return StringDictionary.COLORS.decode(color);
     }
 
     public void setColor(String color) {
-        this.color = color;
+        this.color = StringDictionary.COLORS.encode(color);
+    }
+
+    public int getColorCode() {
+        return color;
     }
   
     public String getBrand() {
-        return brand;
+        return StringDictionary.BRANDS.decode(brand);
     }
   
     public void setBrand(String brand) {
-        this.brand = brand;
+        this.brand = StringDictionary.BRANDS.encode(brand);
+    }
+
+    public int getBrandCode() {
+        return brand;
     }
   
     @Override
@@ -51,8 +59,8 @@ public class Car {
         return "Car{" +
                 "CarID=" + CarID +
                 ", PIN=" + PIN +
-                ", color='" + color + '\'' +
-                ", brand='" + brand + '\'' +
+                ", color='" + getColor() + '\'' +
+                ", brand='" + getBrand() + '\'' +
                 '}';
     }
 }
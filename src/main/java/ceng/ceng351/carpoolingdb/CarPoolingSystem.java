@@ -1,8 +1,14 @@
 package ceng.ceng351.carpoolingdb;
 
 import java.sql.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
 
 public class CarPoolingSystem implements ICarPoolingSystem {
 
@@ -10,46 +16,298 @@ public class CarPoolingSystem implements ICarPoolingSystem {
     private static String user = "sa";          // H2 default username
     private static String password = "";        // H2 default password
 
+    static final String INSERT_PARTICIPANTS_SQL = "INSERT INTO Participants (PIN, p_name, age) VALUES (?, ?, ?)";
+    static final String INSERT_PASSENGERS_SQL =
+            "INSERT INTO Passengers (PIN, membership_status) " +
+                    "VALUES (?, " + DictionaryTable.codeOf(DictionaryTable.MEMBERSHIP_STATUS) + ")";
+    static final String INSERT_DRIVERS_SQL = "INSERT INTO Drivers (PIN, rating) VALUES (?, ?)";
+    static final String INSERT_CARS_SQL =
+            "INSERT INTO Cars (CarID, PIN, color, brand) " +
+                    "VALUES (?, ?, " + DictionaryTable.codeOf(DictionaryTable.COLOR) + ", " +
+                    DictionaryTable.codeOf(DictionaryTable.BRAND) + ")";
+    static final String INSERT_TRIPS_SQL =
+            "INSERT INTO Trips (TripID, CarID, date, departure, destination, num_seats_available) " +
+                    "VALUES (?, ?, ?, " + DictionaryTable.codeOf(DictionaryTable.CITY) + ", " +
+                    DictionaryTable.codeOf(DictionaryTable.CITY) + ", ?)";
+    static final String INSERT_BOOKINGS_SQL =
+            "INSERT INTO Bookings (TripID, PIN, booking_status) " +
+                    "VALUES (?, ?, " + DictionaryTable.codeOf(DictionaryTable.BOOKING_STATUS) + ")";
+
+    static final RowBinder<Participant> PARTICIPANT_BINDER = (preparedStatement, participant) -> {
+        preparedStatement.setInt(1, participant.getPIN());
+        preparedStatement.setString(2, participant.getP_name());
+        preparedStatement.setInt(3, participant.getAge());
+    };
+
+    static final RowBinder<Passenger> PASSENGER_BINDER = (preparedStatement, passenger) -> {
+        preparedStatement.setInt(1, passenger.getPIN());
+        preparedStatement.setString(2, passenger.getMembership_status());
+    };
+
+    static final RowBinder<Driver> DRIVER_BINDER = (preparedStatement, driver) -> {
+        preparedStatement.setInt(1, driver.getPIN());
+        preparedStatement.setDouble(2, driver.getRating());
+    };
+
+    static final RowBinder<Car> CAR_BINDER = (preparedStatement, car) -> {
+        preparedStatement.setInt(1, car.getCarID());
+        preparedStatement.setInt(2, car.getPIN());
+        preparedStatement.setString(3, car.getColor());
+        preparedStatement.setString(4, car.getBrand());
+    };
+
+    static final RowBinder<Trip> TRIP_BINDER = (preparedStatement, trip) -> {
+        preparedStatement.setInt(1, trip.getTripID());
+        preparedStatement.setInt(2, trip.getCarID());
+        preparedStatement.setObject(3, trip.getLocalDate());
+        preparedStatement.setString(4, trip.getDeparture());
+        preparedStatement.setString(5, trip.getDestination());
+        preparedStatement.setInt(6, trip.getNum_seats_available());
+    };
+
+    static final RowBinder<Booking> BOOKING_BINDER = (preparedStatement, booking) -> {
+        preparedStatement.setInt(1, booking.getTripID());
+        preparedStatement.setInt(2, booking.getPIN());
+        preparedStatement.setString(3, booking.getBooking_status());
+    };
+
     private Connection connection;
 
+    // Prepared statements of this connection, reused across calls
+    private StatementCache statementCache;
+
+    private int statementCacheSize = StatementCache.DEFAULT_MAX_SIZE;
+
+    // When set, createTables() leaves the secondary indexes to a later buildIndexes() call
+    private boolean deferIndexBuilds = false;
+
+    // Rows per executeBatch()/commit() chunk in the insert* methods; 0 keeps the row-by-row path
+    private int batchSize = 0;
+
+    static final int DEFAULT_FETCH_SIZE = 256;
+
+    // Rows per round trip for the cursors of the publish*() and forEach*() methods
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+
+    // Trip bitmaps for query 9; null unless enabled with setBookingBitmapIndexEnabled()
+    private BookingBitmapIndex bookingBitmapIndex;
+
+    // Trip searches of queries 8 and 18; null unless enabled with setRouteIndexEnabled()
+    private RouteIndex routeIndex;
+
+    // Per-city age totals for query 11; null unless enabled with setAgeByDateIndexEnabled()
+    private AgeByDateIndex ageByDateIndex;
+
     public void initialize(Connection connection) {
         this.connection = connection;
+        this.statementCache = new StatementCache(connection, this.statementCacheSize);
+    }
+
+    /**
+     * Maximum number of prepared statements kept open for reuse; the least recently used one is
+     * closed beyond that. Pass 0 to prepare and close a statement on every call.
+     */
+    public void setStatementCacheSize(int statementCacheSize) {
+        if (statementCacheSize < 0) {
+            throw new IllegalArgumentException("statementCacheSize must be >= 0: " + statementCacheSize);
+        }
+        this.statementCacheSize = statementCacheSize;
+        if (this.statementCache != null) {
+            this.statementCache.setMaxSize(statementCacheSize);
+        }
+    }
+
+    // Closes the cached statements, e.g. before the connection is closed
+    void clearStatementCache() {
+        if (this.statementCache != null) {
+            this.statementCache.clear();
+        }
+    }
+
+    public StatementCache.Stats getStatementCacheStats() {
+        return this.statementCache.getStats();
+    }
+
+    /**
+     * Switches the insert* methods to batched loading: rows are sent with addBatch()/executeBatch()
+     * and committed every batchSize rows. Pass 0 to go back to one executeUpdate() per row.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 0) {
+            throw new IllegalArgumentException("batchSize must be >= 0: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Rows the cursors of the streaming publish*() and forEach*() methods ask the driver for at
+     * a time, which bounds how much of a result is in memory at once.
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("fetchSize must be > 0: " + fetchSize);
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * With deferIndexBuilds set, createTables() creates only the tables and their keys; call
+     * buildIndexes() once the bulk load is done so each index is built in one pass.
+     */
+    public void setDeferIndexBuilds(boolean deferIndexBuilds) {
+        this.deferIndexBuilds = deferIndexBuilds;
+    }
+
+    /**
+     * Creates the secondary indexes of IndexManager that do not exist yet.
+     *
+     * @return the number of index statements executed.
+     */
+    public int buildIndexes() {
+        return new IndexManager(this.connection).createIndexes();
+    }
+
+    /**
+     * Recomputes the per-driver booking counts that getDriversScores() reads, e.g. after
+     * bookings were written without going through insertBookings().
+     */
+    public void rebuildDriverStats() {
+        try {
+            DriverStatsTable.rebuild(this.connection);
+        } catch (SQLException e) {
+            ErrorCounter.report(e);
+        }
+    }
+
+    /**
+     * Answers getPassengersWithBookingsToAllTripsForCity() from in-memory trip bitmaps (see
+     * BookingBitmapIndex) instead of the nested NOT EXISTS query. Enabling loads the bitmaps from
+     * the current tables; insertTrips() and insertBookings() keep them up to date afterwards.
+     * Rows written through any other connection or loader are not seen: enable the index again to
+     * reload it.
+     */
+    public void setBookingBitmapIndexEnabled(boolean enabled) {
+        this.bookingBitmapIndex = null;
+        if (!enabled) {
+            return;
+        }
+
+        BookingBitmapIndex index = new BookingBitmapIndex();
+        try {
+            index.load(this.connection);
+            this.bookingBitmapIndex = index;
+        } catch (SQLException e) {
+            ErrorCounter.report(e);
+        }
+    }
+
+    /**
+     * Answers getTripsFromToCitiesOnSpecificDate() and getTripsFromCity() from an in-memory
+     * RouteIndex, without a database round trip. Like the booking bitmap index, it is loaded from
+     * Trips when enabled, kept up to date by insertTrips(), and does not see rows written any
+     * other way until it is enabled again.
+     */
+    public void setRouteIndexEnabled(boolean enabled) {
+        this.routeIndex = null;
+        if (!enabled) {
+            return;
+        }
+
+        RouteIndex index = new RouteIndex();
+        try {
+            index.load(this.connection);
+            this.routeIndex = index;
+        } catch (SQLException e) {
+            ErrorCounter.report(e);
+        }
+    }
+
+    /**
+     * Answers getAvgAgeOfPassengersDepartFromCityBetweenTwoDates() from per-city Fenwick trees of
+     * confirmed bookings over trip dates (see AgeByDateIndex), so any date range takes O(log days).
+     * Loaded from the current tables when enabled and kept up to date by insertParticipants(),
+     * insertTrips() and insertBookings(); enable it again after writing rows any other way.
+     */
+    public void setAgeByDateIndexEnabled(boolean enabled) {
+        this.ageByDateIndex = null;
+        if (!enabled) {
+            return;
+        }
+
+        AgeByDateIndex index = new AgeByDateIndex();
+        try {
+            index.load(this.connection);
+            this.ageByDateIndex = index;
+        } catch (SQLException e) {
+            ErrorCounter.report(e);
+        }
     }
 
+    static final String GET_ALL_DRIVERS_SQL =
+            "SELECT PIN, rating FROM Drivers ORDER BY PIN ASC;";
+
+    static final String GET_ALL_DRIVERS_PAGE_SQL = keysetPage(GET_ALL_DRIVERS_SQL, "WHERE PIN >= ?");
+
     // Given: getAllDrivers()
     // All Drivers after Updating the Ratings
     @Override
     public Driver[] getAllDrivers() {
         List<Driver> drivers = new ArrayList<>();
 
-        String query = "SELECT PIN, rating FROM Drivers ORDER BY PIN ASC;";
-
         try {
-            PreparedStatement ps = this.connection.prepareStatement(query);
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                int PIN = rs.getInt("PIN");
-                double rating = rs.getDouble("rating");
-
-                // Create a Driver object with only PIN and rating
-                Driver driver = new Driver(PIN, rating);
-                drivers.add(driver);
+            PreparedStatement ps = this.statementCache.prepare(GET_ALL_DRIVERS_SQL);
+            try {
+                ResultSet rs = ps.executeQuery();
+                RowReader<Driver> reader = RowMappers.DRIVER.bind(rs);
+                while (rs.next()) {
+                    drivers.add(reader.read(rs));
+                }
+                rs.close();
+            } finally {
+                this.statementCache.release(ps);
             }
-            rs.close();
-            ps.close();
         } catch (SQLException e) {
-            e.printStackTrace();
+            ErrorCounter.report(e);
         }
 
         return drivers.toArray(new Driver[0]);
     }
 
+    /**
+     * getAllDrivers() one page at a time: at most limit drivers, starting after the page that
+     * returned the token after, or from the first driver if after is null. A token from another
+     * list is rejected with an IllegalArgumentException.
+     */
+    public Page<Driver> getAllDrivers(String after, int limit) {
+        return page("getAllDrivers", GET_ALL_DRIVERS_PAGE_SQL, RowMappers.DRIVER, Driver::getPIN, after, limit);
+    }
+
 
     // Create tables
     @Override
     public int createTables() {
         int tableCount = 0;
 
+        // Cached statements were planned against the previous schema
+        this.statementCache.clear();
+        if (this.bookingBitmapIndex != null) {
+            this.bookingBitmapIndex.clear();
+        }
+        if (this.routeIndex != null) {
+            this.routeIndex.clear();
+        }
+        if (this.ageByDateIndex != null) {
+            this.ageByDateIndex.clear();
+        }
+
         String createParticipants =
                 "CREATE TABLE Participants (" +
                         "    PIN INT PRIMARY KEY," +
@@ -60,7 +318,7 @@ public class CarPoolingSystem implements ICarPoolingSystem {
         String createPassengers =
                 "CREATE TABLE Passengers (" +
                         "    PIN INT PRIMARY KEY," +
-                        "    membership_status VARCHAR(20)," +
+                        "    membership_status INT," +
                         "    FOREIGN KEY (PIN) REFERENCES Participants(PIN)" +
                         ")";
 
@@ -75,8 +333,8 @@ public class CarPoolingSystem implements ICarPoolingSystem {
                 "CREATE TABLE Cars (" +
                         "    CarID INT PRIMARY KEY," +
                         "    PIN INT," +
-                        "    color VARCHAR(20)," +
-                        "    brand VARCHAR(20)," +
+                        "    color INT," +
+                        "    brand INT," +
                         "    FOREIGN KEY (PIN) REFERENCES Drivers(PIN)" +
                         ")";
 
@@ -84,9 +342,9 @@ public class CarPoolingSystem implements ICarPoolingSystem {
                 "CREATE TABLE Trips (" +
                         "    TripID INT PRIMARY KEY," +
                         "    CarID INT," +
-                        "    date VARCHAR(20)," +
-                        "    departure VARCHAR(50)," +
-                        "    destination VARCHAR(50)," +
+                        "    date DATE NOT NULL," +
+                        "    departure INT," +
+                        "    destination INT," +
                         "    num_seats_available INT," +
                         "    FOREIGN KEY (CarID) REFERENCES Cars(CarID)" +
                         ")";
@@ -95,7 +353,7 @@ public class CarPoolingSystem implements ICarPoolingSystem {
                 "CREATE TABLE Bookings (" +
                         "    TripID INT," +
                         "    PIN INT," +
-                        "    booking_status VARCHAR(20)," +
+                        "    booking_status INT," +
                         "    PRIMARY KEY (TripID, PIN)," +
                         "    FOREIGN KEY (TripID) REFERENCES Trips(TripID)," +
                         "    FOREIGN KEY (PIN) REFERENCES Passengers(PIN)" +
@@ -110,15 +368,33 @@ public class CarPoolingSystem implements ICarPoolingSystem {
                 createBookings
         };
 
+        // Codes of the text columns (DictionaryTable) and the per-driver booking counts
+        // (DriverStatsTable); like the indexes they are not counted
+        for (String statement : new String[]{DictionaryTable.CREATE_SQL, DriverStatsTable.CREATE_SQL}) {
+            try {
+                PreparedStatement preparedStatement =
+                        CancellableCall.track(this.connection.prepareStatement(statement));
+                preparedStatement.executeUpdate();
+                preparedStatement.close();
+            } catch (SQLException e) {
+                ErrorCounter.report(e);
+            }
+        }
+
         try {
             for (String statement : createTableStatements) {
-                PreparedStatement preparedStatement = this.connection.prepareStatement(statement);
+                PreparedStatement preparedStatement =
+                        CancellableCall.track(this.connection.prepareStatement(statement));
                 preparedStatement.executeUpdate();
                 preparedStatement.close();
                 tableCount++;
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            ErrorCounter.report(e);
+        }
+
+        if (tableCount == createTableStatements.length && !this.deferIndexBuilds) {
+            buildIndexes();
         }
 
         return tableCount;
@@ -129,6 +405,17 @@ public class CarPoolingSystem implements ICarPoolingSystem {
     public int dropTables() {
         int droppedCount = 0;
 
+        this.statementCache.clear();
+        if (this.bookingBitmapIndex != null) {
+            this.bookingBitmapIndex.clear();
+        }
+        if (this.routeIndex != null) {
+            this.routeIndex.clear();
+        }
+        if (this.ageByDateIndex != null) {
+            this.ageByDateIndex.clear();
+        }
+
         String[] tablesToDrop = {
                 "Bookings",
                 "Trips",
@@ -144,13 +431,21 @@ public class CarPoolingSystem implements ICarPoolingSystem {
 
         try {
             for (String dropStatement : tablesToDrop) {
-                PreparedStatement preparedStatement = this.connection.prepareStatement(dropStatement);
+                PreparedStatement preparedStatement =
+                        CancellableCall.track(this.connection.prepareStatement(dropStatement));
                 preparedStatement.executeUpdate();
                 preparedStatement.close();
                 droppedCount++;
             }
+
+            for (String statement : new String[]{DriverStatsTable.DROP_SQL, DictionaryTable.DROP_SQL}) {
+                PreparedStatement preparedStatement =
+                        CancellableCall.track(this.connection.prepareStatement(statement));
+                preparedStatement.executeUpdate();
+                preparedStatement.close();
+            }
         } catch (SQLException e) {
-            e.printStackTrace();
+            ErrorCounter.report(e);
         }
 
         return droppedCount;
@@ -161,25 +456,11 @@ public class CarPoolingSystem implements ICarPoolingSystem {
     // Insert Participants
     @Override
     public int insertParticipants(Participant[] participants) {
-        int rowsInserted = 0;
-        String insertSQL = "INSERT INTO Participants (PIN, p_name, age) VALUES (?, ?, ?)";
-
-        try {
-            PreparedStatement preparedStatement = this.connection.prepareStatement(insertSQL);
-
-            for (Participant participant : participants) {
-                preparedStatement.setInt(1, participant.getPIN());
-                preparedStatement.setString(2, participant.getP_name());
-                preparedStatement.setInt(3, participant.getAge());
-
-                rowsInserted += preparedStatement.executeUpdate();
-            }
+        int rowsInserted = insertRows(INSERT_PARTICIPANTS_SQL, participants, PARTICIPANT_BINDER);
 
-            preparedStatement.close();
-        } catch (SQLException e) {
-            e.printStackTrace();
+        if (this.ageByDateIndex != null) {
+            this.ageByDateIndex.addParticipants(participants, rowsInserted);
         }
-
         return rowsInserted;
     }
 
@@ -187,731 +468,1178 @@ public class CarPoolingSystem implements ICarPoolingSystem {
     // Insert Passengers
     @Override
     public int insertPassengers(Passenger[] passengers) {
-        int rowsInserted = 0;
-        String insertSQL = "INSERT INTO Passengers (PIN, membership_status) VALUES (?, ?)";
+        if (!registerValues(DictionaryTable.MEMBERSHIP_STATUS, passengers, Passenger::getMembership_status)) {
+            return 0;
+        }
+        return insertRows(INSERT_PASSENGERS_SQL, passengers, PASSENGER_BINDER);
+    }
 
-        try {
-            PreparedStatement preparedStatement = this.connection.prepareStatement(insertSQL);
 
-            for (Passenger passenger : passengers) {
-                preparedStatement.setInt(1, passenger.getPIN());
-                preparedStatement.setString(2, passenger.getMembership_status());
+    // Insert Drivers
+    @Override
+    public int insertDrivers(Driver[] drivers) {
+        return insertRows(INSERT_DRIVERS_SQL, drivers, DRIVER_BINDER);
+    }
 
-                rowsInserted += preparedStatement.executeUpdate();
-            }
 
-            preparedStatement.close();
-        } catch (SQLException e) {
-            e.printStackTrace();
+    // Insert Cars
+    @Override
+    public int insertCars(Car[] cars) {
+        if (!registerValues(DictionaryTable.COLOR, cars, Car::getColor)
+                || !registerValues(DictionaryTable.BRAND, cars, Car::getBrand)) {
+            return 0;
         }
-
-        return rowsInserted;
+        return insertRows(INSERT_CARS_SQL, cars, CAR_BINDER);
     }
 
-
-    // Insert Drivers
     @Override
-    public int insertDrivers(Driver[] drivers) {
-        int rowsInserted = 0;
-        String insertSQL = "INSERT INTO Drivers (PIN, rating) VALUES (?, ?)";
+    public int insertTrips(Trip[] trips) {
+        if (!registerValues(DictionaryTable.CITY, trips, Trip::getDeparture)
+                || !registerValues(DictionaryTable.CITY, trips, Trip::getDestination)) {
+            return 0;
+        }
+        int rowsInserted = insertRows(INSERT_TRIPS_SQL, trips, TRIP_BINDER);
 
-        try {
-            PreparedStatement preparedStatement = this.connection.prepareStatement(insertSQL);
+        if (this.bookingBitmapIndex != null) {
+            this.bookingBitmapIndex.addTrips(trips, rowsInserted);
+        }
+        if (this.routeIndex != null) {
+            this.routeIndex.addTrips(trips, rowsInserted);
+        }
+        if (this.ageByDateIndex != null) {
+            this.ageByDateIndex.addTrips(trips, rowsInserted);
+        }
+        return rowsInserted;
+    }
 
-            for (Driver driver : drivers) {
-                preparedStatement.setInt(1, driver.getPIN());
-                preparedStatement.setDouble(2, driver.getRating());
+    @Override
+    public int insertBookings(Booking[] bookings) {
+        if (!registerValues(DictionaryTable.BOOKING_STATUS, bookings, Booking::getBooking_status)) {
+            return 0;
+        }
+        int rowsInserted = insertRows(INSERT_BOOKINGS_SQL, bookings, BOOKING_BINDER);
 
-                rowsInserted += preparedStatement.executeUpdate();
-            }
+        if (this.bookingBitmapIndex != null) {
+            this.bookingBitmapIndex.addBookings(bookings, rowsInserted);
+        }
+        if (this.ageByDateIndex != null) {
+            this.ageByDateIndex.addBookings(bookings, rowsInserted);
+        }
 
-            preparedStatement.close();
+        // Both insert paths stop at the first failing row, so the inserted rows are a prefix
+        try {
+            DriverStatsTable.addBookings(this.connection, bookings, rowsInserted);
         } catch (SQLException e) {
-            e.printStackTrace();
+            ErrorCounter.report(e);
         }
-
         return rowsInserted;
     }
 
+    // Helper method to insert rows either one by one (batchSize == 0) or in batched transaction chunks
+    private <T> int insertRows(String insertSQL, T[] rows, RowBinder<T> binder) {
+        if (this.batchSize <= 0) {
+            return insertRowByRow(insertSQL, rows, binder);
+        }
+        return insertBatched(insertSQL, rows, binder);
+    }
 
-    // Insert Cars
-    @Override
-    public int insertCars(Car[] cars) {
+    // Adds the text values of the rows to the Dictionary table before they are inserted
+    private <T> boolean registerValues(int category, T[] rows, Function<T, String> column) {
+        try {
+            DictionaryTable.register(this.connection, category, rows, column);
+            return true;
+        } catch (SQLException e) {
+            ErrorCounter.report(e);
+            return false;
+        }
+    }
+
+    // One executeUpdate() per row on the connection's current commit mode
+    private <T> int insertRowByRow(String insertSQL, T[] rows, RowBinder<T> binder) {
         int rowsInserted = 0;
-        String insertSQL = "INSERT INTO Cars (CarID, PIN, color, brand) VALUES (?, ?, ?, ?)";
 
         try {
-            PreparedStatement preparedStatement = this.connection.prepareStatement(insertSQL);
-
-            for (Car car : cars) {
-                preparedStatement.setInt(1, car.getCarID());
-                preparedStatement.setInt(2, car.getPIN());
-                preparedStatement.setString(3, car.getColor());
-                preparedStatement.setString(4, car.getBrand());
+            PreparedStatement preparedStatement = this.statementCache.prepare(insertSQL);
+            try {
+                for (T row : rows) {
+                    binder.bind(preparedStatement, row);
 
-                rowsInserted += preparedStatement.executeUpdate();
+                    rowsInserted += preparedStatement.executeUpdate();
+                }
+            } finally {
+                this.statementCache.release(preparedStatement);
             }
-
-            preparedStatement.close();
         } catch (SQLException e) {
-            e.printStackTrace();
+            ErrorCounter.report(e);
         }
 
         return rowsInserted;
     }
 
-    @Override
-    public int insertTrips(Trip[] trips) {
+    // addBatch() per row, executeBatch() + commit() every batchSize rows.
+    // A failing chunk is rolled back, so the returned count is exactly the committed rows.
+    private <T> int insertBatched(String insertSQL, T[] rows, RowBinder<T> binder) {
         int rowsInserted = 0;
-        String insertSQL = "INSERT INTO Trips (TripID, CarID, date, departure, destination, num_seats_available) " +
-                "VALUES (?, ?, ?, ?, ?, ?)";
+        boolean autoCommit = true;
 
         try {
-            PreparedStatement preparedStatement = this.connection.prepareStatement(insertSQL);
+            autoCommit = this.connection.getAutoCommit();
+            this.connection.setAutoCommit(false);
 
-            for (Trip trip : trips) {
-                preparedStatement.setInt(1, trip.getTripID());
-                preparedStatement.setInt(2, trip.getCarID());
-                preparedStatement.setString(3, trip.getDate());
-                preparedStatement.setString(4, trip.getDeparture());
-                preparedStatement.setString(5, trip.getDestination());
-                preparedStatement.setInt(6, trip.getNum_seats_available());
+            PreparedStatement preparedStatement = this.statementCache.prepare(insertSQL);
+            try {
+                int pending = 0;
 
-                rowsInserted += preparedStatement.executeUpdate();
-            }
+                for (T row : rows) {
+                    binder.bind(preparedStatement, row);
+                    preparedStatement.addBatch();
+
+                    if (++pending == this.batchSize) {
+                        rowsInserted += executeChunk(preparedStatement);
+                        pending = 0;
+                    }
+                }
 
-            preparedStatement.close();
+                if (pending > 0) {
+                    rowsInserted += executeChunk(preparedStatement);
+                }
+            } finally {
+                // A cached statement must not carry a failed chunk into the next call
+                preparedStatement.clearBatch();
+                this.statementCache.release(preparedStatement);
+            }
         } catch (SQLException e) {
-            e.printStackTrace();
+            rollbackQuietly();
+            ErrorCounter.report(e);
+        } finally {
+            try {
+                this.connection.setAutoCommit(autoCommit);
+            } catch (SQLException e) {
+                ErrorCounter.report(e);
+            }
         }
 
         return rowsInserted;
     }
 
-    @Override
-    public int insertBookings(Booking[] bookings) {
-        int rowsInserted = 0;
-        String insertSQL = "INSERT INTO Bookings (TripID, PIN, booking_status) VALUES (?, ?, ?)";
-
-        try {
-            PreparedStatement preparedStatement = this.connection.prepareStatement(insertSQL);
-
-            for (Booking booking : bookings) {
-                preparedStatement.setInt(1, booking.getTripID());
-                preparedStatement.setInt(2, booking.getPIN());
-                preparedStatement.setString(3, booking.getBooking_status());
+    // Executes the pending batch and commits it as one transaction
+    private int executeChunk(PreparedStatement preparedStatement) throws SQLException {
+        int[] updateCounts = preparedStatement.executeBatch();
+        this.connection.commit();
+        return countRows(updateCounts);
+    }
 
-                rowsInserted += preparedStatement.executeUpdate();
+    // Drivers may report SUCCESS_NO_INFO instead of a row count; a single-row INSERT then affected one row
+    static int countRows(int[] updateCounts) {
+        int rows = 0;
+        for (int updateCount : updateCounts) {
+            if (updateCount > 0) {
+                rows += updateCount;
+            } else if (updateCount == Statement.SUCCESS_NO_INFO) {
+                rows++;
             }
+        }
+        return rows;
+    }
 
-            preparedStatement.close();
+    private void rollbackQuietly() {
+        try {
+            this.connection.rollback();
         } catch (SQLException e) {
-            e.printStackTrace();
+            ErrorCounter.report(e);
         }
-
-        return rowsInserted;
     }
 
 
+    static final String GET_BOTH_PASSENGERS_AND_DRIVERS_SQL =
+            "SELECT DISTINCT p.PIN, p.p_name, p.age " +
+                    "FROM Participants p " +
+                    "INNER JOIN Drivers d ON p.PIN = d.PIN " +
+                    "INNER JOIN Passengers ps ON p.PIN = ps.PIN " +
+                    "ORDER BY p.PIN ASC";
+
+    static final String GET_BOTH_PASSENGERS_AND_DRIVERS_PAGE_SQL =
+            keysetPage(GET_BOTH_PASSENGERS_AND_DRIVERS_SQL, "WHERE p.PIN >= ?");
+
     // 3 Find all participants who are recorded as both drivers and passengers
     @Override
     public Participant[] getBothPassengersAndDrivers() {
         List<Participant> result = new ArrayList<>();
 
-        String query =
-                "SELECT DISTINCT p.PIN, p.p_name, p.age " +
-                        "FROM Participants p " +
-                        "INNER JOIN Drivers d ON p.PIN = d.PIN " +
-                        "INNER JOIN Passengers ps ON p.PIN = ps.PIN " +
-                        "ORDER BY p.PIN ASC";
-
         try {
-            PreparedStatement preparedStatement = this.connection.prepareStatement(query);
-            ResultSet resultSet = preparedStatement.executeQuery();
+            PreparedStatement preparedStatement = this.statementCache.prepare(GET_BOTH_PASSENGERS_AND_DRIVERS_SQL);
+            try {
+                ResultSet resultSet = preparedStatement.executeQuery();
+                RowReader<Participant> reader = RowMappers.PARTICIPANT.bind(resultSet);
 
-            while (resultSet.next()) {
-                String pName = resultSet.getString("p_name");
-                int age = resultSet.getInt("age");
-                int pin = resultSet.getInt("PIN");
+                while (resultSet.next()) {
+                    result.add(reader.read(resultSet));
+                }
 
-                Participant participant = new Participant(pin, pName, age);
-                result.add(participant);
+                resultSet.close();
+            } finally {
+                this.statementCache.release(preparedStatement);
             }
-
-            resultSet.close();
-            preparedStatement.close();
         } catch (SQLException e) {
-            e.printStackTrace();
+            ErrorCounter.report(e);
         }
 
         return result.toArray(new Participant[0]);
     }
 
+    /**
+     * getBothPassengersAndDrivers() one page at a time, see getAllDrivers(String, int).
+     */
+    public Page<Participant> getBothPassengersAndDrivers(String after, int limit) {
+        return page("getBothPassengersAndDrivers", GET_BOTH_PASSENGERS_AND_DRIVERS_PAGE_SQL, RowMappers.PARTICIPANT, Participant::getPIN, after, limit);
+    }
+
+
+    static final String GET_DRIVERS_WITH_NO_CARS_SQL =
+            "SELECT p.PIN, p.p_name, p.age, d.rating " +
+                    "FROM Drivers d " +
+                    "INNER JOIN Participants p ON d.PIN = p.PIN " +
+                    "LEFT JOIN Cars c ON d.PIN = c.PIN " +
+                    "WHERE c.PIN IS NULL " +
+                    "ORDER BY p.PIN ASC";
+
+    static final String GET_DRIVERS_WITH_NO_CARS_PAGE_SQL = keysetPage(GET_DRIVERS_WITH_NO_CARS_SQL, "AND p.PIN >= ?");
 
     // 4 Find the PINs, names, ages, and ratings of drivers who do not own any cars
     @Override
     public QueryResult.DriverPINNameAgeRating[] getDriversWithNoCars() {
         List<QueryResult.DriverPINNameAgeRating> result = new ArrayList<>();
 
-        String query =
-                "SELECT p.PIN, p.p_name, p.age, d.rating " +
-                        "FROM Drivers d " +
-                        "INNER JOIN Participants p ON d.PIN = p.PIN " +
-                        "LEFT JOIN Cars c ON d.PIN = c.PIN " +
-                        "WHERE c.PIN IS NULL " +
-                        "ORDER BY p.PIN ASC";
-
         try {
-            PreparedStatement preparedStatement = this.connection.prepareStatement(query);
-            ResultSet resultSet = preparedStatement.executeQuery();
-
-            while (resultSet.next()) {
-                String pName = resultSet.getString("p_name");
-                int age = resultSet.getInt("age");
-                int pin = resultSet.getInt("PIN");
-                double rating = resultSet.getDouble("rating");
+            PreparedStatement preparedStatement = this.statementCache.prepare(GET_DRIVERS_WITH_NO_CARS_SQL);
+            try {
+                ResultSet resultSet = preparedStatement.executeQuery();
+                RowReader<QueryResult.DriverPINNameAgeRating> reader =
+                        RowMappers.DRIVER_PIN_NAME_AGE_RATING.bind(resultSet);
+
+                while (resultSet.next()) {
+                    result.add(reader.read(resultSet));
+                }
 
-                QueryResult.DriverPINNameAgeRating driver =
-                        new QueryResult.DriverPINNameAgeRating(pin, pName, age, rating);
-                result.add(driver);
+                resultSet.close();
+            } finally {
+                this.statementCache.release(preparedStatement);
             }
-
-            resultSet.close();
-            preparedStatement.close();
         } catch (SQLException e) {
-            e.printStackTrace();
+            ErrorCounter.report(e);
         }
 
         return result.toArray(new QueryResult.DriverPINNameAgeRating[0]);
     }
 
+    /**
+     * getDriversWithNoCars() one page at a time, see getAllDrivers(String, int).
+     */
+    public Page<QueryResult.DriverPINNameAgeRating> getDriversWithNoCars(String after, int limit) {
+        return page("getDriversWithNoCars", GET_DRIVERS_WITH_NO_CARS_PAGE_SQL, RowMappers.DRIVER_PIN_NAME_AGE_RATING,
+                QueryResult.DriverPINNameAgeRating::getPIN, after, limit);
+    }
+
+
+    static final String DELETE_DRIVERS_WITH_NO_CARS_SQL =
+            "DELETE FROM Drivers " +
+                    "WHERE PIN IN (" +
+                    "    SELECT d.PIN " +
+                    "    FROM Drivers d " +
+                    "    LEFT JOIN Cars c ON d.PIN = c.PIN " +
+                    "    WHERE c.PIN IS NULL" +
+                    ")";
 
     // 5 Delete Drivers who do not own any cars
     @Override
     public int deleteDriversWithNoCars() {
         int rowsDeleted = 0;
 
-        String deleteQuery =
-                "DELETE FROM Drivers " +
-                        "WHERE PIN IN (" +
-                        "    SELECT d.PIN " +
-                        "    FROM Drivers d " +
-                        "    LEFT JOIN Cars c ON d.PIN = c.PIN " +
-                        "    WHERE c.PIN IS NULL" +
-                        ")";
-
         try {
-            PreparedStatement preparedStatement = this.connection.prepareStatement(deleteQuery);
-            rowsDeleted = preparedStatement.executeUpdate();
-            preparedStatement.close();
+            PreparedStatement preparedStatement = this.statementCache.prepare(DELETE_DRIVERS_WITH_NO_CARS_SQL);
+            try {
+                rowsDeleted = preparedStatement.executeUpdate();
+            } finally {
+                this.statementCache.release(preparedStatement);
+            }
         } catch (SQLException e) {
-            e.printStackTrace();
+            ErrorCounter.report(e);
         }
 
         return rowsDeleted;
     }
 
 
+    static final String GET_CARS_WITH_NO_TRIPS_SQL =
+            "SELECT c.CarID, c.PIN, color.name AS color, brand.name AS brand " +
+                    "FROM Cars c " +
+                    "LEFT JOIN Trips t ON c.CarID = t.CarID " +
+                    "LEFT JOIN Dictionary color ON color.code = c.color " +
+                    "LEFT JOIN Dictionary brand ON brand.code = c.brand " +
+                    "WHERE t.CarID IS NULL " +
+                    "ORDER BY c.CarID ASC";
+
+    static final String GET_CARS_WITH_NO_TRIPS_PAGE_SQL = keysetPage(GET_CARS_WITH_NO_TRIPS_SQL, "AND c.CarID >= ?");
+
     // 6 Find all cars that are not taken part in any trips
     @Override
     public Car[] getCarsWithNoTrips() {
         List<Car> result = new ArrayList<>();
 
-        String query =
-                "SELECT c.CarID, c.PIN, c.color, c.brand " +
-                        "FROM Cars c " +
-                        "LEFT JOIN Trips t ON c.CarID = t.CarID " +
-                        "WHERE t.CarID IS NULL " +
-                        "ORDER BY c.CarID ASC";
-
         try {
-            PreparedStatement preparedStatement = this.connection.prepareStatement(query);
-            ResultSet resultSet = preparedStatement.executeQuery();
+            PreparedStatement preparedStatement = this.statementCache.prepare(GET_CARS_WITH_NO_TRIPS_SQL);
+            try {
+                ResultSet resultSet = preparedStatement.executeQuery();
+                RowReader<Car> reader = RowMappers.CAR.bind(resultSet);
 
-            while (resultSet.next()) {
-                String color = resultSet.getString("color");
-                String brand = resultSet.getString("brand");
-                int carID = resultSet.getInt("CarID");
-                int pin = resultSet.getInt("PIN");
+                while (resultSet.next()) {
+                    result.add(reader.read(resultSet));
+                }
 
-                Car car = new Car(carID, pin, color, brand);
-                result.add(car);
+                resultSet.close();
+            } finally {
+                this.statementCache.release(preparedStatement);
             }
-
-            resultSet.close();
-            preparedStatement.close();
         } catch (SQLException e) {
-            e.printStackTrace();
+            ErrorCounter.report(e);
         }
 
         return result.toArray(new Car[0]);
     }
 
+    /**
+     * getCarsWithNoTrips() one page at a time, see getAllDrivers(String, int).
+     */
+    public Page<Car> getCarsWithNoTrips(String after, int limit) {
+        return page("getCarsWithNoTrips", GET_CARS_WITH_NO_TRIPS_PAGE_SQL, RowMappers.CAR, Car::getCarID, after, limit);
+    }
+
+    /**
+     * getCarsWithNoTrips() as a stream: rows are read from a cursor as the subscriber requests
+     * them, see CursorPublisher.
+     */
+    public Flow.Publisher<Car> publishCarsWithNoTrips() {
+        return new CursorPublisher<>(() -> openCursor(GET_CARS_WITH_NO_TRIPS_SQL, RowMappers.CAR));
+    }
+
+    /**
+     * Hands the rows of getCarsWithNoTrips() to action one at a time as they are read.
+     *
+     * @return the number of rows handed over.
+     */
+    public int forEachCarWithNoTrips(Consumer<? super Car> action) {
+        return forEachRow(GET_CARS_WITH_NO_TRIPS_SQL, RowMappers.CAR, action);
+    }
+
+
+    static final String GET_PASSENGERS_WITH_NO_BOOKS_SQL =
+            "SELECT p.PIN, m.name AS membership_status " +
+                    "FROM Passengers p " +
+                    "LEFT JOIN Bookings b ON p.PIN = b.PIN " +
+                    "LEFT JOIN Dictionary m ON m.code = p.membership_status " +
+                    "WHERE b.PIN IS NULL " +
+                    "ORDER BY p.PIN ASC";
+
+    static final String GET_PASSENGERS_WITH_NO_BOOKS_PAGE_SQL = keysetPage(GET_PASSENGERS_WITH_NO_BOOKS_SQL, "AND p.PIN >= ?");
 
     // 7 Find all passengers who didn't book any trips
     @Override
     public Passenger[] getPassengersWithNoBooks() {
         List<Passenger> result = new ArrayList<>();
 
-        String query =
-                "SELECT p.PIN, p.membership_status " +
-                        "FROM Passengers p " +
-                        "LEFT JOIN Bookings b ON p.PIN = b.PIN " +
-                        "WHERE b.PIN IS NULL " +
-                        "ORDER BY p.PIN ASC";
-
         try {
-            PreparedStatement preparedStatement = this.connection.prepareStatement(query);
-            ResultSet resultSet = preparedStatement.executeQuery();
+            PreparedStatement preparedStatement = this.statementCache.prepare(GET_PASSENGERS_WITH_NO_BOOKS_SQL);
+            try {
+                ResultSet resultSet = preparedStatement.executeQuery();
+                RowReader<Passenger> reader = RowMappers.PASSENGER.bind(resultSet);
 
-            while (resultSet.next()) {
-                int pin = resultSet.getInt("PIN");
-                String membershipStatus = resultSet.getString("membership_status");
+                while (resultSet.next()) {
+                    result.add(reader.read(resultSet));
+                }
 
-                Passenger passenger = new Passenger(pin, membershipStatus);
-                result.add(passenger);
+                resultSet.close();
+            } finally {
+                this.statementCache.release(preparedStatement);
             }
-
-            resultSet.close();
-            preparedStatement.close();
         } catch (SQLException e) {
-            e.printStackTrace();
+            ErrorCounter.report(e);
         }
 
         return result.toArray(new Passenger[0]);
     }
 
+    /**
+     * getPassengersWithNoBooks() one page at a time, see getAllDrivers(String, int).
+     */
+    public Page<Passenger> getPassengersWithNoBooks(String after, int limit) {
+        return page("getPassengersWithNoBooks", GET_PASSENGERS_WITH_NO_BOOKS_PAGE_SQL, RowMappers.PASSENGER, Passenger::getPIN, after, limit);
+    }
+
+    /**
+     * getPassengersWithNoBooks() as a stream: rows are read from a cursor as the subscriber
+     * requests them, see CursorPublisher.
+     */
+    public Flow.Publisher<Passenger> publishPassengersWithNoBooks() {
+        return new CursorPublisher<>(() -> openCursor(GET_PASSENGERS_WITH_NO_BOOKS_SQL, RowMappers.PASSENGER));
+    }
+
+    /**
+     * Hands the rows of getPassengersWithNoBooks() to action one at a time as they are read.
+     *
+     * @return the number of rows handed over.
+     */
+    public int forEachPassengerWithNoBooks(Consumer<? super Passenger> action) {
+        return forEachRow(GET_PASSENGERS_WITH_NO_BOOKS_SQL, RowMappers.PASSENGER, action);
+    }
+
+
+    static final String GET_TRIPS_FROM_TO_CITIES_ON_SPECIFIC_DATE_SQL =
+            "SELECT TripID, CarID, date, num_seats_available " +
+                    "FROM Trips " +
+                    "WHERE departure = " + DictionaryTable.codeOf(DictionaryTable.CITY) + " " +
+                    "AND destination = " + DictionaryTable.codeOf(DictionaryTable.CITY) + " " +
+                    "AND date = ? " +
+                    "ORDER BY TripID ASC";
+
+    static final String GET_TRIPS_FROM_TO_CITIES_ON_SPECIFIC_DATE_PAGE_SQL =
+            keysetPage(GET_TRIPS_FROM_TO_CITIES_ON_SPECIFIC_DATE_SQL, "AND TripID >= ?");
 
     // 8 Find all trips that depart from the specified city to specified destination city on specific date
     @Override
     public Trip[] getTripsFromToCitiesOnSpecificDate(String departure, String destination, String date) {
+        if (this.routeIndex != null) {
+            try {
+                return this.routeIndex.getTrips(departure, destination, (int) Trip.parseDate(date).toEpochDay());
+            } catch (DateTimeParseException e) {
+                ErrorCounter.report(e);
+                return new Trip[0];
+            }
+        }
+
         List<Trip> result = new ArrayList<>();
 
-        String query =
-                "SELECT TripID, CarID, date, departure, destination, num_seats_available " +
-                        "FROM Trips " +
-                        "WHERE departure = ? AND destination = ? AND date = ? " +
-                        "ORDER BY TripID ASC";
+        try {
+            PreparedStatement preparedStatement = this.statementCache.prepare(GET_TRIPS_FROM_TO_CITIES_ON_SPECIFIC_DATE_SQL);
+            try {
+                preparedStatement.setString(1, departure);
+                preparedStatement.setString(2, destination);
+                preparedStatement.setObject(3, Trip.parseDate(date));
+
+                ResultSet resultSet = preparedStatement.executeQuery();
+                // Every row matched the departure and destination parameters
+                RowReader<Trip> reader = RowMappers.tripsBetween(departure, destination).bind(resultSet);
+
+                while (resultSet.next()) {
+                    result.add(reader.read(resultSet));
+                }
+
+                resultSet.close();
+            } finally {
+                this.statementCache.release(preparedStatement);
+            }
+        } catch (SQLException | DateTimeParseException e) {
+            ErrorCounter.report(e);
+        }
 
+        return result.toArray(new Trip[0]);
+    }
+
+    /**
+     * getTripsFromToCitiesOnSpecificDate() one page at a time, see getAllDrivers(String, int).
+     * Always reads the database, also with the route index enabled.
+     */
+    public Page<Trip> getTripsFromToCitiesOnSpecificDate(String departure, String destination, String date,
+                                                         String after, int limit) {
+        LocalDate day;
         try {
-            PreparedStatement preparedStatement = this.connection.prepareStatement(query);
+            day = Trip.parseDate(date);
+        } catch (DateTimeParseException e) {
+            ErrorCounter.report(e);
+            return new Page<>(new ArrayList<>(), null);
+        }
+        return page("getTripsFromToCitiesOnSpecificDate", GET_TRIPS_FROM_TO_CITIES_ON_SPECIFIC_DATE_PAGE_SQL,
+                RowMappers.tripsBetween(departure, destination), Trip::getTripID, after, limit, departure, destination, day);
+    }
+
+
+    static final String GET_PASSENGERS_WITH_BOOKINGS_TO_ALL_TRIPS_FOR_CITY_SQL =
+            "SELECT DISTINCT pa.PIN, pa.p_name, pa.age, m.name AS membership_status " +
+                    "FROM Participants pa " +
+                    "JOIN Passengers ps ON pa.PIN = ps.PIN " +
+                    "LEFT JOIN Dictionary m ON m.code = ps.membership_status " +
+                    "WHERE NOT EXISTS ( " +
+                    "    SELECT t.TripID " +
+                    "    FROM Trips t " +
+                    "    WHERE t.destination = " + DictionaryTable.codeOf(DictionaryTable.CITY) + " " +
+                    "    AND NOT EXISTS ( " +
+                    "        SELECT b.TripID " +
+                    "        FROM Bookings b " +
+                    "        WHERE b.TripID = t.TripID " +
+                    "        AND b.PIN = pa.PIN " +
+                    "    ) " +
+                    ") " +
+                    "AND EXISTS ( " +
+                    "    SELECT 1 " +
+                    "    FROM Trips t " +
+                    "    WHERE t.destination = " + DictionaryTable.codeOf(DictionaryTable.CITY) + " " +
+                    ") " +
+                    "ORDER BY pa.PIN ASC";
+
+    static final String GET_PASSENGERS_WITH_BOOKINGS_TO_ALL_TRIPS_FOR_CITY_PAGE_SQL =
+            keysetPage(GET_PASSENGERS_WITH_BOOKINGS_TO_ALL_TRIPS_FOR_CITY_SQL, "AND pa.PIN >= ?");
 
-            preparedStatement.setString(1, departure);
-            preparedStatement.setString(2, destination);
-            preparedStatement.setString(3, date);
+    // 9 Find the PINs, names, ages, and membership_status of passengers who have bookings on all trips destined at a particular city
+    @Override
+    public QueryResult.PassengerPINNameAgeMembershipStatus[] getPassengersWithBookingsToAllTripsForCity(String city) {
+        if (this.bookingBitmapIndex != null) {
+            return getPassengersByPIN(this.bookingBitmapIndex.passengersWithBookingsToAllTripsTo(city));
+        }
 
-            ResultSet resultSet = preparedStatement.executeQuery();
+        List<QueryResult.PassengerPINNameAgeMembershipStatus> result = new ArrayList<>();
 
-            while (resultSet.next()) {
-                String tripDate = resultSet.getString("date");
-                String tripDeparture = resultSet.getString("departure");
-                String tripDestination = resultSet.getString("destination");
-                int carID = resultSet.getInt("CarID");
-                int tripID = resultSet.getInt("TripID");
-                int numSeatsAvailable = resultSet.getInt("num_seats_available");
+        try {
+            PreparedStatement preparedStatement = this.statementCache.prepare(GET_PASSENGERS_WITH_BOOKINGS_TO_ALL_TRIPS_FOR_CITY_SQL);
+            try {
+                preparedStatement.setString(1, city);
+                preparedStatement.setString(2, city);
 
-                Trip trip = new Trip(tripID, carID, tripDate, tripDeparture,
-                        tripDestination, numSeatsAvailable);
-                result.add(trip);
-            }
+                ResultSet resultSet = preparedStatement.executeQuery();
+                RowReader<QueryResult.PassengerPINNameAgeMembershipStatus> reader =
+                        RowMappers.PASSENGER_PIN_NAME_AGE_MEMBERSHIP_STATUS.bind(resultSet);
+
+                while (resultSet.next()) {
+                    result.add(reader.read(resultSet));
+                }
 
-            resultSet.close();
-            preparedStatement.close();
+                resultSet.close();
+            } finally {
+                this.statementCache.release(preparedStatement);
+            }
         } catch (SQLException e) {
-            e.printStackTrace();
+            ErrorCounter.report(e);
         }
 
-        return result.toArray(new Trip[0]);
+        return result.toArray(new QueryResult.PassengerPINNameAgeMembershipStatus[0]);
     }
 
+    /**
+     * getPassengersWithBookingsToAllTripsForCity() one page at a time, see
+     * getAllDrivers(String, int). Always reads the database, also with the bitmap index enabled.
+     */
+    public Page<QueryResult.PassengerPINNameAgeMembershipStatus> getPassengersWithBookingsToAllTripsForCity(
+            String city, String after, int limit) {
+        return page("getPassengersWithBookingsToAllTripsForCity", GET_PASSENGERS_WITH_BOOKINGS_TO_ALL_TRIPS_FOR_CITY_PAGE_SQL,
+                RowMappers.PASSENGER_PIN_NAME_AGE_MEMBERSHIP_STATUS, QueryResult.PassengerPINNameAgeMembershipStatus::getPIN,
+                after, limit, city, city);
+    }
 
-    // 9 Find the PINs, names, ages, and membership_status of passengers who have bookings on all trips destined at a particular city
-    @Override
-    public QueryResult.PassengerPINNameAgeMembershipStatus[] getPassengersWithBookingsToAllTripsForCity(String city) {
+    static final String GET_PASSENGER_BY_PIN_SQL =
+            "SELECT pa.PIN, pa.p_name, pa.age, m.name AS membership_status " +
+                    "FROM Participants pa " +
+                    "JOIN Passengers ps ON pa.PIN = ps.PIN " +
+                    "LEFT JOIN Dictionary m ON m.code = ps.membership_status " +
+                    "WHERE pa.PIN = ?";
+
+    // Primary key lookups for the PINs found by the bitmap index, in the order given
+    private QueryResult.PassengerPINNameAgeMembershipStatus[] getPassengersByPIN(int[] pins) {
         List<QueryResult.PassengerPINNameAgeMembershipStatus> result = new ArrayList<>();
 
-        String query =
-                "SELECT DISTINCT pa.PIN, pa.p_name, pa.age, ps.membership_status " +
-                        "FROM Participants pa " +
-                        "JOIN Passengers ps ON pa.PIN = ps.PIN " +
-                        "WHERE NOT EXISTS ( " +
-                        "    SELECT t.TripID " +
-                        "    FROM Trips t " +
-                        "    WHERE t.destination = ? " +
-                        "    AND NOT EXISTS ( " +
-                        "        SELECT b.TripID " +
-                        "        FROM Bookings b " +
-                        "        WHERE b.TripID = t.TripID " +
-                        "        AND b.PIN = pa.PIN " +
-                        "    ) " +
-                        ") " +
-                        "AND EXISTS ( " +
-                        "    SELECT 1 " +
-                        "    FROM Trips t " +
-                        "    WHERE t.destination = ? " +
-                        ") " +
-                        "ORDER BY pa.PIN ASC";
-
-        try {
-            PreparedStatement preparedStatement = this.connection.prepareStatement(query);
-
-            preparedStatement.setString(1, city);
-            preparedStatement.setString(2, city);
-
-            ResultSet resultSet = preparedStatement.executeQuery();
-
-            while (resultSet.next()) {
-
-                String pName = resultSet.getString("p_name");
-                int pin = resultSet.getInt("PIN");
-                int age = resultSet.getInt("age");
-                String membershipStatus = resultSet.getString("membership_status");
-
-                QueryResult.PassengerPINNameAgeMembershipStatus passenger =
-                        new QueryResult.PassengerPINNameAgeMembershipStatus(pin, pName, age, membershipStatus);
-                result.add(passenger);
-            }
-
-            resultSet.close();
-            preparedStatement.close();
+        try {
+            PreparedStatement preparedStatement = this.statementCache.prepare(GET_PASSENGER_BY_PIN_SQL);
+            try {
+                // Every execution has the same columns, so they are looked up in the first one only
+                RowReader<QueryResult.PassengerPINNameAgeMembershipStatus> reader = null;
+
+                for (int pin : pins) {
+                    preparedStatement.setInt(1, pin);
+
+                    ResultSet resultSet = preparedStatement.executeQuery();
+                    if (reader == null) {
+                        reader = RowMappers.PASSENGER_PIN_NAME_AGE_MEMBERSHIP_STATUS.bind(resultSet);
+                    }
+                    if (resultSet.next()) {
+                        result.add(reader.read(resultSet));
+                    }
+                    resultSet.close();
+                }
+            } finally {
+                this.statementCache.release(preparedStatement);
+            }
         } catch (SQLException e) {
-            e.printStackTrace();
+            ErrorCounter.report(e);
         }
 
         return result.toArray(new QueryResult.PassengerPINNameAgeMembershipStatus[0]);
     }
 
 
+    static final String GET_DRIVER_CARS_WITH_AT_MOST_2_BOOKINGS_SQL =
+            "SELECT c.CarID " +
+                    "FROM Cars c " +
+                    "LEFT JOIN Trips t ON c.CarID = t.CarID " +
+                    "LEFT JOIN Bookings b ON t.TripID = b.TripID " +
+                    "WHERE c.PIN = ? " +
+                    "GROUP BY c.CarID " +
+                    "HAVING COUNT(DISTINCT b.TripID) <= 2 " +
+                    "ORDER BY c.CarID ASC";
+
     // 10 For a given driver PIN, find the CarIDs that the driver owns and were booked at most twice.
     @Override
     public Integer[] getDriverCarsWithAtMost2Bookings(int driverPIN) {
         List<Integer> result = new ArrayList<>();
 
-        String query =
-                "SELECT c.CarID " +
-                        "FROM Cars c " +
-                        "LEFT JOIN Trips t ON c.CarID = t.CarID " +
-                        "LEFT JOIN Bookings b ON t.TripID = b.TripID " +
-                        "WHERE c.PIN = ? " +
-                        "GROUP BY c.CarID " +
-                        "HAVING COUNT(DISTINCT b.TripID) <= 2 " +
-                        "ORDER BY c.CarID ASC";
-
         try {
-            PreparedStatement preparedStatement = this.connection.prepareStatement(query);
-            preparedStatement.setInt(1, driverPIN);
+            PreparedStatement preparedStatement = this.statementCache.prepare(GET_DRIVER_CARS_WITH_AT_MOST_2_BOOKINGS_SQL);
+            try {
+                preparedStatement.setInt(1, driverPIN);
 
-            ResultSet resultSet = preparedStatement.executeQuery();
+                ResultSet resultSet = preparedStatement.executeQuery();
+                int carID = resultSet.findColumn("CarID");
 
-            while (resultSet.next()) {
-                int carID = resultSet.getInt("CarID");
-                result.add(carID);
-            }
+                while (resultSet.next()) {
+                    result.add(resultSet.getInt(carID));
+                }
 
-            resultSet.close();
-            preparedStatement.close();
+                resultSet.close();
+            } finally {
+                this.statementCache.release(preparedStatement);
+            }
         } catch (SQLException e) {
-            e.printStackTrace();
+            ErrorCounter.report(e);
         }
 
         return result.toArray(new Integer[0]);
     }
 
 
+    static final String GET_AVG_AGE_OF_PASSENGERS_DEPART_FROM_CITY_BETWEEN_TWO_DATES_SQL =
+            "SELECT AVG(CAST(p.age AS DOUBLE)) as avg_age " +
+                    "FROM Participants p " +
+                    "JOIN Bookings b ON p.PIN = b.PIN " +
+                    "JOIN Trips t ON b.TripID = t.TripID " +
+                    "WHERE t.departure = " + DictionaryTable.codeOf(DictionaryTable.CITY) + " " +
+                    "AND t.date BETWEEN ? AND ? " +
+                    "AND b.booking_status = " + DictionaryTable.codeOf(DictionaryTable.BOOKING_STATUS, "Confirmed");
+
     // 11 Find the average age of passengers with "Confirmed" bookings (i.e., booking_status is ”Confirmed”) on trips departing from a given city and within a specified date range
     @Override
     public Double getAvgAgeOfPassengersDepartFromCityBetweenTwoDates(String city, String start_date, String end_date) {
-        Double averageAge = null;
+        if (this.ageByDateIndex != null) {
+            try {
+                return this.ageByDateIndex.averageAge(city, (int) Trip.parseDate(start_date).toEpochDay(),
+                        (int) Trip.parseDate(end_date).toEpochDay());
+            } catch (DateTimeParseException e) {
+                ErrorCounter.report(e);
+                return null;
+            }
+        }
 
-        String query =
-                "SELECT AVG(CAST(p.age AS DOUBLE)) as avg_age " +
-                        "FROM Participants p " +
-                        "JOIN Bookings b ON p.PIN = b.PIN " +
-                        "JOIN Trips t ON b.TripID = t.TripID " +
-                        "WHERE t.departure = ? " +
-                        "AND t.date >= ? " +
-                        "AND t.date <= ? " +
-                        "AND b.booking_status = 'Confirmed'";
+        Double averageAge = null;
 
         try {
-            PreparedStatement preparedStatement = this.connection.prepareStatement(query);
-
-            preparedStatement.setString(1, city);
-            preparedStatement.setString(2, start_date);
-            preparedStatement.setString(3, end_date);
-
-            ResultSet resultSet = preparedStatement.executeQuery();
-
-            if (resultSet.next()) {
-                averageAge = resultSet.getDouble("avg_age");
-                if (resultSet.wasNull()) {
-                    averageAge = null;
+            PreparedStatement preparedStatement = this.statementCache.prepare(GET_AVG_AGE_OF_PASSENGERS_DEPART_FROM_CITY_BETWEEN_TWO_DATES_SQL);
+            try {
+                preparedStatement.setString(1, city);
+                preparedStatement.setObject(2, Trip.parseDate(start_date));
+                preparedStatement.setObject(3, Trip.parseDate(end_date));
+
+                ResultSet resultSet = preparedStatement.executeQuery();
+
+                if (resultSet.next()) {
+                    averageAge = resultSet.getDouble("avg_age");
+                    if (resultSet.wasNull()) {
+                        averageAge = null;
+                    }
                 }
-            }
 
-            resultSet.close();
-            preparedStatement.close();
-        } catch (SQLException e) {
-            e.printStackTrace();
+                resultSet.close();
+            } finally {
+                this.statementCache.release(preparedStatement);
+            }
+        } catch (SQLException | DateTimeParseException e) {
+            ErrorCounter.report(e);
         }
 
         return averageAge;
     }
 
 
+    static final String GET_PASSENGER_IN_GIVEN_TRIP_SQL =
+            "SELECT pa.PIN, pa.p_name, pa.age, m.name AS membership_status " +
+                    "FROM Participants pa " +
+                    "JOIN Passengers ps ON pa.PIN = ps.PIN " +
+                    "JOIN Bookings b ON ps.PIN = b.PIN " +
+                    "LEFT JOIN Dictionary m ON m.code = ps.membership_status " +
+                    "WHERE b.TripID = ? " +
+                    "ORDER BY pa.PIN ASC";
+
+    static final String GET_PASSENGER_IN_GIVEN_TRIP_PAGE_SQL = keysetPage(GET_PASSENGER_IN_GIVEN_TRIP_SQL, "AND pa.PIN >= ?");
+
     // 12 Find Passengers in a Given Trip.
     @Override
     public QueryResult.PassengerPINNameAgeMembershipStatus[] getPassengerInGivenTrip(int TripID) {
         List<QueryResult.PassengerPINNameAgeMembershipStatus> result = new ArrayList<>();
 
-        String query =
-                "SELECT pa.PIN, pa.p_name, pa.age, ps.membership_status " +
-                        "FROM Participants pa " +
-                        "JOIN Passengers ps ON pa.PIN = ps.PIN " +
-                        "JOIN Bookings b ON ps.PIN = b.PIN " +
-                        "WHERE b.TripID = ? " +
-                        "ORDER BY pa.PIN ASC";
-
         try {
-            PreparedStatement preparedStatement = this.connection.prepareStatement(query);
-            preparedStatement.setInt(1, TripID);
+            PreparedStatement preparedStatement = this.statementCache.prepare(GET_PASSENGER_IN_GIVEN_TRIP_SQL);
+            try {
+                preparedStatement.setInt(1, TripID);
 
-            ResultSet resultSet = preparedStatement.executeQuery();
+                ResultSet resultSet = preparedStatement.executeQuery();
+                RowReader<QueryResult.PassengerPINNameAgeMembershipStatus> reader =
+                        RowMappers.PASSENGER_PIN_NAME_AGE_MEMBERSHIP_STATUS.bind(resultSet);
 
-            while (resultSet.next()) {
-                String pName = resultSet.getString("p_name");
-                int pin = resultSet.getInt("PIN");
-                int age = resultSet.getInt("age");
-                String membershipStatus = resultSet.getString("membership_status");
+                while (resultSet.next()) {
+                    result.add(reader.read(resultSet));
+                }
 
-                QueryResult.PassengerPINNameAgeMembershipStatus passenger =
-                        new QueryResult.PassengerPINNameAgeMembershipStatus(pin, pName, age, membershipStatus);
-                result.add(passenger);
+                resultSet.close();
+            } finally {
+                this.statementCache.release(preparedStatement);
             }
-
-            resultSet.close();
-            preparedStatement.close();
         } catch (SQLException e) {
-            e.printStackTrace();
+            ErrorCounter.report(e);
         }
 
         return result.toArray(new QueryResult.PassengerPINNameAgeMembershipStatus[0]);
     }
 
+    /**
+     * getPassengerInGivenTrip() one page at a time, see getAllDrivers(String, int).
+     */
+    public Page<QueryResult.PassengerPINNameAgeMembershipStatus> getPassengerInGivenTrip(int TripID, String after, int limit) {
+        return page("getPassengerInGivenTrip", GET_PASSENGER_IN_GIVEN_TRIP_PAGE_SQL, RowMappers.PASSENGER_PIN_NAME_AGE_MEMBERSHIP_STATUS,
+                QueryResult.PassengerPINNameAgeMembershipStatus::getPIN, after, limit, TripID);
+    }
+
+
+    // Reads the per-driver counts of DriverStatsTable instead of counting the bookings
+    static final String GET_DRIVERS_SCORES_SQL =
+            "SELECT d.PIN AS DriverPIN, d.rating, s.number_of_bookings AS numberOfBookings, " +
+                    "       d.rating * s.number_of_bookings AS driver_score " +
+                    "FROM DriverStats s " +
+                    "JOIN Drivers d ON d.PIN = s.PIN " +
+                    "WHERE s.number_of_bookings > 0 " +
+                    "ORDER BY driver_score DESC, DriverPIN ASC";
 
     // 13 Find Drivers’ Scores
     @Override
     public QueryResult.DriverScoreRatingNumberOfBookingsPIN[] getDriversScores() {
         List<QueryResult.DriverScoreRatingNumberOfBookingsPIN> result = new ArrayList<>();
 
-        String query =
-                "SELECT " +
-                        "    d.PIN AS DriverPIN, " +
-                        "    d.rating, " +
-                        "    (" +
-                        "        SELECT COUNT(*) " +
-                        "        FROM Bookings b " +
-                        "        JOIN Trips t ON b.TripID = t.TripID " +
-                        "        JOIN Cars c ON t.CarID = c.CarID " +
-                        "        WHERE c.PIN = d.PIN" +
-                        "    ) AS numberOfBookings, " +
-                        "    (" +
-                        "        d.rating * " +
-                        "        (" +
-                        "            SELECT COUNT(*) " +
-                        "            FROM Bookings b " +
-                        "            JOIN Trips t ON b.TripID = t.TripID " +
-                        "            JOIN Cars c ON t.CarID = c.CarID " +
-                        "            WHERE c.PIN = d.PIN" +
-                        "        )" +
-                        "    ) AS driver_score " +
-                        "FROM Drivers d " +
-                        "WHERE EXISTS (" +
-                        "    SELECT 1 " +
-                        "    FROM Cars c2 " +
-                        "    JOIN Trips t2 ON c2.CarID = t2.CarID " +
-                        "    JOIN Bookings b2 ON t2.TripID = b2.TripID " +
-                        "    WHERE c2.PIN = d.PIN" +
-                        ") " +
-                        "ORDER BY driver_score DESC, DriverPIN ASC";
-
-        try (PreparedStatement stmt = this.connection.prepareStatement(query)) {
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    result.add(buildDriverScoreObject(rs));
+        try {
+            PreparedStatement stmt = this.statementCache.prepare(GET_DRIVERS_SCORES_SQL);
+            try {
+                try (ResultSet rs = stmt.executeQuery()) {
+                    RowReader<QueryResult.DriverScoreRatingNumberOfBookingsPIN> reader =
+                            RowMappers.DRIVER_SCORE_RATING_NUMBER_OF_BOOKINGS_PIN.bind(rs);
+                    while (rs.next()) {
+                        result.add(reader.read(rs));
+                    }
                 }
+            } finally {
+                this.statementCache.release(stmt);
             }
         } catch (SQLException e) {
-            System.err.println("Error executing driver scores query: " + e.getMessage());
-            e.printStackTrace();
+            ErrorCounter.report(e);
         }
 
         return result.toArray(new QueryResult.DriverScoreRatingNumberOfBookingsPIN[0]);
     }
 
-    // Helper method to build driver score object from result set
-    private QueryResult.DriverScoreRatingNumberOfBookingsPIN buildDriverScoreObject(ResultSet rs)
-            throws SQLException {
-        return new QueryResult.DriverScoreRatingNumberOfBookingsPIN(
-                rs.getDouble("driver_score"),
-                rs.getDouble("rating"),
-                rs.getInt("numberOfBookings"),
-                rs.getInt("DriverPIN")
-        );
-    }
 
+    static final String GET_DRIVERS_AVERAGE_RATINGS_TO_EACH_DESTINATED_CITY_SQL =
+            "SELECT city.name AS destination, ratings.avg_rating " +
+                    "FROM (" +
+                    "    SELECT t.destination, AVG(CAST(d.rating AS DOUBLE)) as avg_rating " +
+                    "    FROM Trips t " +
+                    "    JOIN Cars c ON t.CarID = c.CarID " +
+                    "    JOIN Drivers d ON c.PIN = d.PIN " +
+                    "    GROUP BY t.destination" +
+                    ") ratings " +
+                    "LEFT JOIN Dictionary city ON city.code = ratings.destination " +
+                    "ORDER BY city.name ASC";
 
     // 14 Find average ratings of drivers who have trips destined to each city
     @Override
     public QueryResult.CityAndAverageDriverRating[] getDriversAverageRatingsToEachDestinatedCity() {
         List<QueryResult.CityAndAverageDriverRating> result = new ArrayList<>();
 
-        String query =
-                "SELECT t.destination, AVG(CAST(d.rating AS DOUBLE)) as avg_rating " +
-                        "FROM Trips t " +
-                        "JOIN Cars c ON t.CarID = c.CarID " +
-                        "JOIN Drivers d ON c.PIN = d.PIN " +
-                        "GROUP BY t.destination " +
-                        "ORDER BY t.destination ASC";
-
         try {
-            PreparedStatement preparedStatement = this.connection.prepareStatement(query);
-            ResultSet resultSet = preparedStatement.executeQuery();
-
-            while (resultSet.next()) {
-                double avgRating = resultSet.getDouble("avg_rating");
-                String city = resultSet.getString("destination");
+            PreparedStatement preparedStatement = this.statementCache.prepare(GET_DRIVERS_AVERAGE_RATINGS_TO_EACH_DESTINATED_CITY_SQL);
+            try {
+                ResultSet resultSet = preparedStatement.executeQuery();
+                RowReader<QueryResult.CityAndAverageDriverRating> reader =
+                        RowMappers.CITY_AND_AVERAGE_DRIVER_RATING.bind(resultSet);
+
+                while (resultSet.next()) {
+                    result.add(reader.read(resultSet));
+                }
 
-                QueryResult.CityAndAverageDriverRating cityRating =
-                        new QueryResult.CityAndAverageDriverRating(city, avgRating);
-                result.add(cityRating);
+                resultSet.close();
+            } finally {
+                this.statementCache.release(preparedStatement);
             }
-
-            resultSet.close();
-            preparedStatement.close();
         } catch (SQLException e) {
-            e.printStackTrace();
+            ErrorCounter.report(e);
         }
 
         return result.toArray(new QueryResult.CityAndAverageDriverRating[0]);
     }
 
 
+    static final String GET_TOTAL_BOOKINGS_EACH_MEMBERSHIP_STATUS_SQL =
+            "SELECT m.name AS membership_status, " +
+                    "       COALESCE(booking_counts.total_bookings, 0) as total_bookings " +
+                    "FROM (" +
+                    "    SELECT DISTINCT membership_status " +
+                    "    FROM Passengers" +
+                    ") p " +
+                    "LEFT JOIN (" +
+                    "    SELECT ps.membership_status, COUNT(*) as total_bookings " +
+                    "    FROM Passengers ps " +
+                    "    JOIN Bookings b ON ps.PIN = b.PIN " +
+                    "    GROUP BY ps.membership_status" +
+                    ") booking_counts " +
+                    "ON p.membership_status = booking_counts.membership_status " +
+                    "LEFT JOIN Dictionary m ON m.code = p.membership_status " +
+                    "ORDER BY m.name ASC";
+
     // 15 Find total number of bookings of passengers for each membership status
     @Override
     public QueryResult.MembershipStatusAndTotalBookings[] getTotalBookingsEachMembershipStatus() {
         List<QueryResult.MembershipStatusAndTotalBookings> result = new ArrayList<>();
 
-        String query =
-                "SELECT p.membership_status, " +
-                        "       COALESCE(booking_counts.total_bookings, 0) as total_bookings " +
-                        "FROM (" +
-                        "    SELECT DISTINCT membership_status " +
-                        "    FROM Passengers" +
-                        ") p " +
-                        "LEFT JOIN (" +
-                        "    SELECT ps.membership_status, COUNT(*) as total_bookings " +
-                        "    FROM Passengers ps " +
-                        "    JOIN Bookings b ON ps.PIN = b.PIN " +
-                        "    GROUP BY ps.membership_status" +
-                        ") booking_counts " +
-                        "ON p.membership_status = booking_counts.membership_status " +
-                        "ORDER BY p.membership_status ASC";
-
-        try {
-            PreparedStatement preparedStatement = this.connection.prepareStatement(query);
-            ResultSet resultSet = preparedStatement.executeQuery();
-
-            while (resultSet.next()) {
-                String membershipStatus = resultSet.getString("membership_status");
-                int totalBookings = resultSet.getInt("total_bookings");
-
-                QueryResult.MembershipStatusAndTotalBookings statusBookings =
-                        new QueryResult.MembershipStatusAndTotalBookings(membershipStatus, totalBookings);
-                result.add(statusBookings);
-            }
-
-            resultSet.close();
-            preparedStatement.close();
+        try {
+            PreparedStatement preparedStatement = this.statementCache.prepare(GET_TOTAL_BOOKINGS_EACH_MEMBERSHIP_STATUS_SQL);
+            try {
+                ResultSet resultSet = preparedStatement.executeQuery();
+                RowReader<QueryResult.MembershipStatusAndTotalBookings> reader =
+                        RowMappers.MEMBERSHIP_STATUS_AND_TOTAL_BOOKINGS.bind(resultSet);
+
+                while (resultSet.next()) {
+                    result.add(reader.read(resultSet));
+                }
+
+                resultSet.close();
+            } finally {
+                this.statementCache.release(preparedStatement);
+            }
         } catch (SQLException e) {
-            e.printStackTrace();
+            ErrorCounter.report(e);
         }
 
         return result.toArray(new QueryResult.MembershipStatusAndTotalBookings[0]);
     }
 
 
+    static final String UPDATE_DRIVER_RATINGS_SQL =
+            "UPDATE Drivers " +
+                    "SET rating = rating + 0.5 " +
+                    "WHERE rating <= 2.0";
+
     // 16 For the drivers' ratings, if rating is smaller than 2.0 or equal to 2.0, update the rating by adding 0.5.
     @Override
     public int updateDriverRatings() {
         int rowsUpdated = 0;
 
-        String updateQuery =
-                "UPDATE Drivers " +
-                        "SET rating = rating + 0.5 " +
-                        "WHERE rating <= 2.0";
-
         try {
-            PreparedStatement preparedStatement = this.connection.prepareStatement(updateQuery);
-            rowsUpdated = preparedStatement.executeUpdate();
-            preparedStatement.close();
+            PreparedStatement preparedStatement = this.statementCache.prepare(UPDATE_DRIVER_RATINGS_SQL);
+            try {
+                rowsUpdated = preparedStatement.executeUpdate();
+            } finally {
+                this.statementCache.release(preparedStatement);
+            }
         } catch (SQLException e) {
-            e.printStackTrace();
+            ErrorCounter.report(e);
         }
 
         return rowsUpdated;
     }
 
 
+    static final String GET_TRIPS_FROM_CITY_SQL =
+            "SELECT t.TripID, t.CarID, t.date, dest.name AS destination, t.num_seats_available " +
+                    "FROM Trips t " +
+                    "LEFT JOIN Dictionary dest ON dest.code = t.destination " +
+                    "WHERE t.departure = " + DictionaryTable.codeOf(DictionaryTable.CITY) + " " +
+                    "ORDER BY t.TripID ASC";
+
+    static final String GET_TRIPS_FROM_CITY_PAGE_SQL = keysetPage(GET_TRIPS_FROM_CITY_SQL, "AND t.TripID >= ?");
+
+    // 18 Find all trips that depart from the given city
     @Override
     public Trip[] getTripsFromCity(String city) {
+        if (this.routeIndex != null) {
+            return this.routeIndex.getTripsFrom(city);
+        }
+
+        List<Trip> result = new ArrayList<>();
+
+        try {
+            PreparedStatement preparedStatement = this.statementCache.prepare(GET_TRIPS_FROM_CITY_SQL);
+            try {
+                preparedStatement.setString(1, city);
 
-        /*****************************************************/
-        /*****************************************************/
-        /*****************  TODO    **************************/
-        /*****************************************************/
-        /*****************************************************/
+                ResultSet resultSet = preparedStatement.executeQuery();
+                // Every row matched the departure parameter
+                RowReader<Trip> reader = RowMappers.tripsFrom(city).bind(resultSet);
+
+                while (resultSet.next()) {
+                    result.add(reader.read(resultSet));
+                }
+
+                resultSet.close();
+            } finally {
+                this.statementCache.release(preparedStatement);
+            }
+        } catch (SQLException e) {
+            ErrorCounter.report(e);
+        }
+
+        return result.toArray(new Trip[0]);
+    }
+
+    /**
+     * getTripsFromCity() one page at a time, see getAllDrivers(String, int). Always reads the
+     * database, also with the route index enabled.
+     */
+    public Page<Trip> getTripsFromCity(String city, String after, int limit) {
+        return page("getTripsFromCity", GET_TRIPS_FROM_CITY_PAGE_SQL, RowMappers.tripsFrom(city), Trip::getTripID, after, limit, city);
+    }
+
+    /**
+     * getTripsFromCity() as a stream: rows are read from a cursor as the subscriber requests
+     * them, see CursorPublisher. Always reads the database, also with the route index enabled.
+     */
+    public Flow.Publisher<Trip> publishTripsFromCity(String city) {
+        return new CursorPublisher<>(() -> openCursor(GET_TRIPS_FROM_CITY_SQL, RowMappers.tripsFrom(city), city));
+    }
+
+    /**
+     * Hands the rows of getTripsFromCity() to action one at a time as they are read; always
+     * reads the database, also with the route index enabled.
+     *
+     * @return the number of rows handed over.
+     */
+    public int forEachTripFromCity(String city, Consumer<? super Trip> action) {
+        return forEachRow(GET_TRIPS_FROM_CITY_SQL, RowMappers.tripsFrom(city), action, city);
+    }
+
+    private <T> RowCursor<T> openCursor(String sql, RowMapper<T> mapper, Object... parameters) throws SQLException {
+        return RowCursor.open(this.connection, sql, this.fetchSize, mapper, parameters);
+    }
+
+    // Like the array methods, a failure is printed; the rows handed over before it still count
+    private <T> int forEachRow(String sql, RowMapper<T> mapper, Consumer<? super T> action, Object... parameters) {
+        int rows = 0;
+
+        try (RowCursor<T> cursor = openCursor(sql, mapper, parameters)) {
+            for (T row = cursor.next(); row != null; row = cursor.next()) {
+                action.accept(row);
+                rows++;
+            }
+        } catch (SQLException e) {
+            ErrorCounter.report(e);
+        }
 
-        return new Trip[0];
+        return rows;
     }
 
 
+    static final String GET_TRIPS_WITH_NO_BOOKS_SQL =
+            "SELECT t.TripID, t.CarID, t.date, dep.name AS departure, dest.name AS destination, " +
+                    "       t.num_seats_available " +
+                    "FROM Trips t " +
+                    "LEFT JOIN Bookings b ON t.TripID = b.TripID " +
+                    "LEFT JOIN Dictionary dep ON dep.code = t.departure " +
+                    "LEFT JOIN Dictionary dest ON dest.code = t.destination " +
+                    "WHERE b.TripID IS NULL " +
+                    "ORDER BY t.TripID ASC";
+
+    static final String GET_TRIPS_WITH_NO_BOOKS_PAGE_SQL = keysetPage(GET_TRIPS_WITH_NO_BOOKS_SQL, "AND t.TripID >= ?");
+
+    // 19 Find all trips that have never been booked
     @Override
     public Trip[] getTripsWithNoBooks() {
+        List<Trip> result = new ArrayList<>();
+
+        try {
+            PreparedStatement preparedStatement = this.statementCache.prepare(GET_TRIPS_WITH_NO_BOOKS_SQL);
+            try {
+                ResultSet resultSet = preparedStatement.executeQuery();
+                RowReader<Trip> reader = RowMappers.TRIP.bind(resultSet);
+
+                while (resultSet.next()) {
+                    result.add(reader.read(resultSet));
+                }
+
+                resultSet.close();
+            } finally {
+                this.statementCache.release(preparedStatement);
+            }
+        } catch (SQLException e) {
+            ErrorCounter.report(e);
+        }
 
-        /*****************************************************/
-        /*****************************************************/
-        /*****************  TODO *****************************/
-        /*****************************************************/
-        /*****************************************************/
+        return result.toArray(new Trip[0]);
+    }
 
-        return new Trip[0];
+    /**
+     * getTripsWithNoBooks() one page at a time, see getAllDrivers(String, int).
+     */
+    public Page<Trip> getTripsWithNoBooks(String after, int limit) {
+        return page("getTripsWithNoBooks", GET_TRIPS_WITH_NO_BOOKS_PAGE_SQL, RowMappers.TRIP, Trip::getTripID, after, limit);
     }
 
 
+    static final String GET_THE_MOST_BOOKED_TRIPS_PER_DRIVER_SQL =
+            "WITH trip_bookings AS (" +
+                    "    SELECT c.PIN AS DriverPIN, t.TripID, COUNT(*) AS numberOfBookings " +
+                    "    FROM Bookings b " +
+                    "    JOIN Trips t ON b.TripID = t.TripID " +
+                    "    JOIN Cars c ON t.CarID = c.CarID " +
+                    "    GROUP BY c.PIN, t.TripID" +
+                    ") " +
+                    "SELECT tb.DriverPIN, tb.TripID, tb.numberOfBookings " +
+                    "FROM trip_bookings tb " +
+                    "WHERE tb.numberOfBookings = (" +
+                    "    SELECT MAX(most.numberOfBookings) " +
+                    "    FROM trip_bookings most " +
+                    "    WHERE most.DriverPIN = tb.DriverPIN" +
+                    ") " +
+                    "ORDER BY tb.DriverPIN ASC, tb.TripID ASC";
+
+    // 20 For each driver, find the trip(s) with the highest number of bookings
     @Override
     public QueryResult.DriverPINandTripIDandNumberOfBookings[] getTheMostBookedTripsPerDriver() {
+        List<QueryResult.DriverPINandTripIDandNumberOfBookings> result = new ArrayList<>();
 
-        /*****************************************************/
-        /*****************************************************/
-        /*****************  TODO *****************************/
-        /*****************************************************/
-        /*****************************************************/
+        try {
+            PreparedStatement preparedStatement = this.statementCache.prepare(GET_THE_MOST_BOOKED_TRIPS_PER_DRIVER_SQL);
+            try {
+                ResultSet resultSet = preparedStatement.executeQuery();
+                RowReader<QueryResult.DriverPINandTripIDandNumberOfBookings> reader =
+                        RowMappers.DRIVER_PIN_AND_TRIP_ID_AND_NUMBER_OF_BOOKINGS.bind(resultSet);
+
+                while (resultSet.next()) {
+                    result.add(reader.read(resultSet));
+                }
 
-        return new QueryResult.DriverPINandTripIDandNumberOfBookings[0];
+                resultSet.close();
+            } finally {
+                this.statementCache.release(preparedStatement);
+            }
+        } catch (SQLException e) {
+            ErrorCounter.report(e);
+        }
+
+        return result.toArray(new QueryResult.DriverPINandTripIDandNumberOfBookings[0]);
     }
 
 
+    static final String GET_FULL_CARS_SQL =
+            "SELECT t.TripID, t.CarID, p.p_name AS driver_name, color.name AS color, brand.name AS brand " +
+                    "FROM Trips t " +
+                    "JOIN Cars c ON t.CarID = c.CarID " +
+                    "JOIN Participants p ON c.PIN = p.PIN " +
+                    "LEFT JOIN Dictionary color ON color.code = c.color " +
+                    "LEFT JOIN Dictionary brand ON brand.code = c.brand " +
+                    "WHERE t.num_seats_available <= (" +
+                    "    SELECT COUNT(*) " +
+                    "    FROM Bookings b " +
+                    "    WHERE b.TripID = t.TripID " +
+                    "    AND b.booking_status = " + DictionaryTable.codeOf(DictionaryTable.BOOKING_STATUS, "Confirmed") +
+                    ") " +
+                    "ORDER BY t.TripID ASC";
+
+    static final String GET_FULL_CARS_PAGE_SQL = keysetPage(GET_FULL_CARS_SQL, "AND t.TripID >= ?");
+
+    // 21 Find the trips whose seats are all taken by confirmed bookings, with their car and driver
     @Override
     public QueryResult.FullCars[] getFullCars() {
+        List<QueryResult.FullCars> result = new ArrayList<>();
 
-        /*****************************************************/
-        /*****************************************************/
-        /*****************  TODO *****************************/
-        /*****************************************************/
-        /*****************************************************/
+        try {
+            PreparedStatement preparedStatement = this.statementCache.prepare(GET_FULL_CARS_SQL);
+            try {
+                ResultSet resultSet = preparedStatement.executeQuery();
+                RowReader<QueryResult.FullCars> reader = RowMappers.FULL_CARS.bind(resultSet);
+
+                while (resultSet.next()) {
+                    result.add(reader.read(resultSet));
+                }
+
+                resultSet.close();
+            } finally {
+                this.statementCache.release(preparedStatement);
+            }
+        } catch (SQLException e) {
+            ErrorCounter.report(e);
+        }
+
+        return result.toArray(new QueryResult.FullCars[0]);
+    }
+
+    /**
+     * getFullCars() one page at a time, see getAllDrivers(String, int).
+     */
+    public Page<QueryResult.FullCars> getFullCars(String after, int limit) {
+        return page("getFullCars", GET_FULL_CARS_PAGE_SQL, RowMappers.FULL_CARS, QueryResult.FullCars::getTripID, after, limit);
+    }
+
+    // Keyset pagination: keyPredicate ("WHERE key >= ?" or "AND key >= ?" on the ORDER BY key)
+    // goes before the ORDER BY and a LIMIT after it, so the database seeks to the first row of
+    // the page in the key's index instead of reading and skipping every page before, as OFFSET does
+    static String keysetPage(String sql, String keyPredicate) {
+        String query = sql.endsWith(";") ? sql.substring(0, sql.length() - 1) : sql;
+        int orderBy = query.lastIndexOf("ORDER BY ");
+        return query.substring(0, orderBy) + keyPredicate + " " + query.substring(orderBy) + " LIMIT ?";
+    }
+
+    // Asks for one row more than limit, which only tells whether there is a next page
+    private <T> Page<T> page(String list, String pageSQL, RowMapper<T> mapper, ToIntFunction<? super T> key,
+                             String after, int limit, Object... parameters) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be > 0: " + limit);
+        }
+        // Page.lastKey() rejects Integer.MAX_VALUE, so + 1 cannot overflow
+        int fromKey = after == null ? Integer.MIN_VALUE : Page.lastKey(list, after) + 1;
+
+        List<T> items = new ArrayList<>();
+        boolean hasNext = false;
+
+        try {
+            PreparedStatement preparedStatement = this.statementCache.prepare(pageSQL);
+            try {
+                int index = 1;
+                for (Object parameter : parameters) {
+                    preparedStatement.setObject(index++, parameter);
+                }
+                preparedStatement.setInt(index++, fromKey);
+                preparedStatement.setLong(index, limit + 1L);
+
+                ResultSet resultSet = preparedStatement.executeQuery();
+                RowReader<T> reader = mapper.bind(resultSet);
+
+                while (resultSet.next()) {
+                    if (items.size() == limit) {
+                        hasNext = true;
+                        break;
+                    }
+                    items.add(reader.read(resultSet));
+                }
+
+                resultSet.close();
+            } finally {
+                this.statementCache.release(preparedStatement);
+            }
+        } catch (SQLException e) {
+            ErrorCounter.report(e);
+        }
 
-        return new QueryResult.FullCars[0];
+        String nextToken = hasNext ? Page.token(list, key.applyAsInt(items.get(items.size() - 1))) : null;
+        return new Page<>(items, nextToken);
     }
 
 }
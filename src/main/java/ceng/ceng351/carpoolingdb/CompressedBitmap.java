@@ -0,0 +1,198 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.util.Arrays;
+
+/**
+ * Set of ints stored like a Roaring bitmap: values are grouped by their high 16 bits, and each
+ * group is a sorted char[] of the low 16 bits while it holds at most 4096 values, a 65536-bit
+ * long[] afterwards. Sparse sets, like the trips of one passenger, take 2 bytes per value; dense
+ * ones at most 1 bit per value. Values are only ever added.
+ */
+final class CompressedBitmap {
+
+    // Past this many values an array container is larger than a bitmap container
+    private static final int ARRAY_CONTAINER_MAX = 4096;
+    private static final int BITMAP_CONTAINER_WORDS = 1 << 10;
+
+    private int[] keys = new int[0];            // high 16 bits, sorted
+    private Object[] containers = new Object[0];    // char[] or long[]
+    private int[] containerSizes = new int[0];
+    private int containerCount;
+    private long cardinality;
+
+    /**
+     * @return true if value was not in the set yet.
+     */
+    boolean add(int value) {
+        int high = value >>> 16;
+        char low = (char) value;
+
+        int index = Arrays.binarySearch(keys, 0, containerCount, high);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, high);
+        }
+
+        boolean added = containers[index] instanceof char[]
+                ? addToArray(index, low)
+                : addToBitmap((long[]) containers[index], low);
+        if (added) {
+            containerSizes[index]++;
+            cardinality++;
+        }
+        return added;
+    }
+
+    boolean contains(int value) {
+        int index = Arrays.binarySearch(keys, 0, containerCount, value >>> 16);
+        if (index < 0) {
+            return false;
+        }
+        return containerContains(containers[index], containerSizes[index], (char) value);
+    }
+
+    /**
+     * True if every value of this set is in other.
+     */
+    boolean isSubsetOf(CompressedBitmap other) {
+        if (cardinality > other.cardinality) {
+            return false;
+        }
+
+        for (int i = 0; i < containerCount; i++) {
+            int j = Arrays.binarySearch(other.keys, 0, other.containerCount, keys[i]);
+            if (j < 0 || !containerIsSubset(i, other, j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long getCardinality() {
+        return cardinality;
+    }
+
+    boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    private boolean containerIsSubset(int i, CompressedBitmap other, int j) {
+        Object container = containers[i];
+        int size = containerSizes[i];
+        Object otherContainer = other.containers[j];
+        int otherSize = other.containerSizes[j];
+
+        if (size > otherSize) {
+            return false;
+        }
+
+        if (container instanceof long[] && otherContainer instanceof long[]) {
+            long[] words = (long[]) container;
+            long[] otherWords = (long[]) otherContainer;
+            for (int w = 0; w < BITMAP_CONTAINER_WORDS; w++) {
+                if ((words[w] & ~otherWords[w]) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        if (container instanceof char[] && otherContainer instanceof char[]) {
+            // Merge walk over the two sorted arrays
+            char[] values = (char[]) container;
+            char[] otherValues = (char[]) otherContainer;
+            int k = 0;
+            for (int v = 0; v < size; v++) {
+                while (k < otherSize && otherValues[k] < values[v]) {
+                    k++;
+                }
+                if (k == otherSize || otherValues[k] != values[v]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        if (container instanceof char[]) {
+            char[] values = (char[]) container;
+            for (int v = 0; v < size; v++) {
+                if (!containerContains(otherContainer, otherSize, values[v])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long[] words = (long[]) container;
+        for (int w = 0; w < BITMAP_CONTAINER_WORDS; w++) {
+            for (long word = words[w]; word != 0; word &= word - 1) {
+                char low = (char) (w * 64 + Long.numberOfTrailingZeros(word));
+                if (!containerContains(otherContainer, otherSize, low)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean containerContains(Object container, int size, char low) {
+        if (container instanceof char[]) {
+            return Arrays.binarySearch((char[]) container, 0, size, low) >= 0;
+        }
+        return (((long[]) container)[low >>> 6] & (1L << low)) != 0;
+    }
+
+    private void insertContainer(int index, int high) {
+        if (containerCount == keys.length) {
+            int capacity = Math.max(4, containerCount * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+            containerSizes = Arrays.copyOf(containerSizes, capacity);
+        }
+
+        System.arraycopy(keys, index, keys, index + 1, containerCount - index);
+        System.arraycopy(containers, index, containers, index + 1, containerCount - index);
+        System.arraycopy(containerSizes, index, containerSizes, index + 1, containerCount - index);
+        keys[index] = high;
+        containers[index] = new char[4];
+        containerSizes[index] = 0;
+        containerCount++;
+    }
+
+    private boolean addToArray(int index, char low) {
+        char[] values = (char[]) containers[index];
+        int size = containerSizes[index];
+
+        int position = Arrays.binarySearch(values, 0, size, low);
+        if (position >= 0) {
+            return false;
+        }
+        position = -position - 1;
+
+        if (size == ARRAY_CONTAINER_MAX) {
+            long[] words = new long[BITMAP_CONTAINER_WORDS];
+            for (int v = 0; v < size; v++) {
+                words[values[v] >>> 6] |= 1L << values[v];
+            }
+            containers[index] = words;
+            return addToBitmap(words, low);
+        }
+
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.min(ARRAY_CONTAINER_MAX, size * 2));
+            containers[index] = values;
+        }
+        System.arraycopy(values, position, values, position + 1, size - position);
+        values[position] = low;
+        return true;
+    }
+
+    private static boolean addToBitmap(long[] words, char low) {
+        long bit = 1L << low;
+        if ((words[low >>> 6] & bit) != 0) {
+            return false;
+        }
+        words[low >>> 6] |= bit;
+        return true;
+    }
+}
@@ -0,0 +1,14 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Opens new connections to the car-pooling database, e.g.
+ * () -> DriverManager.getConnection(url, user, password).
+ */
+@FunctionalInterface
+public interface ConnectionFactory {
+
+    Connection connect() throws SQLException;
+}
@@ -0,0 +1,318 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Bounded pool of database connections.
+ *
+ * At most maxSize connections are handed out at once; borrow() waits up to borrowTimeoutMillis
+ * for one to come back. Connections that stay borrowed longer than leakThresholdMillis are
+ * reported on System.err together with the stack trace of the code that borrowed them.
+ * Drop listeners hear of every connection the pool closes or discards, so whatever was kept
+ * for it can be let go.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private final ConnectionFactory connectionFactory;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long leakThresholdMillis;
+
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<Connection> idle = new ConcurrentLinkedDeque<>();
+    private final Map<Connection, Borrow> borrowed = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService leakDetector;
+    private final List<Consumer<Connection>> dropListeners = new CopyOnWriteArrayList<>();
+
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder leakWarnings = new LongAdder();
+
+    private volatile boolean closed;
+
+    public ConnectionPool(ConnectionFactory connectionFactory, int maxSize, long borrowTimeoutMillis,
+                          long leakThresholdMillis) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be > 0: " + maxSize);
+        }
+        this.connectionFactory = connectionFactory;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.permits = new Semaphore(maxSize, true);
+
+        if (leakThresholdMillis > 0) {
+            leakDetector = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "connection-pool-leak-detector");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(1, leakThresholdMillis / 2);
+            leakDetector.scheduleAtFixedRate(this::reportLeaks, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            leakDetector = null;
+        }
+    }
+
+    /**
+     * Takes an idle connection, or opens a new one while the pool is below maxSize.
+     *
+     * @throws SQLTimeoutException if no connection became free within borrowTimeoutMillis.
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw new SQLTimeoutException("No connection available within " + borrowTimeoutMillis + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            Connection connection;
+            while ((connection = idle.pollFirst()) != null) {
+                if (!connection.isClosed()) {
+                    break;
+                }
+                drop(connection);
+            }
+            if (connection == null) {
+                connection = connectionFactory.connect();
+                created.increment();
+            }
+
+            // The stack trace is only worth its cost when a leak report may print it
+            borrowed.put(connection, new Borrow(Thread.currentThread().getName(),
+                    leakThresholdMillis > 0 ? new Exception("Connection borrowed here") : null));
+            borrowCount.increment();
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Gives a borrowed connection back. An open transaction is rolled back first.
+     */
+    public void release(Connection connection) {
+        if (borrowed.remove(connection) == null) {
+            throw new IllegalArgumentException("Connection was not borrowed from this pool");
+        }
+
+        try {
+            if (closed || connection.isClosed()) {
+                drop(connection);
+            } else {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                idle.offerFirst(connection);
+            }
+        } catch (SQLException e) {
+            // A connection that cannot be reset is dropped; the next borrow opens a fresh one
+            e.printStackTrace();
+            drop(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    public PoolStats getStats() {
+        int active = borrowed.size();
+        return new PoolStats(maxSize, active, idle.size(), permits.getQueueLength(), created.sum(),
+                borrowCount.sum(), waitNanos.sum(), maxWaitNanos.get(), timeouts.sum(), leakWarnings.sum());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (leakDetector != null) {
+            leakDetector.shutdownNow();
+        }
+        Connection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            drop(connection);
+        }
+    }
+
+    /**
+     * Calls listener with every connection the pool closes or discards from now on, before it
+     * is closed.
+     */
+    public void addDropListener(Consumer<Connection> listener) {
+        dropListeners.add(listener);
+    }
+
+    private void recordWait(long nanos) {
+        waitNanos.add(nanos);
+        long max;
+        while (nanos > (max = maxWaitNanos.get())) {
+            if (maxWaitNanos.compareAndSet(max, nanos)) {
+                break;
+            }
+        }
+    }
+
+    private void reportLeaks() {
+        long now = System.nanoTime();
+        for (Borrow borrow : borrowed.values()) {
+            long heldMillis = TimeUnit.NANOSECONDS.toMillis(now - borrow.borrowedAt);
+            if (heldMillis > leakThresholdMillis && !borrow.reported) {
+                borrow.reported = true;
+                leakWarnings.increment();
+                System.err.println("Possible connection leak: connection borrowed by thread "
+                        + borrow.threadName + " has not been released for " + heldMillis + " ms");
+                borrow.borrowedFrom.printStackTrace();
+            }
+        }
+    }
+
+    private void drop(Connection connection) {
+        for (Consumer<Connection> listener : dropListeners) {
+            try {
+                listener.accept(connection);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        closeQuietly(connection);
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static final class Borrow {
+        private final long borrowedAt = System.nanoTime();
+        private final String threadName;
+        private final Exception borrowedFrom;
+        private volatile boolean reported;
+
+        Borrow(String threadName, Exception borrowedFrom) {
+            this.threadName = threadName;
+            this.borrowedFrom = borrowedFrom;
+        }
+    }
+
+    /**
+     * Point-in-time pool metrics.
+     */
+    public static class PoolStats {
+        private final int maxSize;
+        private final int active;
+        private final int idle;
+        private final int waitingThreads;
+        private final long connectionsCreated;
+        private final long borrows;
+        private final long totalWaitNanos;
+        private final long maxWaitNanos;
+        private final long timeouts;
+        private final long leakWarnings;
+
+        public PoolStats(int maxSize, int active, int idle, int waitingThreads, long connectionsCreated,
+                         long borrows, long totalWaitNanos, long maxWaitNanos, long timeouts, long leakWarnings) {
+            this.maxSize = maxSize;
+            this.active = active;
+            this.idle = idle;
+            this.waitingThreads = waitingThreads;
+            this.connectionsCreated = connectionsCreated;
+            this.borrows = borrows;
+            this.totalWaitNanos = totalWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+            this.timeouts = timeouts;
+            this.leakWarnings = leakWarnings;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        public int getWaitingThreads() {
+            return waitingThreads;
+        }
+
+        public long getConnectionsCreated() {
+            return connectionsCreated;
+        }
+
+        public long getBorrows() {
+            return borrows;
+        }
+
+        public long getTotalWaitNanos() {
+            return totalWaitNanos;
+        }
+
+        public long getMaxWaitNanos() {
+            return maxWaitNanos;
+        }
+
+        public double getAverageWaitMillis() {
+            return borrows == 0 ? 0.0 : totalWaitNanos / 1_000_000.0 / borrows;
+        }
+
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        public long getLeakWarnings() {
+            return leakWarnings;
+        }
+
+        @Override
+        public String toString() {
+            return "PoolStats{" +
+                    "maxSize=" + maxSize +
+                    ", active=" + active +
+                    ", idle=" + idle +
+                    ", waitingThreads=" + waitingThreads +
+                    ", connectionsCreated=" + connectionsCreated +
+                    ", borrows=" + borrows +
+                    ", averageWaitMillis=" + String.format(Locale.US, "%.3f", getAverageWaitMillis()) +
+                    ", maxWaitMillis=" + String.format(Locale.US, "%.3f", maxWaitNanos / 1_000_000.0) +
+                    ", timeouts=" + timeouts +
+                    ", leakWarnings=" + leakWarnings +
+                    '}';
+        }
+    }
+}
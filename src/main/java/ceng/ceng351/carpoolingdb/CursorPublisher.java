@@ -0,0 +1,129 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.sql.SQLException;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Flow.Publisher over a RowCursor that reads no more rows than the subscriber asked for.
+ *
+ * Every subscriber gets a cursor of its own, opened at its first request(). Rows are read and
+ * delivered on the thread that calls request() (or, when request() is called from onNext(), by
+ * the loop already delivering), never on a thread of the publisher's own; the cursor is closed
+ * after the last row, on an error, and on cancel().
+ */
+final class CursorPublisher<T> implements Flow.Publisher<T> {
+
+    @FunctionalInterface
+    interface CursorOpener<T> {
+        RowCursor<T> open() throws SQLException;
+    }
+
+    private final CursorOpener<T> opener;
+
+    CursorPublisher(CursorOpener<T> opener) {
+        this.opener = opener;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        subscriber.onSubscribe(new CursorSubscription<>(subscriber, opener));
+    }
+
+    private static final class CursorSubscription<T> implements Flow.Subscription {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final CursorOpener<T> opener;
+
+        private final AtomicLong demand = new AtomicLong();
+        // Number of drain() requests; whoever raises it from 0 delivers until it is back to 0
+        private final AtomicInteger work = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile IllegalArgumentException invalidRequest;
+
+        // Only used by the thread in drain()
+        private RowCursor<T> cursor;
+        private boolean done;
+
+        CursorSubscription(Flow.Subscriber<? super T> subscriber, CursorOpener<T> opener) {
+            this.subscriber = subscriber;
+            this.opener = opener;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("request must be > 0: " + n);
+            } else {
+                // Saturates at Long.MAX_VALUE, which means unbounded
+                demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        private void drain() {
+            if (work.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (!done) {
+                    deliver();
+                }
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void deliver() {
+            try {
+                while (!cancelled && invalidRequest == null && demand.get() > 0) {
+                    if (cursor == null) {
+                        cursor = opener.open();
+                    }
+                    T row = cursor.next();
+                    if (row == null) {
+                        finish();
+                        subscriber.onComplete();
+                        return;
+                    }
+                    subscriber.onNext(row);
+                    if (demand.get() != Long.MAX_VALUE) {
+                        demand.decrementAndGet();
+                    }
+                }
+
+                if (cancelled) {
+                    finish();
+                } else if (invalidRequest != null) {
+                    finish();
+                    subscriber.onError(invalidRequest);
+                }
+            } catch (SQLException | RuntimeException e) {
+                finish();
+                if (!cancelled) {
+                    subscriber.onError(e);
+                }
+            }
+        }
+
+        private void finish() {
+            done = true;
+            if (cursor != null) {
+                try {
+                    cursor.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+                cursor = null;
+            }
+        }
+    }
+}
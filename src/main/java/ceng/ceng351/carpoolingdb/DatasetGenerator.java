@@ -0,0 +1,560 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes a synthetic data set in the TSV format of src/main/resources/data, scale times the size
+ * of the bundled files (1000 participants, about 1700 trips and 2100 bookings per unit of scale).
+ * The files can be read with ParallelFileReader.
+ *
+ * The data has the shape of the bundled files: 70% of the participants are passengers and 40%
+ * drivers (10% both), drivers own 0-3 cars with mostly 1-5 trips each, trips never have more
+ * bookings than seats, and Confirmed, Cancelled and Pending are equally likely. On top of that,
+ * cities follow a Zipf distribution (New York is the busiest) and the trips of a few popular
+ * drivers collect most of the bookings.
+ *
+ * Output depends only on seed and scale. Participants are generated in fixed blocks, each block
+ * from its own random stream, on a thread pool; the writer appends finished blocks in order while
+ * the pool works ahead, so memory stays at a few blocks per thread whatever the scale.
+ */
+public class DatasetGenerator {
+
+    static final String[] FIRST_NAMES = {
+            "Olivia", "Sophia", "Emma", "Chris", "Daniel", "Emily", "David", "John", "Jane", "Mike"};
+    static final String[] LAST_NAMES = {
+            "Wilson", "Miller", "Taylor", "Smith", "Jones", "Williams", "Brown", "Davis", "Johnson", "Moore"};
+    static final String[] MEMBERSHIP_STATUSES = {"None", "Bronze", "Silver", "Gold"};
+    static final String[] COLORS = {"Black", "Blue", "Green", "Red", "White"};
+    static final String[] BRANDS = {
+            "Audi", "BMW", "Chevrolet", "Ford", "Honda", "Jeep", "Mercedes-Benz", "Nissan", "Subaru", "Toyota"};
+    static final String[] BOOKING_STATUSES = {"Confirmed", "Cancelled", "Pending"};
+
+    // Busiest first: the r-th city is chosen with weight 1 / r
+    static final String[] CITIES = {
+            "New York", "Los Angeles", "Chicago", "Houston", "Phoenix", "Philadelphia", "San Antonio",
+            "San Diego", "Dallas", "San Jose", "Austin", "Jacksonville", "Fort Worth", "Columbus",
+            "Charlotte", "Indianapolis", "San Francisco", "Seattle", "Denver", "Boston"};
+
+    static final int PARTICIPANTS_PER_SCALE = 1000;
+
+    // PINs must stay below Integer.MAX_VALUE while being 4 times sparser than the participants
+    static final int MAX_PARTICIPANTS = 1 << 28;
+
+    // Trip dates span the 90 days of the bundled Trips file
+    static final LocalDate FIRST_DATE = LocalDate.of(2024, 11, 28);
+    static final int DAYS = 90;
+
+    private static final int FIRST_PIN = 100000;
+    private static final int MIN_PIN_BITS = 20;
+
+    private static final int MIN_AGE = 18;
+    private static final int MAX_AGE = 70;
+    private static final int MAX_SEATS = 4;
+
+    // Booking popularity of a driver is Pareto distributed with this shape (mean 1.67); a trip gets
+    // Poisson(BOOKING_RATE * popularity) bookings, cut at its seats, about 1.25 per trip overall
+    private static final double POPULARITY_SHAPE = 2.5;
+    private static final double BOOKING_RATE = 1.0;
+    private static final double MAX_BOOKING_MEAN = 20.0;
+
+    // Participants per block: the unit of parallel work and of output order
+    private static final int BLOCK_PARTICIPANTS = 1 << 16;
+    private static final int BLOCKS_IN_FLIGHT_PER_THREAD = 2;
+
+    private static final int PARTICIPANTS = 0;
+    private static final int PASSENGERS = 1;
+    private static final int DRIVERS = 2;
+    private static final int CARS = 3;
+    private static final int TRIPS = 4;
+    private static final int BOOKINGS = 5;
+
+    private static final String[] TABLES = {"Participants", "Passengers", "Drivers", "Cars", "Trips", "Bookings"};
+    private static final String[] HEADERS = {
+            "PIN\tp_name\tage",
+            "PIN\tmembership_status",
+            "PIN\trating",
+            "CarID\tPIN\tcolor\tbrand",
+            "TripID\tCarID\tdate\tdeparture\tdestination\tnum_seats_available",
+            "TripID\tPIN\tbooking_status"};
+
+    // Salts that give each per-row attribute its own hash stream
+    private static final long ROLE_SALT = 1;
+    private static final long CAR_COUNT_SALT = 2;
+    private static final long TRIP_COUNT_SALT = 3;
+    private static final long POPULARITY_SALT = 4;
+    private static final long PIN_SALT = 5;
+    private static final long BLOCK_SALT = 6;
+
+    private static final byte[][] FIRST_NAME_BYTES = encode(FIRST_NAMES);
+    private static final byte[][] LAST_NAME_BYTES = encode(LAST_NAMES);
+    private static final byte[][] MEMBERSHIP_STATUS_BYTES = encode(MEMBERSHIP_STATUSES);
+    private static final byte[][] COLOR_BYTES = encode(COLORS);
+    private static final byte[][] BRAND_BYTES = encode(BRANDS);
+    private static final byte[][] BOOKING_STATUS_BYTES = encode(BOOKING_STATUSES);
+    private static final byte[][] CITY_BYTES = encode(CITIES);
+    private static final byte[][] DATE_BYTES = encodeDates();
+
+    private final long seed;
+    private final int scale;
+    private final int threads;
+
+    private final int participantCount;
+    private final int blockCount;
+    private final int pinBits;
+    private final long pinKey;
+    private final double[] cumulativeCityWeights;
+
+    public DatasetGenerator(long seed, int scale, int threads) {
+        if (scale <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("scale and threads must be > 0");
+        }
+        if ((long) scale * PARTICIPANTS_PER_SCALE > MAX_PARTICIPANTS) {
+            throw new IllegalArgumentException("scale must be <= " + MAX_PARTICIPANTS / PARTICIPANTS_PER_SCALE + ": " + scale);
+        }
+        this.seed = seed;
+        this.scale = scale;
+        this.threads = threads;
+
+        this.participantCount = scale * PARTICIPANTS_PER_SCALE;
+        this.blockCount = (participantCount + BLOCK_PARTICIPANTS - 1) / BLOCK_PARTICIPANTS;
+        this.pinBits = Math.max(MIN_PIN_BITS, 64 - Long.numberOfLeadingZeros(participantCount - 1) + 2);
+        this.pinKey = hash(PIN_SALT, 0);
+
+        this.cumulativeCityWeights = new double[CITIES.length];
+        double total = 0;
+        for (int i = 0; i < CITIES.length; i++) {
+            total += 1.0 / (i + 1);
+            cumulativeCityWeights[i] = total;
+        }
+    }
+
+    /**
+     * Writes Participants.txt, Passengers.txt, Drivers.txt, Cars.txt, Trips.txt and Bookings.txt
+     * into directory, replacing existing files.
+     *
+     * @return one report per file, in the order above.
+     */
+    public List<TableReport> generate(Path directory) throws IOException {
+        Files.createDirectories(directory);
+
+        long start = System.nanoTime();
+        long[] rows = new long[TABLES.length];
+        long[] bytes = new long[TABLES.length];
+        OutputStream[] outputs = new OutputStream[TABLES.length];
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            // CarIDs and TripIDs are dense, so each block first needs the number of cars and trips before it
+            int[] firstCarIds = new int[blockCount];
+            int[] firstTripIds = new int[blockCount];
+            countCarsAndTrips(executor, firstCarIds, firstTripIds);
+
+            for (int table = 0; table < TABLES.length; table++) {
+                outputs[table] = Files.newOutputStream(directory.resolve(TABLES[table] + ".txt"));
+                byte[] header = (HEADERS[table] + "\n").getBytes(StandardCharsets.UTF_8);
+                outputs[table].write(header);
+                bytes[table] += header.length;
+            }
+
+            Deque<Future<TsvBuffer[]>> pending = new ArrayDeque<>();
+            for (int block = 0; block < blockCount; block++) {
+                int b = block;
+                pending.add(executor.submit(() -> generateBlock(b, firstCarIds[b], firstTripIds[b])));
+                if (pending.size() >= threads * BLOCKS_IN_FLIGHT_PER_THREAD) {
+                    write(pending.poll().get(), outputs, rows, bytes);
+                }
+            }
+            while (!pending.isEmpty()) {
+                write(pending.poll().get(), outputs, rows, bytes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Dataset generation interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Dataset generation failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+            for (OutputStream output : outputs) {
+                if (output != null) {
+                    output.close();
+                }
+            }
+        }
+
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        List<TableReport> reports = new ArrayList<>();
+        for (int table = 0; table < TABLES.length; table++) {
+            reports.add(new TableReport(TABLES[table], rows[table], bytes[table], elapsedMillis));
+        }
+        return reports;
+    }
+
+    private void countCarsAndTrips(ExecutorService executor, int[] firstCarIds, int[] firstTripIds)
+            throws InterruptedException, ExecutionException {
+        List<Future<long[]>> counts = new ArrayList<>();
+        for (int block = 0; block < blockCount; block++) {
+            int b = block;
+            counts.add(executor.submit(() -> countCarsAndTrips(b)));
+        }
+
+        long nextCarId = 1;
+        long nextTripId = 1;
+        for (int block = 0; block < blockCount; block++) {
+            firstCarIds[block] = (int) nextCarId;
+            firstTripIds[block] = (int) nextTripId;
+            long[] count = counts.get(block).get();
+            nextCarId += count[0];
+            nextTripId += count[1];
+        }
+        if (nextTripId > Integer.MAX_VALUE || nextCarId > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Too many cars or trips for INT ids at scale " + scale);
+        }
+    }
+
+    // {cars, trips} of the drivers in block
+    private long[] countCarsAndTrips(int block) {
+        long cars = 0;
+        long trips = 0;
+        int end = Math.min(participantCount, (block + 1) * BLOCK_PARTICIPANTS);
+        for (int participant = block * BLOCK_PARTICIPANTS; participant < end; participant++) {
+            if (isDriver(participant)) {
+                int carCount = carCountOf(participant);
+                cars += carCount;
+                for (int car = 0; car < carCount; car++) {
+                    trips += tripCountOf(participant, car);
+                }
+            }
+        }
+        return new long[]{cars, trips};
+    }
+
+    private TsvBuffer[] generateBlock(int block, int firstCarId, int firstTripId) {
+        TsvBuffer[] out = new TsvBuffer[TABLES.length];
+        for (int table = 0; table < TABLES.length; table++) {
+            out[table] = new TsvBuffer();
+        }
+
+        // Everything not derived from a participant index comes from the block's own stream,
+        // so the output does not depend on how blocks are spread over threads
+        SplittableRandom random = new SplittableRandom(hash(BLOCK_SALT, block));
+        int carId = firstCarId;
+        int tripId = firstTripId;
+        int[] bookedPins = new int[MAX_SEATS];
+
+        int end = Math.min(participantCount, (block + 1) * BLOCK_PARTICIPANTS);
+        for (int participant = block * BLOCK_PARTICIPANTS; participant < end; participant++) {
+            int pin = pinOf(participant);
+
+            out[PARTICIPANTS].integer(pin).tab()
+                    .text(FIRST_NAME_BYTES[random.nextInt(FIRST_NAMES.length)]).space()
+                    .text(LAST_NAME_BYTES[random.nextInt(LAST_NAMES.length)]).tab()
+                    .integer(MIN_AGE + random.nextInt(MAX_AGE - MIN_AGE + 1)).endRow();
+
+            if (isPassenger(participant)) {
+                out[PASSENGERS].integer(pin).tab()
+                        .text(MEMBERSHIP_STATUS_BYTES[random.nextInt(MEMBERSHIP_STATUSES.length)]).endRow();
+            }
+
+            if (!isDriver(participant)) {
+                continue;
+            }
+
+            // Ratings 1.0 .. 5.0 in steps of 0.1, written as tenths
+            int ratingTenths = 10 + random.nextInt(41);
+            out[DRIVERS].integer(pin).tab().integer(ratingTenths / 10).dot().integer(ratingTenths % 10).endRow();
+
+            double bookingMean = Math.min(MAX_BOOKING_MEAN, BOOKING_RATE * popularityOf(participant));
+            int carCount = carCountOf(participant);
+            for (int car = 0; car < carCount; car++, carId++) {
+                out[CARS].integer(carId).tab().integer(pin).tab()
+                        .text(COLOR_BYTES[random.nextInt(COLORS.length)]).tab()
+                        .text(BRAND_BYTES[random.nextInt(BRANDS.length)]).endRow();
+
+                int tripCount = tripCountOf(participant, car);
+                for (int trip = 0; trip < tripCount; trip++, tripId++) {
+                    int departure = city(random);
+                    int destination = city(random);
+                    while (destination == departure) {
+                        destination = city(random);
+                    }
+                    int seats = 1 + random.nextInt(MAX_SEATS);
+
+                    out[TRIPS].integer(tripId).tab().integer(carId).tab()
+                            .text(DATE_BYTES[random.nextInt(DAYS)]).tab()
+                            .text(CITY_BYTES[departure]).tab()
+                            .text(CITY_BYTES[destination]).tab()
+                            .integer(seats).endRow();
+
+                    int bookingCount = Math.min(seats, poisson(random, bookingMean));
+                    for (int booking = 0; booking < bookingCount; booking++) {
+                        int passengerPin = randomPassengerPin(random, bookedPins, booking);
+                        bookedPins[booking] = passengerPin;
+                        out[BOOKINGS].integer(tripId).tab().integer(passengerPin).tab()
+                                .text(BOOKING_STATUS_BYTES[random.nextInt(BOOKING_STATUSES.length)]).endRow();
+                    }
+                }
+            }
+        }
+
+        return out;
+    }
+
+    private static void write(TsvBuffer[] block, OutputStream[] outputs, long[] rows, long[] bytes) throws IOException {
+        for (int table = 0; table < block.length; table++) {
+            outputs[table].write(block[table].bytes, 0, block[table].size);
+            rows[table] += block[table].rows;
+            bytes[table] += block[table].size;
+        }
+    }
+
+    /*
+     * Per-participant attributes that other blocks need too (whether a random participant is a
+     * passenger; how many cars and trips come before a block) are pure functions of the index.
+     */
+
+    // 0: passenger and driver, 1-3: driver, 4-9: passenger
+    private int roleOf(int participant) {
+        return (int) Long.remainderUnsigned(hash(ROLE_SALT, participant), 10);
+    }
+
+    private boolean isPassenger(int participant) {
+        int role = roleOf(participant);
+        return role == 0 || role >= 4;
+    }
+
+    private boolean isDriver(int participant) {
+        return roleOf(participant) <= 3;
+    }
+
+    // 0 cars for 26% of drivers, then 1, 2 or 3 about equally often
+    private int carCountOf(int participant) {
+        int percentile = (int) Long.remainderUnsigned(hash(CAR_COUNT_SALT, participant), 100);
+        return percentile < 26 ? 0 : percentile < 48 ? 1 : percentile < 75 ? 2 : 3;
+    }
+
+    // 0 trips for 5% of cars, otherwise 1-5
+    private int tripCountOf(int participant, int car) {
+        long h = hash(TRIP_COUNT_SALT, (long) participant * 4 + car);
+        return Long.remainderUnsigned(h, 100) < 5 ? 0 : 1 + (int) Long.remainderUnsigned(h >>> 32, 5);
+    }
+
+    private double popularityOf(int participant) {
+        double uniform = (hash(POPULARITY_SALT, participant) >>> 11) * 0x1.0p-53;
+        return Math.pow(1.0 - uniform, -1.0 / POPULARITY_SHAPE);
+    }
+
+    /**
+     * PINs are the participant indexes run through a keyed bijection of pinBits-bit integers
+     * (xor, odd multiplications and xor-shifts are all invertible), so they are unique, spread
+     * over the range like the bundled ones, and computable from the index alone.
+     */
+    int pinOf(int participant) {
+        long mask = (1L << pinBits) - 1;
+        int shift = pinBits / 2 + 1;
+        long x = (participant ^ pinKey) & mask;
+        x = (x * 0x9E3779B97F4A7C15L) & mask;
+        x ^= x >>> shift;
+        x = (x * 0xBF58476D1CE4E5B9L) & mask;
+        x ^= x >>> shift;
+        return FIRST_PIN + (int) x;
+    }
+
+    // A passenger who does not have one of the first count bookings of the trip yet
+    private int randomPassengerPin(SplittableRandom random, int[] bookedPins, int count) {
+        while (true) {
+            int participant = random.nextInt(participantCount);
+            if (!isPassenger(participant)) {
+                continue;
+            }
+            int pin = pinOf(participant);
+            boolean booked = false;
+            for (int i = 0; i < count; i++) {
+                booked |= bookedPins[i] == pin;
+            }
+            if (!booked) {
+                return pin;
+            }
+        }
+    }
+
+    private int city(SplittableRandom random) {
+        double point = random.nextDouble() * cumulativeCityWeights[cumulativeCityWeights.length - 1];
+        int index = Arrays.binarySearch(cumulativeCityWeights, point);
+        return index >= 0 ? index : Math.min(-index - 1, CITIES.length - 1);
+    }
+
+    // Knuth's method; mean is small, at most MAX_BOOKING_MEAN
+    private static int poisson(SplittableRandom random, double mean) {
+        double limit = Math.exp(-mean);
+        double product = random.nextDouble();
+        int count = 0;
+        while (product > limit) {
+            product *= random.nextDouble();
+            count++;
+        }
+        return count;
+    }
+
+    private long hash(long salt, long index) {
+        return mix(mix(seed ^ salt * 0x9E3779B97F4A7C15L) + index);
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static byte[][] encode(String[] values) {
+        byte[][] encoded = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            encoded[i] = values[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return encoded;
+    }
+
+    private static byte[][] encodeDates() {
+        byte[][] encoded = new byte[DAYS][];
+        for (int day = 0; day < DAYS; day++) {
+            encoded[day] = FIRST_DATE.plusDays(day).toString().getBytes(StandardCharsets.US_ASCII);
+        }
+        return encoded;
+    }
+
+    /**
+     * Growable byte buffer for the rows of one table in one block.
+     */
+    private static final class TsvBuffer {
+        private byte[] bytes = new byte[1 << 12];
+        private int size;
+        private int rows;
+
+        TsvBuffer integer(int value) {
+            ensureCapacity(11);
+            if (value < 0) {
+                bytes[size++] = '-';
+                value = -value;
+            }
+            int start = size;
+            do {
+                bytes[size++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            // Digits were written least significant first
+            for (int i = start, j = size - 1; i < j; i++, j--) {
+                byte digit = bytes[i];
+                bytes[i] = bytes[j];
+                bytes[j] = digit;
+            }
+            return this;
+        }
+
+        TsvBuffer text(byte[] value) {
+            ensureCapacity(value.length);
+            System.arraycopy(value, 0, bytes, size, value.length);
+            size += value.length;
+            return this;
+        }
+
+        TsvBuffer tab() {
+            return single((byte) '\t');
+        }
+
+        TsvBuffer space() {
+            return single((byte) ' ');
+        }
+
+        TsvBuffer dot() {
+            return single((byte) '.');
+        }
+
+        void endRow() {
+            single((byte) '\n');
+            rows++;
+        }
+
+        private TsvBuffer single(byte value) {
+            ensureCapacity(1);
+            bytes[size++] = value;
+            return this;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+
+    public static class TableReport {
+        private final String table;
+        private final long rows;
+        private final long bytes;
+        private final long elapsedMillis;
+
+        public TableReport(String table, long rows, long bytes, long elapsedMillis) {
+            this.table = table;
+            this.rows = rows;
+            this.bytes = bytes;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return table + ": " + rows + " rows, " + bytes + " bytes in " + elapsedMillis + " ms";
+        }
+    }
+
+    /**
+     * Usage: DatasetGenerator outputDirectory scale [seed] [threads]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: DatasetGenerator outputDirectory scale [seed] [threads]");
+            return;
+        }
+
+        Path directory = Paths.get(args[0]);
+        int scale = Integer.parseInt(args[1]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 351;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        for (TableReport report : new DatasetGenerator(seed, scale, threads).generate(directory)) {
+            System.out.println(report);
+        }
+    }
+}
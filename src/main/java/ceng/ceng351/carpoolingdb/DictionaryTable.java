@@ -0,0 +1,89 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The Dictionary table, which holds the values of the low-cardinality text columns.
+ *
+ * Trips.departure/destination, Bookings.booking_status, Passengers.membership_status and
+ * Cars.color/brand store the INT code of their value. Codes are unique across all categories, so a
+ * column joins to its value with Dictionary.code alone. Inserts look the codes up with
+ * codeOf(category) sub-selects; register() must have added the values first.
+ */
+final class DictionaryTable {
+
+    static final int CITY = 1;
+    static final int BOOKING_STATUS = 2;
+    static final int MEMBERSHIP_STATUS = 3;
+    static final int BRAND = 4;
+    static final int COLOR = 5;
+
+    static final String CREATE_SQL =
+            "CREATE TABLE Dictionary (" +
+                    "    code INT AUTO_INCREMENT PRIMARY KEY," +
+                    "    category INT NOT NULL," +
+                    "    name VARCHAR(50) NOT NULL," +
+                    "    UNIQUE (category, name)" +
+                    ")";
+
+    static final String DROP_SQL = "DROP TABLE IF EXISTS Dictionary";
+
+    static final String REGISTER_SQL = "MERGE INTO Dictionary (category, name) KEY (category, name) VALUES (?, ?)";
+
+    // Unique constraint violation: another connection registered the same value concurrently
+    private static final String DUPLICATE_KEY_STATE = "23505";
+
+    private DictionaryTable() {
+    }
+
+    /**
+     * Sub-select for the code of a value in category, taking the value as its one parameter.
+     * Yields NULL for a NULL or unknown value.
+     */
+    static String codeOf(int category) {
+        return "(SELECT code FROM Dictionary WHERE category = " + category + " AND name = ?)";
+    }
+
+    // Same, for a value written into the SQL
+    static String codeOf(int category, String literal) {
+        return "(SELECT code FROM Dictionary WHERE category = " + category + " AND name = '" + literal + "')";
+    }
+
+    /**
+     * Adds the distinct non-null values of rows to category, before the rows are inserted.
+     */
+    static <T> void register(Connection connection, int category, T[] rows, Function<T, String> column)
+            throws SQLException {
+        Set<String> values = new LinkedHashSet<>();
+        for (T row : rows) {
+            if (row != null) {
+                String value = column.apply(row);
+                if (value != null) {
+                    values.add(value);
+                }
+            }
+        }
+        if (values.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement preparedStatement = CancellableCall.track(connection.prepareStatement(REGISTER_SQL))) {
+            for (String value : values) {
+                preparedStatement.setInt(1, category);
+                preparedStatement.setString(2, value);
+                try {
+                    preparedStatement.executeUpdate();
+                } catch (SQLException e) {
+                    if (!DUPLICATE_KEY_STATE.equals(e.getSQLState())) {
+                        throw e;
+                    }
+                }
+            }
+        }
+    }
+}
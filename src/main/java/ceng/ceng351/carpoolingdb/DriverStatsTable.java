@@ -0,0 +1,105 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The DriverStats table: number of bookings on the trips of each driver's cars.
+ *
+ * getDriversScores() reads it instead of counting Bookings ⋈ Trips ⋈ Cars per driver. Inserting
+ * bookings adds to the counts of the drivers concerned (addBookings()); loads that do not know
+ * which rows made it in rebuild the whole table (rebuild()). Drivers without bookings have no
+ * row. The rating is not copied: the query joins Drivers, so updateDriverRatings() needs no
+ * extra write.
+ */
+final class DriverStatsTable {
+
+    // BIGINT like COUNT(*), so rating * number_of_bookings is computed exactly as before
+    static final String CREATE_SQL =
+            "CREATE TABLE DriverStats (" +
+                    "    PIN INT PRIMARY KEY," +
+                    "    number_of_bookings BIGINT NOT NULL" +
+                    ")";
+
+    static final String DROP_SQL = "DROP TABLE IF EXISTS DriverStats";
+
+    // Adds ? bookings to the driver of trip ?
+    static final String ADD_BOOKINGS_SQL =
+            "MERGE INTO DriverStats s " +
+                    "USING (" +
+                    "    SELECT c.PIN, CAST(? AS BIGINT) AS added " +
+                    "    FROM Trips t " +
+                    "    JOIN Cars c ON t.CarID = c.CarID " +
+                    "    WHERE t.TripID = ?" +
+                    ") a ON s.PIN = a.PIN " +
+                    "WHEN MATCHED THEN UPDATE SET number_of_bookings = s.number_of_bookings + a.added " +
+                    "WHEN NOT MATCHED THEN INSERT (PIN, number_of_bookings) VALUES (a.PIN, a.added)";
+
+    static final String CLEAR_SQL = "DELETE FROM DriverStats";
+
+    // Unique constraint violation: another connection inserted the driver's row concurrently
+    private static final String DUPLICATE_KEY_STATE = "23505";
+
+    // A retry finds the row the other connection inserted, so one is enough unless it is deleted again
+    private static final int MAX_ATTEMPTS = 3;
+
+    static final String REBUILD_SQL =
+            "INSERT INTO DriverStats (PIN, number_of_bookings) " +
+                    "SELECT c.PIN, COUNT(*) " +
+                    "FROM Bookings b " +
+                    "JOIN Trips t ON b.TripID = t.TripID " +
+                    "JOIN Cars c ON t.CarID = c.CarID " +
+                    "GROUP BY c.PIN";
+
+    private DriverStatsTable() {
+    }
+
+    /**
+     * Counts the first rowCount bookings, which were just inserted, with one statement per
+     * distinct trip.
+     *
+     * When two connections add the first bookings of a driver at once, both MERGEs take the NOT
+     * MATCHED branch and the second fails on the primary key without adding anything; it is run
+     * again, and then updates the row the first one inserted.
+     */
+    static void addBookings(Connection connection, Booking[] bookings, int rowCount) throws SQLException {
+        Map<Integer, Integer> bookingsPerTrip = new LinkedHashMap<>();
+        for (int i = 0; i < rowCount; i++) {
+            bookingsPerTrip.merge(bookings[i].getTripID(), 1, Integer::sum);
+        }
+        if (bookingsPerTrip.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement preparedStatement = CancellableCall.track(connection.prepareStatement(ADD_BOOKINGS_SQL))) {
+            for (Map.Entry<Integer, Integer> trip : bookingsPerTrip.entrySet()) {
+                preparedStatement.setInt(1, trip.getValue());
+                preparedStatement.setInt(2, trip.getKey());
+                for (int attempt = 1; ; attempt++) {
+                    try {
+                        preparedStatement.executeUpdate();
+                        break;
+                    } catch (SQLException e) {
+                        if (!DUPLICATE_KEY_STATE.equals(e.getSQLState()) || attempt == MAX_ATTEMPTS) {
+                            throw e;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Recomputes every count from Bookings.
+     */
+    static void rebuild(Connection connection) throws SQLException {
+        try (PreparedStatement clear = CancellableCall.track(connection.prepareStatement(CLEAR_SQL));
+             PreparedStatement rebuild = CancellableCall.track(connection.prepareStatement(REBUILD_SQL))) {
+            clear.executeUpdate();
+            rebuild.executeUpdate();
+        }
+    }
+}
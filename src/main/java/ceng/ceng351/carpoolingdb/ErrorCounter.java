@@ -0,0 +1,26 @@
+package ceng.ceng351.carpoolingdb;
+
+/**
+ * Where the ICarPoolingSystem implementations report the exceptions they catch. The stack trace
+ * is printed as before; a per-thread count also lets InstrumentedCarPoolingSystem tell that the
+ * call it timed failed, although the failure never reached it.
+ */
+final class ErrorCounter {
+
+    private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[1]);
+
+    private ErrorCounter() {
+    }
+
+    static void report(Exception e) {
+        e.printStackTrace();
+        COUNT.get()[0]++;
+    }
+
+    /**
+     * Number of exceptions reported on the calling thread so far.
+     */
+    static long currentThreadCount() {
+        return COUNT.get()[0];
+    }
+}
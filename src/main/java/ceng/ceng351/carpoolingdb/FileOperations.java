@@ -1,13 +1,17 @@
 package ceng.ceng351.carpoolingdb;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.time.DateTimeException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
 
 /**
  * FileOperations class for reading data files and writing output files.
@@ -32,267 +36,268 @@ public class FileOperations {
         return fileWriter;
     }
 
-    // Helper method to get BufferedReader from resource
-    private static BufferedReader getBufferedReader(String resourcePath) {
-        InputStream inputStream = FileOperations.class.getClassLoader().getResourceAsStream(resourcePath);
-
-        if (inputStream == null) {
-            return null;
-        }
-
-        return new BufferedReader(new InputStreamReader(inputStream));
+    // Helper method to get InputStream from resource
+    private static InputStream getInputStream(String resourcePath) {
+        return FileOperations.class.getClassLoader().getResourceAsStream(resourcePath);
     }
 
+    // Rows per chunk used by the array readers below
+    private static final int DEFAULT_CHUNK_SIZE = 4096;
+
     public static Participant[] readParticipantsFile() {
         List<Participant> participantList = new ArrayList<>();
-
-        try (BufferedReader bufferedReader = getBufferedReader("data/Participants.txt")) {
-
-            if (bufferedReader == null) {
-                System.err.println("Participants data file not found.");
-                return new Participant[0];
-            }
-
-            String strLine;
-
-            // Example strLine: PIN    p_name    age
-
-            // Skip the header line
-            bufferedReader.readLine();
-
-            while ((strLine = bufferedReader.readLine()) != null) {
-                // Parse strLine
-                String[] words = strLine.split("\t");
-
-                if (words.length < 3) {
-                    System.out.println("There is a problem in Participants File Reading phase");
-                } else {
-                    try {
-                        int PIN = Integer.parseInt(words[0]);
-                        String p_name = words[1];
-                        int age = Integer.parseInt(words[2]);
-
-                        Participant participant = new Participant(PIN, p_name, age);
-                        participantList.add(participant);
-                    } catch (NumberFormatException e) {
-                        System.err.println("Invalid data format in Participants file: " + strLine);
-                        e.printStackTrace();
-                    }
-                }
-            }
-
-
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-
+        readParticipantsFile(DEFAULT_CHUNK_SIZE, chunk -> Collections.addAll(participantList, chunk));
         return participantList.toArray(new Participant[0]);
     }
 
     public static Passenger[] readPassengersFile() {
         List<Passenger> passengerList = new ArrayList<>();
+        readPassengersFile(DEFAULT_CHUNK_SIZE, chunk -> Collections.addAll(passengerList, chunk));
+        return passengerList.toArray(new Passenger[0]);
+    }
 
-        try (BufferedReader bufferedReader = getBufferedReader("data/Passengers.txt")) {
-
-            if (bufferedReader == null) {
-                System.err.println("Passengers data file not found.");
-                return new Passenger[0];
-            }
-
-            String strLine;
-
-            // Example strLine: PIN    membership_status
-
-            // Skip the header line
-            bufferedReader.readLine();
-
-            while ((strLine = bufferedReader.readLine()) != null) {
-                // Parse strLine
-                String[] words = strLine.split("\t");
+    public static Driver[] readDriversFile() {
+        List<Driver> driverList = new ArrayList<>();
+        readDriversFile(DEFAULT_CHUNK_SIZE, chunk -> Collections.addAll(driverList, chunk));
+        return driverList.toArray(new Driver[0]);
+    }
 
-                if (words.length < 2) {
-                    System.out.println("There is a problem in Passengers File Reading phase");
-                } else {
-                    int PIN = Integer.parseInt(words[0]);
-                    String membership_status = words[1];
+    public static Car[] readCarsFile() {
+        List<Car> carList = new ArrayList<>();
+        readCarsFile(DEFAULT_CHUNK_SIZE, chunk -> Collections.addAll(carList, chunk));
+        return carList.toArray(new Car[0]);
+    }
 
-                    Passenger passenger = new Passenger(PIN, membership_status);
-                    passengerList.add(passenger);
-                }
+    public static Trip[] readTripsFile() {
+        List<Trip> tripList = new ArrayList<>();
+        readTripsFile(DEFAULT_CHUNK_SIZE, chunk -> Collections.addAll(tripList, chunk));
+        return tripList.toArray(new Trip[0]);
+    }
 
-            } // End of while
+    public static Booking[] readBookingsFile() {
+        List<Booking> bookingList = new ArrayList<>();
+        readBookingsFile(DEFAULT_CHUNK_SIZE, chunk -> Collections.addAll(bookingList, chunk));
+        return bookingList.toArray(new Booking[0]);
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    /*
+     * Streaming readers: rows are handed to the consumer in chunks of at most chunkSize as the file
+     * is read, so only one chunk is on the heap at a time. A chunk can go straight to the insert
+     * path, e.g. readBookingsFile(10000, carPoolingSystem::insertBookings).
+     * Each returns the number of rows read.
+     */
 
-        return passengerList.toArray(new Passenger[0]);
+    public static int readParticipantsFile(int chunkSize, Consumer<Participant[]> consumer) {
+        return readFile("data/Participants.txt", "Participants", chunkSize,
+                FileOperations::parseParticipant, Participant[]::new, consumer);
     }
 
-    public static Driver[] readDriversFile() {
-        List<Driver> driverList = new ArrayList<>();
-
-        try (BufferedReader bufferedReader = getBufferedReader("data/Drivers.txt")) {
+    public static int readPassengersFile(int chunkSize, Consumer<Passenger[]> consumer) {
+        return readFile("data/Passengers.txt", "Passengers", chunkSize,
+                FileOperations::parsePassenger, Passenger[]::new, consumer);
+    }
 
-            if (bufferedReader == null) {
-                System.err.println("Drivers data file not found.");
-                return new Driver[0];
-            }
+    public static int readDriversFile(int chunkSize, Consumer<Driver[]> consumer) {
+        return readFile("data/Drivers.txt", "Drivers", chunkSize,
+                FileOperations::parseDriver, Driver[]::new, consumer);
+    }
 
-            String strLine;
+    public static int readCarsFile(int chunkSize, Consumer<Car[]> consumer) {
+        return readFile("data/Cars.txt", "Cars", chunkSize,
+                FileOperations::parseCar, Car[]::new, consumer);
+    }
 
-            // Example strLine: PIN    rating
+    public static int readTripsFile(int chunkSize, Consumer<Trip[]> consumer) {
+        return readFile("data/Trips.txt", "Trips", chunkSize,
+                FileOperations::parseTrip, Trip[]::new, consumer);
+    }
 
-            // Skip the header line
-            bufferedReader.readLine();
+    public static int readBookingsFile(int chunkSize, Consumer<Booking[]> consumer) {
+        return readFile("data/Bookings.txt", "Bookings", chunkSize,
+                FileOperations::parseBooking, Booking[]::new, consumer);
+    }
 
-            while ((strLine = bufferedReader.readLine()) != null) {
-                // Parse strLine
-                String[] words = strLine.split("\t");
+    // Reads a data file line by line, skipping the header, and delivers parsed rows in chunks
+    private static <T> int readFile(String resourcePath, String name, int chunkSize,
+                                    Function<TsvReader, T> parser, IntFunction<T[]> arrayFactory,
+                                    Consumer<T[]> consumer) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be > 0: " + chunkSize);
+        }
 
-                if (words.length < 2) {
-                    System.out.println("There is a problem in Drivers File Reading phase");
-                } else {
-                    int PIN = Integer.parseInt(words[0]);
-                    double rating = Double.parseDouble(words[1]);
+        InputStream inputStream = getInputStream(resourcePath);
 
-                    Driver driver = new Driver(PIN, rating);
-                    driverList.add(driver);
-                }
+        if (inputStream == null) {
+            System.err.println(name + " data file not found.");
+            return 0;
+        }
 
-            } // End of while
+        return readRows(inputStream, true, chunkSize, parser, arrayFactory, consumer);
+    }
 
+    // Parses rows from the stream and delivers them in chunks of at most chunkSize; a read error
+    // is printed and ends the file, as the array readers always did
+    static <T> int readRows(InputStream inputStream, boolean skipHeader, int chunkSize,
+                            Function<TsvReader, T> parser, IntFunction<T[]> arrayFactory,
+                            Consumer<T[]> consumer) {
+        int[] rowCount = {0};
+
+        try {
+            readRowsOrThrow(inputStream, skipHeader, chunkSize, parser, arrayFactory, chunk -> {
+                rowCount[0] += chunk.length;
+                consumer.accept(chunk);
+            });
         } catch (Exception e) {
             e.printStackTrace();
         }
 
-        return driverList.toArray(new Driver[0]);
+        return rowCount[0];
     }
 
-    public static Car[] readCarsFile() {
-        List<Car> carList = new ArrayList<>();
+    /*
+     * readRows() for callers that must not go on after a read error, e.g. one chunk of a file
+     * that is read in parallel: the error is thrown instead of printed. The rows parsed before
+     * it are still delivered.
+     */
+    static <T> int readRowsOrThrow(InputStream inputStream, boolean skipHeader, int chunkSize,
+                                   Function<TsvReader, T> parser, IntFunction<T[]> arrayFactory,
+                                   Consumer<T[]> consumer) throws IOException {
+        int rowCount = 0;
+        T[] chunk = arrayFactory.apply(chunkSize);
+        int pending = 0;
 
-        try (BufferedReader bufferedReader = getBufferedReader("data/Cars.txt")) {
+        try (TsvReader reader = new TsvReader(inputStream)) {
 
-            if (bufferedReader == null) {
-                System.err.println("Cars data file not found.");
-                return new Car[0];
+            // Skip the header line
+            if (skipHeader) {
+                reader.nextRow();
             }
 
-            String strLine;
+            while (reader.nextRow()) {
+                T row = parser.apply(reader);
 
-            // Example strLine: CarID    PIN    color    brand
+                if (row != null) {
+                    chunk[pending++] = row;
+                    rowCount++;
 
-            // Skip the header line
-            bufferedReader.readLine();
-
-            while ((strLine = bufferedReader.readLine()) != null) {
-                // Parse strLine
-                String[] words = strLine.split("\t");
-
-                if (words.length < 4) {
-                    System.out.println("There is a problem in Cars File Reading phase");
-                } else {
-                    int CarID = Integer.parseInt(words[0]);
-                    int PIN = Integer.parseInt(words[1]);
-                    String color = words[2];
-                    String brand = words[3];
-
-                    Car car = new Car(CarID, PIN, color, brand);
-                    carList.add(car);
+                    if (pending == chunkSize) {
+                        consumer.accept(chunk);
+                        chunk = arrayFactory.apply(chunkSize);
+                        pending = 0;
+                    }
                 }
-
             } // End of while
 
-        } catch (Exception e) {
-            e.printStackTrace();
+        } finally {
+            if (pending > 0) {
+                consumer.accept(Arrays.copyOf(chunk, pending));
+            }
         }
 
-        return carList.toArray(new Car[0]);
+        return rowCount;
     }
 
-    public static Trip[] readTripsFile() {
-        List<Trip> tripList = new ArrayList<>();
+    /*
+     * Row parsers. Numeric columns are decoded straight from the read buffer; only the text
+     * columns become Strings.
+     */
 
-        try (BufferedReader bufferedReader = getBufferedReader("data/Trips.txt")) {
-
-            if (bufferedReader == null) {
-                System.err.println("Trips data file not found.");
-                return new Trip[0];
-            }
-
-            String strLine;
-
-            // Example strLine: TripID    CarID    date    departure    destination    num_seats_available
-
-            // Skip the header line
-            bufferedReader.readLine();
-
-            while ((strLine = bufferedReader.readLine()) != null) {
-                // Parse strLine
-                String[] words = strLine.split("\t");
-
-                if (words.length < 6) {
-                    System.out.println("There is a problem in Trips File Reading phase");
-                } else {
-                    int TripID = Integer.parseInt(words[0]);
-                    int CarID = Integer.parseInt(words[1]);
-                    String date = words[2];
-                    String departure = words[3];
-                    String destination = words[4];
-                    int num_seats_available = Integer.parseInt(words[5]);
-
-                    Trip trip = new Trip(TripID, CarID, date, departure, destination, num_seats_available);
-                    tripList.add(trip);
-                }
+    // Example row: PIN    p_name    age
+    static Participant parseParticipant(TsvReader row) {
+        if (row.fieldCount() < 3) {
+            System.out.println("There is a problem in Participants File Reading phase");
+            return null;
+        }
 
-            } // End of while
+        try {
+            int PIN = row.getInt(0);
+            String p_name = row.getString(1);
+            int age = row.getInt(2);
 
-        } catch (Exception e) {
+            return new Participant(PIN, p_name, age);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid data format in Participants file: " + row.rowText());
             e.printStackTrace();
+            return null;
         }
-
-        return tripList.toArray(new Trip[0]);
     }
 
-    public static Booking[] readBookingsFile() {
-        List<Booking> bookingList = new ArrayList<>();
+    // Example row: PIN    membership_status
+    static Passenger parsePassenger(TsvReader row) {
+        if (row.fieldCount() < 2) {
+            System.out.println("There is a problem in Passengers File Reading phase");
+            return null;
+        }
 
-        try (BufferedReader bufferedReader = getBufferedReader("data/Bookings.txt")) {
+        int PIN = row.getInt(0);
+        String membership_status = row.getString(1);
 
-            if (bufferedReader == null) {
-                System.err.println("Bookings data file not found.");
-                return new Booking[0];
-            }
+        return new Passenger(PIN, membership_status);
+    }
 
-            String strLine;
+    // Example row: PIN    rating
+    static Driver parseDriver(TsvReader row) {
+        if (row.fieldCount() < 2) {
+            System.out.println("There is a problem in Drivers File Reading phase");
+            return null;
+        }
 
-            // Example strLine: TripID    PIN    booking_status
+        int PIN = row.getInt(0);
+        double rating = row.getDouble(1);
 
-            // Skip the header line
-            bufferedReader.readLine();
+        return new Driver(PIN, rating);
+    }
 
-            while ((strLine = bufferedReader.readLine()) != null) {
-                // Parse strLine
-                String[] words = strLine.split("\t");
+    // Example row: CarID    PIN    color    brand
+    static Car parseCar(TsvReader row) {
+        if (row.fieldCount() < 4) {
+            System.out.println("There is a problem in Cars File Reading phase");
+            return null;
+        }
 
-                if (words.length < 3) {
-                    System.out.println("There is a problem in Bookings File Reading phase");
-                } else {
-                    int TripID = Integer.parseInt(words[0]);
-                    int PIN = Integer.parseInt(words[1]);
-                    String booking_status = words[2];
+        int CarID = row.getInt(0);
+        int PIN = row.getInt(1);
+        String color = row.getString(2);
+        String brand = row.getString(3);
 
-                    Booking booking = new Booking(TripID, PIN, booking_status);
-                    bookingList.add(booking);
-                }
+        return new Car(CarID, PIN, color, brand);
+    }
 
-            } // End of while
+    // Example row: TripID    CarID    date    departure    destination    num_seats_available
+    static Trip parseTrip(TsvReader row) {
+        if (row.fieldCount() < 6) {
+            System.out.println("There is a problem in Trips File Reading phase");
+            return null;
+        }
 
-        } catch (Exception e) {
+        try {
+            int TripID = row.getInt(0);
+            int CarID = row.getInt(1);
+            int epochDay = row.getEpochDay(2);
+            String departure = row.getString(3);
+            String destination = row.getString(4);
+            int num_seats_available = row.getInt(5);
+
+            return new Trip(TripID, CarID, epochDay, departure, destination, num_seats_available);
+        } catch (DateTimeException e) {
+            // Trips are kept by epoch day, so a row whose date is not an ISO date is skipped
+            System.err.println("Invalid date in Trips file: " + row.rowText());
             e.printStackTrace();
+            return null;
         }
+    }
 
-        return bookingList.toArray(new Booking[0]);
+    // Example row: TripID    PIN    booking_status
+    static Booking parseBooking(TsvReader row) {
+        if (row.fieldCount() < 3) {
+            System.out.println("There is a problem in Bookings File Reading phase");
+            return null;
+        }
+
+        int TripID = row.getInt(0);
+        int PIN = row.getInt(1);
+        String booking_status = row.getString(2);
+
+        return new Booking(TripID, PIN, booking_status);
     }
 }
@@ -0,0 +1,66 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking companion of ICarPoolingSystem: every method starts the ICarPoolingSystem method
+ * of the same name and returns right away. The future completes with what that method returns,
+ * or exceptionally if it threw or the call could not be started. Cancelling the future stops
+ * the query that is running for it, if the implementation can.
+ */
+public interface IAsyncCarPoolingSystem {
+
+    public CompletableFuture<Driver[]> getAllDriversAsync();
+
+    public CompletableFuture<Integer> createTablesAsync();
+
+    public CompletableFuture<Integer> dropTablesAsync();
+
+    public CompletableFuture<Integer> insertParticipantsAsync(Participant[] participants);
+
+    public CompletableFuture<Integer> insertPassengersAsync(Passenger[] passengers);
+
+    public CompletableFuture<Integer> insertDriversAsync(Driver[] drivers);
+
+    public CompletableFuture<Integer> insertCarsAsync(Car[] cars);
+
+    public CompletableFuture<Integer> insertTripsAsync(Trip[] trips);
+
+    public CompletableFuture<Integer> insertBookingsAsync(Booking[] bookings);
+
+    public CompletableFuture<Participant[]> getBothPassengersAndDriversAsync();
+
+    public CompletableFuture<QueryResult.DriverPINNameAgeRating[]> getDriversWithNoCarsAsync();
+
+    public CompletableFuture<Integer> deleteDriversWithNoCarsAsync();
+
+    public CompletableFuture<Car[]> getCarsWithNoTripsAsync();
+
+    public CompletableFuture<Passenger[]> getPassengersWithNoBooksAsync();
+
+    public CompletableFuture<Trip[]> getTripsFromToCitiesOnSpecificDateAsync(String departure, String destination, String date);
+
+    public CompletableFuture<QueryResult.PassengerPINNameAgeMembershipStatus[]> getPassengersWithBookingsToAllTripsForCityAsync(String city);
+
+    public CompletableFuture<Integer[]> getDriverCarsWithAtMost2BookingsAsync(int driverPIN);
+
+    public CompletableFuture<Double> getAvgAgeOfPassengersDepartFromCityBetweenTwoDatesAsync(String city, String start_date, String end_date);
+
+    public CompletableFuture<QueryResult.PassengerPINNameAgeMembershipStatus[]> getPassengerInGivenTripAsync(int TripID);
+
+    public CompletableFuture<QueryResult.DriverScoreRatingNumberOfBookingsPIN[]> getDriversScoresAsync();
+
+    public CompletableFuture<QueryResult.CityAndAverageDriverRating[]> getDriversAverageRatingsToEachDestinatedCityAsync();
+
+    public CompletableFuture<QueryResult.MembershipStatusAndTotalBookings[]> getTotalBookingsEachMembershipStatusAsync();
+
+    public CompletableFuture<Integer> updateDriverRatingsAsync();
+
+    public CompletableFuture<Trip[]> getTripsFromCityAsync(String city);
+
+    public CompletableFuture<Trip[]> getTripsWithNoBooksAsync();
+
+    public CompletableFuture<QueryResult.DriverPINandTripIDandNumberOfBookings[]> getTheMostBookedTripsPerDriverAsync();
+
+    public CompletableFuture<QueryResult.FullCars[]> getFullCarsAsync();
+}
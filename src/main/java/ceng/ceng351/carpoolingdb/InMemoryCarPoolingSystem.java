@@ -0,0 +1,1015 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLSyntaxErrorException;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * ICarPoolingSystem kept entirely in the JVM, for read-heavy use without SQL round trips.
+ *
+ * Each table is a set of parallel primitive columns (struct of arrays) with a KeyIndex on its
+ * primary key; text columns hold StringDictionary codes. Foreign keys are resolved once, at
+ * insert time, to row numbers, and the counts the queries filter on (cars per driver, trips per
+ * car, bookings per trip and passenger) are kept up to date by the inserts, so most queries are
+ * one scan of one table. The results are the same as those of CarPoolingSystem, including the
+ * row order and the handling of invalid rows: an insert stops at the first row that breaks a
+ * key, like a row-by-row INSERT does. The one exception is the averages of
+ * getDriversAverageRatingsToEachDestinatedCity(), which can differ in the last digits, see there.
+ *
+ * The connection passed to initialize() is not used. Not thread-safe.
+ */
+public class InMemoryCarPoolingSystem implements ICarPoolingSystem {
+
+    private static final int NO_ROW = -1;
+
+    private final ParticipantColumns participants = new ParticipantColumns();
+    private final PassengerColumns passengers = new PassengerColumns();
+    private final DriverColumns drivers = new DriverColumns();
+    private final CarColumns cars = new CarColumns();
+    private final TripColumns trips = new TripColumns();
+    private final BookingColumns bookings = new BookingColumns();
+
+    private boolean tablesCreated;
+
+    @Override
+    public void initialize(Connection connection) {
+    }
+
+    // Given: getAllDrivers()
+    // All Drivers after Updating the Ratings
+    @Override
+    public Driver[] getAllDrivers() {
+        int[] rows = sortedRows(drivers.pin, allRows(drivers.size), drivers.size);
+
+        Driver[] result = new Driver[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            result[i] = new Driver(drivers.pin[rows[i]], drivers.rating[rows[i]]);
+        }
+        return result;
+    }
+
+
+    // Create tables
+    @Override
+    public int createTables() {
+        if (tablesCreated) {
+            ErrorCounter.report(new SQLSyntaxErrorException("Table \"Participants\" already exists"));
+            return 0;
+        }
+
+        clear();
+        tablesCreated = true;
+        return 6;
+    }
+
+
+    // Drop tables
+    @Override
+    public int dropTables() {
+        clear();
+        tablesCreated = false;
+        return 6;
+    }
+
+
+    // Insert Participants
+    @Override
+    public int insertParticipants(Participant[] participants) {
+        int rowsInserted = 0;
+
+        try {
+            checkTablesCreated("Participants");
+
+            for (Participant participant : participants) {
+                int pin = participant.getPIN();
+                if (this.participants.byPin.get(pin) != KeyIndex.NOT_FOUND) {
+                    throw duplicateKey("Participants(PIN)", pin);
+                }
+
+                this.participants.add(pin, participant.getP_name(), participant.getAge());
+                rowsInserted++;
+            }
+        } catch (SQLException e) {
+            ErrorCounter.report(e);
+        }
+
+        return rowsInserted;
+    }
+
+
+    // Insert Passengers
+    @Override
+    public int insertPassengers(Passenger[] passengers) {
+        int rowsInserted = 0;
+
+        try {
+            checkTablesCreated("Passengers");
+
+            for (Passenger passenger : passengers) {
+                int pin = passenger.getPIN();
+                if (this.passengers.byPin.get(pin) != KeyIndex.NOT_FOUND) {
+                    throw duplicateKey("Passengers(PIN)", pin);
+                }
+                int participantRow = participants.byPin.get(pin);
+                if (participantRow == KeyIndex.NOT_FOUND) {
+                    throw missingReference("Passengers(PIN)", "Participants(PIN)", pin);
+                }
+
+                this.passengers.add(pin, passenger.getMembershipStatusCode(), participantRow);
+                rowsInserted++;
+            }
+        } catch (SQLException e) {
+            ErrorCounter.report(e);
+        }
+
+        return rowsInserted;
+    }
+
+
+    // Insert Drivers
+    @Override
+    public int insertDrivers(Driver[] drivers) {
+        int rowsInserted = 0;
+
+        try {
+            checkTablesCreated("Drivers");
+
+            for (Driver driver : drivers) {
+                int pin = driver.getPIN();
+                if (this.drivers.byPin.get(pin) != KeyIndex.NOT_FOUND) {
+                    throw duplicateKey("Drivers(PIN)", pin);
+                }
+                int participantRow = participants.byPin.get(pin);
+                if (participantRow == KeyIndex.NOT_FOUND) {
+                    throw missingReference("Drivers(PIN)", "Participants(PIN)", pin);
+                }
+
+                this.drivers.add(pin, driver.getRating(), participantRow);
+                rowsInserted++;
+            }
+        } catch (SQLException e) {
+            ErrorCounter.report(e);
+        }
+
+        return rowsInserted;
+    }
+
+
+    // Insert Cars
+    @Override
+    public int insertCars(Car[] cars) {
+        int rowsInserted = 0;
+
+        try {
+            checkTablesCreated("Cars");
+
+            for (Car car : cars) {
+                int carId = car.getCarID();
+                if (this.cars.byCarId.get(carId) != KeyIndex.NOT_FOUND) {
+                    throw duplicateKey("Cars(CarID)", carId);
+                }
+                int driverRow = drivers.byPin.get(car.getPIN());
+                if (driverRow == KeyIndex.NOT_FOUND) {
+                    throw missingReference("Cars(PIN)", "Drivers(PIN)", car.getPIN());
+                }
+
+                this.cars.add(carId, car.getPIN(), car.getColorCode(), car.getBrandCode());
+                this.drivers.carCount[driverRow]++;
+                rowsInserted++;
+            }
+        } catch (SQLException e) {
+            ErrorCounter.report(e);
+        }
+
+        return rowsInserted;
+    }
+
+
+    // Insert Trips
+    @Override
+    public int insertTrips(Trip[] trips) {
+        int rowsInserted = 0;
+
+        try {
+            checkTablesCreated("Trips");
+
+            for (Trip trip : trips) {
+                int tripId = trip.getTripID();
+                if (this.trips.byTripId.get(tripId) != KeyIndex.NOT_FOUND) {
+                    throw duplicateKey("Trips(TripID)", tripId);
+                }
+                int carRow = cars.byCarId.get(trip.getCarID());
+                if (carRow == KeyIndex.NOT_FOUND) {
+                    throw missingReference("Trips(CarID)", "Cars(CarID)", trip.getCarID());
+                }
+
+                this.trips.add(tripId, carRow, trip.getEpochDay(), trip.getDepartureCode(),
+                        trip.getDestinationCode(), trip.getNum_seats_available());
+                this.cars.tripCount[carRow]++;
+                rowsInserted++;
+            }
+        } catch (SQLException e) {
+            ErrorCounter.report(e);
+        }
+
+        return rowsInserted;
+    }
+
+
+    // Insert Bookings
+    @Override
+    public int insertBookings(Booking[] bookings) {
+        int rowsInserted = 0;
+        int confirmed = StringDictionary.BOOKING_STATUSES.encode("Confirmed");
+
+        try {
+            checkTablesCreated("Bookings");
+
+            for (Booking booking : bookings) {
+                int tripRow = trips.byTripId.get(booking.getTripID());
+                int passengerRow = passengers.byPin.get(booking.getPIN());
+                if (tripRow != KeyIndex.NOT_FOUND && passengerRow != KeyIndex.NOT_FOUND
+                        && this.bookings.byKey.get(KeyIndex.key(tripRow, passengerRow)) != KeyIndex.NOT_FOUND) {
+                    throw duplicateKey("Bookings(TripID, PIN)", booking.getTripID() + ", " + booking.getPIN());
+                }
+                if (tripRow == KeyIndex.NOT_FOUND) {
+                    throw missingReference("Bookings(TripID)", "Trips(TripID)", booking.getTripID());
+                }
+                if (passengerRow == KeyIndex.NOT_FOUND) {
+                    throw missingReference("Bookings(PIN)", "Passengers(PIN)", booking.getPIN());
+                }
+
+                int status = booking.getBookingStatusCode();
+                this.bookings.add(tripRow, passengerRow, status, this.trips.firstBooking[tripRow]);
+                this.trips.firstBooking[tripRow] = this.bookings.size - 1;
+
+                int carRow = this.trips.carRow[tripRow];
+                if (this.trips.bookingCount[tripRow]++ == 0) {
+                    this.cars.bookedTripCount[carRow]++;
+                }
+                if (status == confirmed) {
+                    this.trips.confirmedCount[tripRow]++;
+                }
+                this.passengers.bookingCount[passengerRow]++;
+                this.drivers.bookingCount[drivers.byPin.get(this.cars.pin[carRow])]++;
+                rowsInserted++;
+            }
+        } catch (SQLException e) {
+            ErrorCounter.report(e);
+        }
+
+        return rowsInserted;
+    }
+
+
+    // 3 Find all participants who are recorded as both drivers and passengers
+    @Override
+    public Participant[] getBothPassengersAndDrivers() {
+        int[] rows = new int[drivers.size];
+        int count = 0;
+        for (int row = 0; row < drivers.size; row++) {
+            if (passengers.byPin.get(drivers.pin[row]) != KeyIndex.NOT_FOUND) {
+                rows[count++] = row;
+            }
+        }
+        rows = sortedRows(drivers.pin, rows, count);
+
+        Participant[] result = new Participant[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            int participantRow = drivers.participantRow[rows[i]];
+            result[i] = new Participant(participants.pin[participantRow], participants.name[participantRow],
+                    participants.age[participantRow]);
+        }
+        return result;
+    }
+
+
+    // 4 Find all drivers’ PINs, names, ages, and ratings who have no cars
+    @Override
+    public QueryResult.DriverPINNameAgeRating[] getDriversWithNoCars() {
+        int[] rows = driversWithNoCars();
+
+        QueryResult.DriverPINNameAgeRating[] result = new QueryResult.DriverPINNameAgeRating[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            int participantRow = drivers.participantRow[rows[i]];
+            result[i] = new QueryResult.DriverPINNameAgeRating(participants.pin[participantRow],
+                    participants.name[participantRow], participants.age[participantRow], drivers.rating[rows[i]]);
+        }
+        return result;
+    }
+
+
+    // 5 Delete all drivers who have no cars
+    @Override
+    public int deleteDriversWithNoCars() {
+        int kept = 0;
+        for (int row = 0; row < drivers.size; row++) {
+            if (drivers.carCount[row] > 0) {
+                drivers.move(row, kept++);
+            }
+        }
+
+        int deleted = drivers.size - kept;
+        drivers.size = kept;
+        drivers.reindex();
+        return deleted;
+    }
+
+
+    // 6 Find all cars that are not taken part in any trips
+    @Override
+    public Car[] getCarsWithNoTrips() {
+        int[] rows = new int[cars.size];
+        int count = 0;
+        for (int row = 0; row < cars.size; row++) {
+            if (cars.tripCount[row] == 0) {
+                rows[count++] = row;
+            }
+        }
+        rows = sortedRows(cars.carId, rows, count);
+
+        Car[] result = new Car[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            int row = rows[i];
+            result[i] = new Car(cars.carId[row], cars.pin[row],
+                    StringDictionary.COLORS.decode(cars.color[row]), StringDictionary.BRANDS.decode(cars.brand[row]));
+        }
+        return result;
+    }
+
+
+    // 7 Find all passengers who didn't book any trips
+    @Override
+    public Passenger[] getPassengersWithNoBooks() {
+        int[] rows = new int[passengers.size];
+        int count = 0;
+        for (int row = 0; row < passengers.size; row++) {
+            if (passengers.bookingCount[row] == 0) {
+                rows[count++] = row;
+            }
+        }
+        rows = sortedRows(passengers.pin, rows, count);
+
+        Passenger[] result = new Passenger[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            result[i] = new Passenger(passengers.pin[rows[i]],
+                    StringDictionary.MEMBERSHIP_STATUSES.decode(passengers.membershipStatus[rows[i]]));
+        }
+        return result;
+    }
+
+
+    // 8 Find all trips that depart from the specified city to specified destination city on specific date
+    @Override
+    public Trip[] getTripsFromToCitiesOnSpecificDate(String departure, String destination, String date) {
+        int epochDay;
+        try {
+            epochDay = (int) Trip.parseDate(date).toEpochDay();
+        } catch (DateTimeParseException e) {
+            ErrorCounter.report(e);
+            return new Trip[0];
+        }
+
+        int departureCode = StringDictionary.CITIES.lookup(departure);
+        int destinationCode = StringDictionary.CITIES.lookup(destination);
+
+        int[] rows = new int[trips.size];
+        int count = 0;
+        for (int row = 0; row < trips.size; row++) {
+            if (trips.departure[row] == departureCode && trips.destination[row] == destinationCode
+                    && trips.epochDay[row] == epochDay) {
+                rows[count++] = row;
+            }
+        }
+
+        return toTrips(sortedRows(trips.tripId, rows, count));
+    }
+
+
+    // 9 Find all passengers who have booked all trips destined for a specific city
+    @Override
+    public QueryResult.PassengerPINNameAgeMembershipStatus[] getPassengersWithBookingsToAllTripsForCity(String city) {
+        int cityCode = StringDictionary.CITIES.lookup(city);
+
+        // A passenger books a trip at most once, so booking every trip to the city means
+        // booking as many of them as there are
+        int tripsToCity = 0;
+        int[] bookedTripsToCity = new int[passengers.size];
+        for (int row = 0; row < trips.size; row++) {
+            if (trips.destination[row] == cityCode) {
+                tripsToCity++;
+                for (int booking = trips.firstBooking[row]; booking != NO_ROW; booking = bookings.nextInTrip[booking]) {
+                    bookedTripsToCity[bookings.passengerRow[booking]]++;
+                }
+            }
+        }
+        if (tripsToCity == 0) {
+            return new QueryResult.PassengerPINNameAgeMembershipStatus[0];
+        }
+
+        int[] rows = new int[passengers.size];
+        int count = 0;
+        for (int row = 0; row < passengers.size; row++) {
+            if (bookedTripsToCity[row] == tripsToCity) {
+                rows[count++] = row;
+            }
+        }
+
+        return toPassengerResults(sortedRows(passengers.pin, rows, count));
+    }
+
+
+    // 10 For a given driver PIN, find the CarIDs that the driver owns and were booked at most twice.
+    @Override
+    public Integer[] getDriverCarsWithAtMost2Bookings(int driverPIN) {
+        int[] rows = new int[cars.size];
+        int count = 0;
+        for (int row = 0; row < cars.size; row++) {
+            if (cars.pin[row] == driverPIN && cars.bookedTripCount[row] <= 2) {
+                rows[count++] = row;
+            }
+        }
+        rows = sortedRows(cars.carId, rows, count);
+
+        Integer[] result = new Integer[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            result[i] = cars.carId[rows[i]];
+        }
+        return result;
+    }
+
+
+    // 11 Find the average age of passengers with "Confirmed" bookings (i.e., booking_status is ”Confirmed”) on trips departing from a given city and within a specified date range
+    @Override
+    public Double getAvgAgeOfPassengersDepartFromCityBetweenTwoDates(String city, String start_date, String end_date) {
+        int startDay;
+        int endDay;
+        try {
+            startDay = (int) Trip.parseDate(start_date).toEpochDay();
+            endDay = (int) Trip.parseDate(end_date).toEpochDay();
+        } catch (DateTimeParseException e) {
+            ErrorCounter.report(e);
+            return null;
+        }
+
+        int cityCode = StringDictionary.CITIES.lookup(city);
+        int confirmed = StringDictionary.BOOKING_STATUSES.lookup("Confirmed");
+
+        double ageSum = 0;
+        int count = 0;
+        for (int row = 0; row < trips.size; row++) {
+            if (trips.departure[row] != cityCode || trips.epochDay[row] < startDay || trips.epochDay[row] > endDay) {
+                continue;
+            }
+            for (int booking = trips.firstBooking[row]; booking != NO_ROW; booking = bookings.nextInTrip[booking]) {
+                if (bookings.status[booking] == confirmed) {
+                    ageSum += participants.age[passengers.participantRow[bookings.passengerRow[booking]]];
+                    count++;
+                }
+            }
+        }
+
+        return count == 0 ? null : ageSum / count;
+    }
+
+
+    // 12 Find the passengers in a given trip.
+    @Override
+    public QueryResult.PassengerPINNameAgeMembershipStatus[] getPassengerInGivenTrip(int TripID) {
+        int tripRow = trips.byTripId.get(TripID);
+        if (tripRow == KeyIndex.NOT_FOUND) {
+            return new QueryResult.PassengerPINNameAgeMembershipStatus[0];
+        }
+
+        int[] rows = new int[trips.bookingCount[tripRow]];
+        int count = 0;
+        for (int booking = trips.firstBooking[tripRow]; booking != NO_ROW; booking = bookings.nextInTrip[booking]) {
+            rows[count++] = bookings.passengerRow[booking];
+        }
+
+        return toPassengerResults(sortedRows(passengers.pin, rows, count));
+    }
+
+
+    // 13 Find the drivers’ scores and return them in descending order of their scores
+    @Override
+    public QueryResult.DriverScoreRatingNumberOfBookingsPIN[] getDriversScores() {
+        List<QueryResult.DriverScoreRatingNumberOfBookingsPIN> result = new ArrayList<>();
+
+        for (int row = 0; row < drivers.size; row++) {
+            int numberOfBookings = drivers.bookingCount[row];
+            if (numberOfBookings > 0) {
+                double rating = drivers.rating[row];
+                // The database multiplies DOUBLE by the BIGINT count exactly, so e.g. 4.8 * 6
+                // ties with 3.2 * 9 instead of coming out 28.799999999999997
+                double score = BigDecimal.valueOf(rating).multiply(BigDecimal.valueOf(numberOfBookings)).doubleValue();
+                result.add(new QueryResult.DriverScoreRatingNumberOfBookingsPIN(score,
+                        rating, numberOfBookings, drivers.pin[row]));
+            }
+        }
+
+        result.sort(Comparator
+                .comparingDouble(QueryResult.DriverScoreRatingNumberOfBookingsPIN::getDriverScore).reversed()
+                .thenComparingInt(QueryResult.DriverScoreRatingNumberOfBookingsPIN::getDriverPIN));
+        return result.toArray(new QueryResult.DriverScoreRatingNumberOfBookingsPIN[0]);
+    }
+
+
+    // 14 Find the average ratings of drivers who have trips destined to each city.
+    // H2 adds the ratings of a city up as doubles in the order its join plan visits the rows,
+    // which depends on its indexes and statistics; here they are added in trip order, so the
+    // rounding, and with it the last digits of an average, can differ from CarPoolingSystem's.
+    @Override
+    public QueryResult.CityAndAverageDriverRating[] getDriversAverageRatingsToEachDestinatedCity() {
+        // Indexed by city code + 1, so that the NULL_CODE of a missing destination gets a slot
+        int cities = StringDictionary.CITIES.size() + 1;
+        double[] ratingSums = new double[cities];
+        int[] tripCounts = new int[cities];
+
+        for (int row = 0; row < trips.size; row++) {
+            int driverRow = drivers.byPin.get(cars.pin[trips.carRow[row]]);
+            if (driverRow != KeyIndex.NOT_FOUND) {
+                int city = trips.destination[row] + 1;
+                ratingSums[city] += drivers.rating[driverRow];
+                tripCounts[city]++;
+            }
+        }
+
+        List<QueryResult.CityAndAverageDriverRating> result = new ArrayList<>();
+        for (int city = 0; city < cities; city++) {
+            if (tripCounts[city] > 0) {
+                result.add(new QueryResult.CityAndAverageDriverRating(StringDictionary.CITIES.decode(city - 1),
+                        ratingSums[city] / tripCounts[city]));
+            }
+        }
+
+        result.sort(Comparator.comparing(QueryResult.CityAndAverageDriverRating::getDestinationCity,
+                Comparator.nullsFirst(Comparator.naturalOrder())));
+        return result.toArray(new QueryResult.CityAndAverageDriverRating[0]);
+    }
+
+
+    // 15 Find total number of bookings of passengers for each membership status
+    @Override
+    public QueryResult.MembershipStatusAndTotalBookings[] getTotalBookingsEachMembershipStatus() {
+        // Indexed by status code + 1, as in query 14
+        int statuses = StringDictionary.MEMBERSHIP_STATUSES.size() + 1;
+        boolean[] present = new boolean[statuses];
+        int[] totalBookings = new int[statuses];
+
+        for (int row = 0; row < passengers.size; row++) {
+            int status = passengers.membershipStatus[row] + 1;
+            present[status] = true;
+            totalBookings[status] += passengers.bookingCount[row];
+        }
+
+        List<QueryResult.MembershipStatusAndTotalBookings> result = new ArrayList<>();
+        for (int status = 0; status < statuses; status++) {
+            if (present[status]) {
+                // NULL never equals NULL in the join of the SQL query, so passengers without a
+                // status are listed with 0 bookings
+                int total = status == 0 ? 0 : totalBookings[status];
+                result.add(new QueryResult.MembershipStatusAndTotalBookings(
+                        StringDictionary.MEMBERSHIP_STATUSES.decode(status - 1), total));
+            }
+        }
+
+        result.sort(Comparator.comparing(QueryResult.MembershipStatusAndTotalBookings::getMemberhipStatus,
+                Comparator.nullsFirst(Comparator.naturalOrder())));
+        return result.toArray(new QueryResult.MembershipStatusAndTotalBookings[0]);
+    }
+
+
+    // 16 For the drivers' ratings, if rating is smaller than 2.0 or equal to 2.0, update the rating by adding 0.5.
+    @Override
+    public int updateDriverRatings() {
+        int rowsUpdated = 0;
+
+        for (int row = 0; row < drivers.size; row++) {
+            if (drivers.rating[row] <= 2.0) {
+                drivers.rating[row] += 0.5;
+                rowsUpdated++;
+            }
+        }
+
+        return rowsUpdated;
+    }
+
+
+    // 18 Find all trips that depart from the given city
+    @Override
+    public Trip[] getTripsFromCity(String city) {
+        int cityCode = StringDictionary.CITIES.lookup(city);
+
+        int[] rows = new int[trips.size];
+        int count = 0;
+        for (int row = 0; row < trips.size; row++) {
+            if (trips.departure[row] == cityCode) {
+                rows[count++] = row;
+            }
+        }
+
+        return toTrips(sortedRows(trips.tripId, rows, count));
+    }
+
+
+    // 19 Find all trips that have never been booked
+    @Override
+    public Trip[] getTripsWithNoBooks() {
+        int[] rows = new int[trips.size];
+        int count = 0;
+        for (int row = 0; row < trips.size; row++) {
+            if (trips.bookingCount[row] == 0) {
+                rows[count++] = row;
+            }
+        }
+
+        return toTrips(sortedRows(trips.tripId, rows, count));
+    }
+
+
+    // 20 For each driver, find the trip(s) with the highest number of bookings
+    @Override
+    public QueryResult.DriverPINandTripIDandNumberOfBookings[] getTheMostBookedTripsPerDriver() {
+        // Highest bookings per trip of each driver; slots are handed out in order of first use
+        KeyIndex driverSlots = new KeyIndex();
+        int[] maxBookings = new int[drivers.size + 1];
+
+        for (int row = 0; row < trips.size; row++) {
+            if (trips.bookingCount[row] == 0) {
+                continue;
+            }
+            int driverPin = cars.pin[trips.carRow[row]];
+            int slot = driverSlots.get(driverPin);
+            if (slot == KeyIndex.NOT_FOUND) {
+                slot = driverSlots.size();
+                driverSlots.put(driverPin, slot);
+                if (slot == maxBookings.length) {
+                    maxBookings = Arrays.copyOf(maxBookings, slot * 2);
+                }
+            }
+            maxBookings[slot] = Math.max(maxBookings[slot], trips.bookingCount[row]);
+        }
+
+        // (driver PIN, TripID) pairs sort as one long
+        long[] keys = new long[trips.size];
+        int count = 0;
+        for (int row = 0; row < trips.size; row++) {
+            if (trips.bookingCount[row] == 0) {
+                continue;
+            }
+            int driverPin = cars.pin[trips.carRow[row]];
+            if (trips.bookingCount[row] == maxBookings[driverSlots.get(driverPin)]) {
+                keys[count++] = KeyIndex.key(driverPin, trips.tripId[row]);
+            }
+        }
+        Arrays.sort(keys, 0, count);
+
+        QueryResult.DriverPINandTripIDandNumberOfBookings[] result =
+                new QueryResult.DriverPINandTripIDandNumberOfBookings[count];
+        for (int i = 0; i < count; i++) {
+            int driverPin = (int) (keys[i] >> 32);
+            int tripId = (int) keys[i];
+            result[i] = new QueryResult.DriverPINandTripIDandNumberOfBookings(driverPin, tripId,
+                    trips.bookingCount[trips.byTripId.get(tripId)]);
+        }
+        return result;
+    }
+
+
+    // 21 Find the trips whose cars are full: the confirmed bookings take all available seats
+    @Override
+    public QueryResult.FullCars[] getFullCars() {
+        int[] rows = new int[trips.size];
+        int count = 0;
+        for (int row = 0; row < trips.size; row++) {
+            if (trips.seats[row] <= trips.confirmedCount[row]
+                    && participants.byPin.get(cars.pin[trips.carRow[row]]) != KeyIndex.NOT_FOUND) {
+                rows[count++] = row;
+            }
+        }
+        rows = sortedRows(trips.tripId, rows, count);
+
+        QueryResult.FullCars[] result = new QueryResult.FullCars[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            int carRow = trips.carRow[rows[i]];
+            int participantRow = participants.byPin.get(cars.pin[carRow]);
+            result[i] = new QueryResult.FullCars(trips.tripId[rows[i]], cars.carId[carRow],
+                    participants.name[participantRow], StringDictionary.COLORS.decode(cars.color[carRow]),
+                    StringDictionary.BRANDS.decode(cars.brand[carRow]));
+        }
+        return result;
+    }
+
+
+    private void clear() {
+        participants.clear();
+        passengers.clear();
+        drivers.clear();
+        cars.clear();
+        trips.clear();
+        bookings.clear();
+    }
+
+    private void checkTablesCreated(String table) throws SQLException {
+        if (!tablesCreated) {
+            throw new SQLSyntaxErrorException("Table \"" + table + "\" not found");
+        }
+    }
+
+    private static SQLException duplicateKey(String key, Object value) {
+        return new SQLIntegrityConstraintViolationException(
+                "Unique index or primary key violation: " + key + " = " + value);
+    }
+
+    private static SQLException missingReference(String column, String referenced, int value) {
+        return new SQLIntegrityConstraintViolationException(
+                "Referential integrity constraint violation: " + column + " REFERENCES " + referenced + " = " + value);
+    }
+
+    private int[] driversWithNoCars() {
+        int[] rows = new int[drivers.size];
+        int count = 0;
+        for (int row = 0; row < drivers.size; row++) {
+            if (drivers.carCount[row] == 0) {
+                rows[count++] = row;
+            }
+        }
+        return sortedRows(drivers.pin, rows, count);
+    }
+
+    private Trip[] toTrips(int[] rows) {
+        Trip[] result = new Trip[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            int row = rows[i];
+            result[i] = new Trip(trips.tripId[row], cars.carId[trips.carRow[row]], trips.epochDay[row],
+                    StringDictionary.CITIES.decode(trips.departure[row]),
+                    StringDictionary.CITIES.decode(trips.destination[row]), trips.seats[row]);
+        }
+        return result;
+    }
+
+    private QueryResult.PassengerPINNameAgeMembershipStatus[] toPassengerResults(int[] rows) {
+        QueryResult.PassengerPINNameAgeMembershipStatus[] result =
+                new QueryResult.PassengerPINNameAgeMembershipStatus[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            int participantRow = passengers.participantRow[rows[i]];
+            result[i] = new QueryResult.PassengerPINNameAgeMembershipStatus(participants.pin[participantRow],
+                    participants.name[participantRow], participants.age[participantRow],
+                    StringDictionary.MEMBERSHIP_STATUSES.decode(passengers.membershipStatus[rows[i]]));
+        }
+        return result;
+    }
+
+    private static int[] allRows(int size) {
+        int[] rows = new int[size];
+        for (int row = 0; row < size; row++) {
+            rows[row] = row;
+        }
+        return rows;
+    }
+
+    // The first count of rows, ordered by their (unique) key
+    private static int[] sortedRows(int[] key, int[] rows, int count) {
+        long[] keyedRows = new long[count];
+        for (int i = 0; i < count; i++) {
+            keyedRows[i] = KeyIndex.key(key[rows[i]], rows[i]);
+        }
+        Arrays.sort(keyedRows);
+
+        int[] sorted = new int[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = (int) keyedRows[i];
+        }
+        return sorted;
+    }
+
+    private static int capacity(int size, int length) {
+        return size < length ? length : Math.max(16, length * 2);
+    }
+
+    private static final class ParticipantColumns {
+        int size;
+        int[] pin = new int[0];
+        String[] name = new String[0];
+        int[] age = new int[0];
+        final KeyIndex byPin = new KeyIndex();
+
+        void add(int pin, String name, int age) {
+            int capacity = capacity(size, this.pin.length);
+            if (capacity != this.pin.length) {
+                this.pin = Arrays.copyOf(this.pin, capacity);
+                this.name = Arrays.copyOf(this.name, capacity);
+                this.age = Arrays.copyOf(this.age, capacity);
+            }
+
+            this.pin[size] = pin;
+            this.name[size] = name;
+            this.age[size] = age;
+            byPin.put(pin, size++);
+        }
+
+        void clear() {
+            size = 0;
+            Arrays.fill(name, null);
+            byPin.clear();
+        }
+    }
+
+    private static final class PassengerColumns {
+        int size;
+        int[] pin = new int[0];
+        int[] membershipStatus = new int[0];
+        int[] participantRow = new int[0];
+        int[] bookingCount = new int[0];
+        final KeyIndex byPin = new KeyIndex();
+
+        void add(int pin, int membershipStatus, int participantRow) {
+            int capacity = capacity(size, this.pin.length);
+            if (capacity != this.pin.length) {
+                this.pin = Arrays.copyOf(this.pin, capacity);
+                this.membershipStatus = Arrays.copyOf(this.membershipStatus, capacity);
+                this.participantRow = Arrays.copyOf(this.participantRow, capacity);
+                this.bookingCount = Arrays.copyOf(this.bookingCount, capacity);
+            }
+
+            this.pin[size] = pin;
+            this.membershipStatus[size] = membershipStatus;
+            this.participantRow[size] = participantRow;
+            this.bookingCount[size] = 0;
+            byPin.put(pin, size++);
+        }
+
+        void clear() {
+            size = 0;
+            byPin.clear();
+        }
+    }
+
+    private static final class DriverColumns {
+        int size;
+        int[] pin = new int[0];
+        double[] rating = new double[0];
+        int[] participantRow = new int[0];
+        int[] carCount = new int[0];
+        int[] bookingCount = new int[0];
+        final KeyIndex byPin = new KeyIndex();
+
+        void add(int pin, double rating, int participantRow) {
+            int capacity = capacity(size, this.pin.length);
+            if (capacity != this.pin.length) {
+                this.pin = Arrays.copyOf(this.pin, capacity);
+                this.rating = Arrays.copyOf(this.rating, capacity);
+                this.participantRow = Arrays.copyOf(this.participantRow, capacity);
+                this.carCount = Arrays.copyOf(this.carCount, capacity);
+                this.bookingCount = Arrays.copyOf(this.bookingCount, capacity);
+            }
+
+            this.pin[size] = pin;
+            this.rating[size] = rating;
+            this.participantRow[size] = participantRow;
+            this.carCount[size] = 0;
+            this.bookingCount[size] = 0;
+            byPin.put(pin, size++);
+        }
+
+        // Nothing refers to driver rows, so deleting one just moves the later rows up
+        void move(int from, int to) {
+            pin[to] = pin[from];
+            rating[to] = rating[from];
+            participantRow[to] = participantRow[from];
+            carCount[to] = carCount[from];
+            bookingCount[to] = bookingCount[from];
+        }
+
+        void reindex() {
+            byPin.clear();
+            for (int row = 0; row < size; row++) {
+                byPin.put(pin[row], row);
+            }
+        }
+
+        void clear() {
+            size = 0;
+            byPin.clear();
+        }
+    }
+
+    private static final class CarColumns {
+        int size;
+        int[] carId = new int[0];
+        int[] pin = new int[0];
+        int[] color = new int[0];
+        int[] brand = new int[0];
+        int[] tripCount = new int[0];
+        int[] bookedTripCount = new int[0];    // trips with at least one booking
+        final KeyIndex byCarId = new KeyIndex();
+
+        void add(int carId, int pin, int color, int brand) {
+            int capacity = capacity(size, this.carId.length);
+            if (capacity != this.carId.length) {
+                this.carId = Arrays.copyOf(this.carId, capacity);
+                this.pin = Arrays.copyOf(this.pin, capacity);
+                this.color = Arrays.copyOf(this.color, capacity);
+                this.brand = Arrays.copyOf(this.brand, capacity);
+                this.tripCount = Arrays.copyOf(this.tripCount, capacity);
+                this.bookedTripCount = Arrays.copyOf(this.bookedTripCount, capacity);
+            }
+
+            this.carId[size] = carId;
+            this.pin[size] = pin;
+            this.color[size] = color;
+            this.brand[size] = brand;
+            this.tripCount[size] = 0;
+            this.bookedTripCount[size] = 0;
+            byCarId.put(carId, size++);
+        }
+
+        void clear() {
+            size = 0;
+            byCarId.clear();
+        }
+    }
+
+    private static final class TripColumns {
+        int size;
+        int[] tripId = new int[0];
+        int[] carRow = new int[0];
+        int[] epochDay = new int[0];
+        int[] departure = new int[0];
+        int[] destination = new int[0];
+        int[] seats = new int[0];
+        int[] bookingCount = new int[0];
+        int[] confirmedCount = new int[0];
+        int[] firstBooking = new int[0];       // head of the list linked by BookingColumns.nextInTrip
+        final KeyIndex byTripId = new KeyIndex();
+
+        void add(int tripId, int carRow, int epochDay, int departure, int destination, int seats) {
+            int capacity = capacity(size, this.tripId.length);
+            if (capacity != this.tripId.length) {
+                this.tripId = Arrays.copyOf(this.tripId, capacity);
+                this.carRow = Arrays.copyOf(this.carRow, capacity);
+                this.epochDay = Arrays.copyOf(this.epochDay, capacity);
+                this.departure = Arrays.copyOf(this.departure, capacity);
+                this.destination = Arrays.copyOf(this.destination, capacity);
+                this.seats = Arrays.copyOf(this.seats, capacity);
+                this.bookingCount = Arrays.copyOf(this.bookingCount, capacity);
+                this.confirmedCount = Arrays.copyOf(this.confirmedCount, capacity);
+                this.firstBooking = Arrays.copyOf(this.firstBooking, capacity);
+            }
+
+            this.tripId[size] = tripId;
+            this.carRow[size] = carRow;
+            this.epochDay[size] = epochDay;
+            this.departure[size] = departure;
+            this.destination[size] = destination;
+            this.seats[size] = seats;
+            this.bookingCount[size] = 0;
+            this.confirmedCount[size] = 0;
+            this.firstBooking[size] = NO_ROW;
+            byTripId.put(tripId, size++);
+        }
+
+        void clear() {
+            size = 0;
+            byTripId.clear();
+        }
+    }
+
+    private static final class BookingColumns {
+        int size;
+        int[] tripRow = new int[0];
+        int[] passengerRow = new int[0];
+        int[] status = new int[0];
+        int[] nextInTrip = new int[0];
+        final KeyIndex byKey = new KeyIndex();     // (trip row, passenger row)
+
+        void add(int tripRow, int passengerRow, int status, int nextInTrip) {
+            int capacity = capacity(size, this.tripRow.length);
+            if (capacity != this.tripRow.length) {
+                this.tripRow = Arrays.copyOf(this.tripRow, capacity);
+                this.passengerRow = Arrays.copyOf(this.passengerRow, capacity);
+                this.status = Arrays.copyOf(this.status, capacity);
+                this.nextInTrip = Arrays.copyOf(this.nextInTrip, capacity);
+            }
+
+            this.tripRow[size] = tripRow;
+            this.passengerRow[size] = passengerRow;
+            this.status[size] = status;
+            this.nextInTrip[size] = nextInTrip;
+            byKey.put(KeyIndex.key(tripRow, passengerRow), size++);
+        }
+
+        void clear() {
+            size = 0;
+            byKey.clear();
+        }
+    }
+}
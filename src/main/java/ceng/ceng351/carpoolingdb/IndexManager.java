@@ -0,0 +1,350 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Secondary indexes of the car-pooling schema.
+ *
+ * createTables() only declares primary and foreign keys. The indexes below back the lookups of
+ * the query methods; the trailing columns make them covering for those queries, so an engine
+ * with index-only scans does not have to visit the table rows.
+ *
+ * Building an index over loaded rows is much cheaper than maintaining it row by row during a
+ * bulk load, so the indexes can be dropped (or never created) before a load and built afterwards.
+ */
+public class IndexManager {
+
+    static final IndexDefinition TRIPS_ROUTE =
+            new IndexDefinition("idx_trips_route", "Trips", "departure", "destination", "date");
+
+    // Covering for the date range of query 11: (departure, date) seek, TripID for the join
+    static final IndexDefinition TRIPS_DEPARTURE_DATE =
+            new IndexDefinition("idx_trips_departure_date", "Trips", "departure", "date", "TripID");
+
+    // Covering for queries 9 and 14
+    static final IndexDefinition TRIPS_DESTINATION =
+            new IndexDefinition("idx_trips_destination", "Trips", "destination", "CarID", "TripID");
+
+    // Covering for the anti-join of query 7 and the per-passenger joins of queries 11 and 15
+    static final IndexDefinition BOOKINGS_PIN =
+            new IndexDefinition("idx_bookings_pin", "Bookings", "PIN", "booking_status", "TripID");
+
+    static final IndexDefinition BOOKINGS_TRIP_STATUS =
+            new IndexDefinition("idx_bookings_trip_status", "Bookings", "TripID", "booking_status", "PIN");
+
+    // Covering for the per-driver lookups of queries 10 and 13
+    static final IndexDefinition CARS_PIN =
+            new IndexDefinition("idx_cars_pin", "Cars", "PIN", "CarID");
+
+    static final List<IndexDefinition> DEFAULT_INDEXES = Collections.unmodifiableList(Arrays.asList(
+            TRIPS_ROUTE,
+            TRIPS_DEPARTURE_DATE,
+            TRIPS_DESTINATION,
+            BOOKINGS_PIN,
+            BOOKINGS_TRIP_STATUS,
+            CARS_PIN
+    ));
+
+    /*
+     * The index each query is expected to seek, given as its table and leading key columns, with
+     * parameters to plan the query with. Any index with those leading columns will do: the
+     * database may equally pick the index it created for a foreign key on the same column.
+     */
+    static final List<PlanExpectation> EXPECTED_PLANS = Collections.unmodifiableList(Arrays.asList(
+            new PlanExpectation("getTripsFromToCitiesOnSpecificDate",
+                    CarPoolingSystem.GET_TRIPS_FROM_TO_CITIES_ON_SPECIFIC_DATE_SQL,
+                    "Trips", new String[]{"departure", "destination", "date"},
+                    "Chicago", "New York", LocalDate.of(2025, 1, 1)),
+            new PlanExpectation("getPassengersWithNoBooks",
+                    CarPoolingSystem.GET_PASSENGERS_WITH_NO_BOOKS_SQL,
+                    "Bookings", new String[]{"PIN"}),
+            new PlanExpectation("getPassengersWithBookingsToAllTripsForCity",
+                    CarPoolingSystem.GET_PASSENGERS_WITH_BOOKINGS_TO_ALL_TRIPS_FOR_CITY_SQL,
+                    "Trips", new String[]{"destination"},
+                    "Seattle", "Seattle"),
+            new PlanExpectation("getDriverCarsWithAtMost2Bookings",
+                    CarPoolingSystem.GET_DRIVER_CARS_WITH_AT_MOST_2_BOOKINGS_SQL,
+                    "Cars", new String[]{"PIN"},
+                    1),
+            new PlanExpectation("getAvgAgeOfPassengersDepartFromCityBetweenTwoDates",
+                    CarPoolingSystem.GET_AVG_AGE_OF_PASSENGERS_DEPART_FROM_CITY_BETWEEN_TWO_DATES_SQL,
+                    "Trips", new String[]{"departure", "date"},
+                    "Chicago", LocalDate.of(2025, 1, 1), LocalDate.of(2025, 3, 31))
+    ));
+
+    private final Connection connection;
+
+    public IndexManager(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Creates the missing indexes of DEFAULT_INDEXES.
+     *
+     * @return the number of index statements executed.
+     */
+    public int createIndexes() {
+        int indexCount = 0;
+
+        try {
+            boolean mySql = SchemaMigration.isMySql(this.connection);
+            for (IndexDefinition index : DEFAULT_INDEXES) {
+                // MySQL has no IF NOT EXISTS for indexes, so it is checked first
+                if (mySql && indexExists(index)) {
+                    continue;
+                }
+                PreparedStatement preparedStatement =
+                        CancellableCall.track(this.connection.prepareStatement(index.createSql(mySql)));
+                preparedStatement.executeUpdate();
+                preparedStatement.close();
+                indexCount++;
+            }
+        } catch (SQLException e) {
+            ErrorCounter.report(e);
+        }
+
+        return indexCount;
+    }
+
+    /**
+     * Drops the indexes of DEFAULT_INDEXES, e.g. before a bulk load into existing tables.
+     *
+     * @return the number of index statements executed.
+     */
+    public int dropIndexes() {
+        int indexCount = 0;
+
+        try {
+            boolean mySql = SchemaMigration.isMySql(this.connection);
+            for (IndexDefinition index : DEFAULT_INDEXES) {
+                // MySQL has no IF EXISTS for indexes, so it is checked first
+                if (mySql && !indexExists(index)) {
+                    continue;
+                }
+                PreparedStatement preparedStatement =
+                        CancellableCall.track(this.connection.prepareStatement(index.dropSql(mySql)));
+                preparedStatement.executeUpdate();
+                preparedStatement.close();
+                indexCount++;
+            }
+        } catch (SQLException e) {
+            ErrorCounter.report(e);
+        }
+
+        return indexCount;
+    }
+
+    /**
+     * Runs EXPLAIN for every query in EXPECTED_PLANS and reports whether its plan uses an index
+     * with the expected leading columns.
+     */
+    public List<PlanCheck> verifyPlans() throws SQLException {
+        List<PlanCheck> checks = new ArrayList<>();
+
+        for (PlanExpectation expectation : EXPECTED_PLANS) {
+            String plan = explain(expectation.sql, expectation.parameters);
+            String planUpperCase = plan.toUpperCase(Locale.ROOT);
+
+            String usedIndex = null;
+            for (String index : indexesWithPrefix(expectation.table, expectation.columns)) {
+                if (planUpperCase.contains(index.toUpperCase(Locale.ROOT))) {
+                    usedIndex = index;
+                    break;
+                }
+            }
+
+            String expected = expectation.table + "(" + String.join(", ", expectation.columns) + ")";
+            checks.add(new PlanCheck(expectation.query, expected, usedIndex, plan));
+        }
+
+        return checks;
+    }
+
+    private boolean indexExists(IndexDefinition index) throws SQLException {
+        DatabaseMetaData metaData = this.connection.getMetaData();
+        String table = index.getTable();
+        if (metaData.storesUpperCaseIdentifiers()) {
+            table = table.toUpperCase(Locale.ROOT);
+        } else if (metaData.storesLowerCaseIdentifiers()) {
+            table = table.toLowerCase(Locale.ROOT);
+        }
+
+        try (ResultSet indexRows = metaData.getIndexInfo(null, null, table, false, false)) {
+            while (indexRows.next()) {
+                if (index.getName().equalsIgnoreCase(indexRows.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Names of the indexes of table whose key starts with the given columns, in that order
+    List<String> indexesWithPrefix(String table, String[] columns) throws SQLException {
+        DatabaseMetaData metaData = this.connection.getMetaData();
+        if (metaData.storesUpperCaseIdentifiers()) {
+            table = table.toUpperCase(Locale.ROOT);
+        }
+
+        Map<String, String[]> keys = new LinkedHashMap<>();
+        try (ResultSet indexRows = metaData.getIndexInfo(null, null, table, false, false)) {
+            while (indexRows.next()) {
+                String index = indexRows.getString("INDEX_NAME");
+                int position = indexRows.getInt("ORDINAL_POSITION");
+                if (index == null || position < 1 || position > columns.length) {
+                    continue;
+                }
+                keys.computeIfAbsent(index, name -> new String[columns.length])[position - 1] =
+                        indexRows.getString("COLUMN_NAME");
+            }
+        }
+
+        List<String> matching = new ArrayList<>();
+        for (Map.Entry<String, String[]> key : keys.entrySet()) {
+            boolean prefix = true;
+            for (int i = 0; i < columns.length && prefix; i++) {
+                prefix = columns[i].equalsIgnoreCase(key.getValue()[i]);
+            }
+            if (prefix) {
+                matching.add(key.getKey());
+            }
+        }
+        return matching;
+    }
+
+    String explain(String sql, Object... parameters) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+
+        try (PreparedStatement preparedStatement = this.connection.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                preparedStatement.setObject(i + 1, parameters[i]);
+            }
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    plan.append(resultSet.getString(1)).append('\n');
+                }
+            }
+        }
+
+        return plan.toString();
+    }
+
+    /**
+     * One secondary index: name, table and key columns.
+     */
+    public static class IndexDefinition {
+        private final String name;
+        private final String table;
+        private final List<String> columns;
+
+        public IndexDefinition(String name, String table, String... columns) {
+            this.name = name;
+            this.table = table;
+            this.columns = Collections.unmodifiableList(Arrays.asList(columns));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public List<String> getColumns() {
+            return columns;
+        }
+
+        String createSql(boolean mySql) {
+            return (mySql ? "CREATE INDEX " : "CREATE INDEX IF NOT EXISTS ") + name + " ON " + table
+                    + " (" + String.join(", ", columns) + ")";
+        }
+
+        // MySQL names an index per table, H2 per schema
+        String dropSql(boolean mySql) {
+            return mySql ? "DROP INDEX " + name + " ON " + table : "DROP INDEX IF EXISTS " + name;
+        }
+
+        @Override
+        public String toString() {
+            return name + " ON " + table + " (" + String.join(", ", columns) + ")";
+        }
+    }
+
+    static final class PlanExpectation {
+        private final String query;
+        private final String sql;
+        private final String table;
+        private final String[] columns;
+        private final Object[] parameters;
+
+        PlanExpectation(String query, String sql, String table, String[] columns, Object... parameters) {
+            this.query = query;
+            this.sql = sql;
+            this.table = table;
+            this.columns = columns;
+            this.parameters = parameters;
+        }
+    }
+
+    /**
+     * Outcome of checking one query plan.
+     */
+    public static class PlanCheck {
+        private final String query;
+        private final String expectedIndex;
+        private final String usedIndex;
+        private final String plan;
+
+        public PlanCheck(String query, String expectedIndex, String usedIndex, String plan) {
+            this.query = query;
+            this.expectedIndex = expectedIndex;
+            this.usedIndex = usedIndex;
+            this.plan = plan;
+        }
+
+        public String getQuery() {
+            return query;
+        }
+
+        public String getExpectedIndex() {
+            return expectedIndex;
+        }
+
+        public boolean isIndexUsed() {
+            return usedIndex != null;
+        }
+
+        /**
+         * The matching index found in the plan, or null.
+         */
+        public String getUsedIndex() {
+            return usedIndex;
+        }
+
+        public String getPlan() {
+            return plan;
+        }
+
+        @Override
+        public String toString() {
+            return "PlanCheck{" +
+                    "query='" + query + '\'' +
+                    ", expectedIndex='" + expectedIndex + '\'' +
+                    ", usedIndex='" + usedIndex + '\'' +
+                    '}';
+        }
+    }
+}
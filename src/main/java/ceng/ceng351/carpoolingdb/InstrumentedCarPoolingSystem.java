@@ -0,0 +1,520 @@
+package ceng.ceng351.carpoolingdb;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * ICarPoolingSystem decorator that records, per method, the number of calls, the calls that
+ * failed, the rows returned or affected, and a latency histogram (see LatencyHistogram).
+ *
+ * The implementations in this package catch their own exceptions, so a call counts as failed if
+ * the delegate reported an exception through ErrorCounter while it ran, or threw one. Recording
+ * takes no locks: counters are LongAdders and histogram buckets atomic longs, so concurrent
+ * callers (e.g. over PooledCarPoolingSystem) do not contend.
+ *
+ * The numbers can be read with getStats(), published as one MXBean per method with
+ * registerMBeans(), or written out as a text table every so often with startSnapshots().
+ */
+public class InstrumentedCarPoolingSystem implements ICarPoolingSystem {
+
+    static final String JMX_DOMAIN = "ceng.ceng351.carpoolingdb";
+
+    private final ICarPoolingSystem delegate;
+
+    // In ICarPoolingSystem order, which is also the order of getStats() and the snapshots
+    private final List<Recorder> recorders = new ArrayList<>();
+
+    private final Recorder getAllDrivers = recorder("getAllDrivers");
+    private final Recorder createTables = recorder("createTables");
+    private final Recorder dropTables = recorder("dropTables");
+    private final Recorder insertParticipants = recorder("insertParticipants");
+    private final Recorder insertPassengers = recorder("insertPassengers");
+    private final Recorder insertDrivers = recorder("insertDrivers");
+    private final Recorder insertCars = recorder("insertCars");
+    private final Recorder insertTrips = recorder("insertTrips");
+    private final Recorder insertBookings = recorder("insertBookings");
+    private final Recorder getBothPassengersAndDrivers = recorder("getBothPassengersAndDrivers");
+    private final Recorder getDriversWithNoCars = recorder("getDriversWithNoCars");
+    private final Recorder deleteDriversWithNoCars = recorder("deleteDriversWithNoCars");
+    private final Recorder getCarsWithNoTrips = recorder("getCarsWithNoTrips");
+    private final Recorder getPassengersWithNoBooks = recorder("getPassengersWithNoBooks");
+    private final Recorder getTripsFromToCitiesOnSpecificDate = recorder("getTripsFromToCitiesOnSpecificDate");
+    private final Recorder getPassengersWithBookingsToAllTripsForCity = recorder("getPassengersWithBookingsToAllTripsForCity");
+    private final Recorder getDriverCarsWithAtMost2Bookings = recorder("getDriverCarsWithAtMost2Bookings");
+    private final Recorder getAvgAgeOfPassengersDepartFromCityBetweenTwoDates = recorder("getAvgAgeOfPassengersDepartFromCityBetweenTwoDates");
+    private final Recorder getPassengerInGivenTrip = recorder("getPassengerInGivenTrip");
+    private final Recorder getDriversScores = recorder("getDriversScores");
+    private final Recorder getDriversAverageRatingsToEachDestinatedCity = recorder("getDriversAverageRatingsToEachDestinatedCity");
+    private final Recorder getTotalBookingsEachMembershipStatus = recorder("getTotalBookingsEachMembershipStatus");
+    private final Recorder updateDriverRatings = recorder("updateDriverRatings");
+    private final Recorder getTripsFromCity = recorder("getTripsFromCity");
+    private final Recorder getTripsWithNoBooks = recorder("getTripsWithNoBooks");
+    private final Recorder getTheMostBookedTripsPerDriver = recorder("getTheMostBookedTripsPerDriver");
+    private final Recorder getFullCars = recorder("getFullCars");
+
+    // Guarded by this
+    private final List<ObjectName> registeredMBeans = new ArrayList<>();
+    private ScheduledExecutorService snapshotExecutor;
+
+    public InstrumentedCarPoolingSystem(ICarPoolingSystem delegate) {
+        this.delegate = delegate;
+    }
+
+    public ICarPoolingSystem getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Current numbers of every method, in ICarPoolingSystem order.
+     */
+    public List<MethodStats> getStats() {
+        List<MethodStats> stats = new ArrayList<>();
+        for (Recorder recorder : recorders) {
+            stats.add(recorder.stats());
+        }
+        return Collections.unmodifiableList(stats);
+    }
+
+    /**
+     * The numbers of the methods called so far, one line per method.
+     */
+    public String snapshot() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.US, "%-52s %10s %8s %12s %10s %10s %10s %10s%n",
+                "method", "calls", "errors", "rows", "p50 us", "p99 us", "p999 us", "max us"));
+        for (Recorder recorder : recorders) {
+            MethodStats stats = recorder.stats();
+            if (stats.getCalls() == 0) {
+                continue;
+            }
+            text.append(String.format(Locale.US, "%-52s %10d %8d %12d %10.1f %10.1f %10.1f %10.1f%n",
+                    stats.getMethod(), stats.getCalls(), stats.getErrors(), stats.getRows(),
+                    micros(stats.getP50Nanos()), micros(stats.getP99Nanos()),
+                    micros(stats.getP999Nanos()), micros(stats.getMaxNanos())));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Registers one MXBean per method with the platform MBean server, named
+     * ceng.ceng351.carpoolingdb:type=InstrumentedCarPoolingSystem,name=[name],method=[method].
+     */
+    public synchronized void registerMBeans(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (Recorder recorder : recorders) {
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=InstrumentedCarPoolingSystem,name="
+                    + ObjectName.quote(name) + ",method=" + recorder.method);
+            server.registerMBean(new StandardMBean(recorder, MethodMXBean.class, true), objectName);
+            registeredMBeans.add(objectName);
+        }
+    }
+
+    public synchronized void unregisterMBeans() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : registeredMBeans) {
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        }
+        registeredMBeans.clear();
+    }
+
+    /**
+     * Hands snapshot() to sink every period, on a daemon thread, until stopSnapshots().
+     * Replaces a schedule started before.
+     */
+    public synchronized void startSnapshots(long period, TimeUnit unit, Consumer<String> sink) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be > 0: " + period);
+        }
+        stopSnapshots();
+
+        snapshotExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "carpooling-metrics-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotExecutor.scheduleAtFixedRate(() -> sink.accept(snapshot()), period, period, unit);
+    }
+
+    public synchronized void stopSnapshots() {
+        if (snapshotExecutor != null) {
+            snapshotExecutor.shutdownNow();
+            snapshotExecutor = null;
+        }
+    }
+
+    @Override
+    public void initialize(Connection connection) {
+        delegate.initialize(connection);
+    }
+
+    @Override
+    public Driver[] getAllDrivers() {
+        return timed(getAllDrivers, delegate::getAllDrivers);
+    }
+
+    @Override
+    public int createTables() {
+        return timedUpdate(createTables, delegate::createTables);
+    }
+
+    @Override
+    public int dropTables() {
+        return timedUpdate(dropTables, delegate::dropTables);
+    }
+
+    @Override
+    public int insertParticipants(Participant[] participants) {
+        return timedUpdate(insertParticipants, () -> delegate.insertParticipants(participants));
+    }
+
+    @Override
+    public int insertPassengers(Passenger[] passengers) {
+        return timedUpdate(insertPassengers, () -> delegate.insertPassengers(passengers));
+    }
+
+    @Override
+    public int insertDrivers(Driver[] drivers) {
+        return timedUpdate(insertDrivers, () -> delegate.insertDrivers(drivers));
+    }
+
+    @Override
+    public int insertCars(Car[] cars) {
+        return timedUpdate(insertCars, () -> delegate.insertCars(cars));
+    }
+
+    @Override
+    public int insertTrips(Trip[] trips) {
+        return timedUpdate(insertTrips, () -> delegate.insertTrips(trips));
+    }
+
+    @Override
+    public int insertBookings(Booking[] bookings) {
+        return timedUpdate(insertBookings, () -> delegate.insertBookings(bookings));
+    }
+
+    @Override
+    public Participant[] getBothPassengersAndDrivers() {
+        return timed(getBothPassengersAndDrivers, delegate::getBothPassengersAndDrivers);
+    }
+
+    @Override
+    public QueryResult.DriverPINNameAgeRating[] getDriversWithNoCars() {
+        return timed(getDriversWithNoCars, delegate::getDriversWithNoCars);
+    }
+
+    @Override
+    public int deleteDriversWithNoCars() {
+        return timedUpdate(deleteDriversWithNoCars, delegate::deleteDriversWithNoCars);
+    }
+
+    @Override
+    public Car[] getCarsWithNoTrips() {
+        return timed(getCarsWithNoTrips, delegate::getCarsWithNoTrips);
+    }
+
+    @Override
+    public Passenger[] getPassengersWithNoBooks() {
+        return timed(getPassengersWithNoBooks, delegate::getPassengersWithNoBooks);
+    }
+
+    @Override
+    public Trip[] getTripsFromToCitiesOnSpecificDate(String departure, String destination, String date) {
+        return timed(getTripsFromToCitiesOnSpecificDate,
+                () -> delegate.getTripsFromToCitiesOnSpecificDate(departure, destination, date));
+    }
+
+    @Override
+    public QueryResult.PassengerPINNameAgeMembershipStatus[] getPassengersWithBookingsToAllTripsForCity(String city) {
+        return timed(getPassengersWithBookingsToAllTripsForCity,
+                () -> delegate.getPassengersWithBookingsToAllTripsForCity(city));
+    }
+
+    @Override
+    public Integer[] getDriverCarsWithAtMost2Bookings(int driverPIN) {
+        return timed(getDriverCarsWithAtMost2Bookings, () -> delegate.getDriverCarsWithAtMost2Bookings(driverPIN));
+    }
+
+    @Override
+    public Double getAvgAgeOfPassengersDepartFromCityBetweenTwoDates(String city, String start_date, String end_date) {
+        return timed(getAvgAgeOfPassengersDepartFromCityBetweenTwoDates,
+                () -> delegate.getAvgAgeOfPassengersDepartFromCityBetweenTwoDates(city, start_date, end_date));
+    }
+
+    @Override
+    public QueryResult.PassengerPINNameAgeMembershipStatus[] getPassengerInGivenTrip(int TripID) {
+        return timed(getPassengerInGivenTrip, () -> delegate.getPassengerInGivenTrip(TripID));
+    }
+
+    @Override
+    public QueryResult.DriverScoreRatingNumberOfBookingsPIN[] getDriversScores() {
+        return timed(getDriversScores, delegate::getDriversScores);
+    }
+
+    @Override
+    public QueryResult.CityAndAverageDriverRating[] getDriversAverageRatingsToEachDestinatedCity() {
+        return timed(getDriversAverageRatingsToEachDestinatedCity, delegate::getDriversAverageRatingsToEachDestinatedCity);
+    }
+
+    @Override
+    public QueryResult.MembershipStatusAndTotalBookings[] getTotalBookingsEachMembershipStatus() {
+        return timed(getTotalBookingsEachMembershipStatus, delegate::getTotalBookingsEachMembershipStatus);
+    }
+
+    @Override
+    public int updateDriverRatings() {
+        return timedUpdate(updateDriverRatings, delegate::updateDriverRatings);
+    }
+
+    @Override
+    public Trip[] getTripsFromCity(String city) {
+        return timed(getTripsFromCity, () -> delegate.getTripsFromCity(city));
+    }
+
+    @Override
+    public Trip[] getTripsWithNoBooks() {
+        return timed(getTripsWithNoBooks, delegate::getTripsWithNoBooks);
+    }
+
+    @Override
+    public QueryResult.DriverPINandTripIDandNumberOfBookings[] getTheMostBookedTripsPerDriver() {
+        return timed(getTheMostBookedTripsPerDriver, delegate::getTheMostBookedTripsPerDriver);
+    }
+
+    @Override
+    public QueryResult.FullCars[] getFullCars() {
+        return timed(getFullCars, delegate::getFullCars);
+    }
+
+    private Recorder recorder(String method) {
+        Recorder recorder = new Recorder(method);
+        recorders.add(recorder);
+        return recorder;
+    }
+
+    // Rows are the length of an array result, or 1 for a single non-null value
+    private static <T> T timed(Recorder recorder, Supplier<T> call) {
+        long errorsBefore = ErrorCounter.currentThreadCount();
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = call.get();
+        } catch (RuntimeException | Error e) {
+            recorder.record(System.nanoTime() - start, 0, true);
+            throw e;
+        }
+
+        long rows = result == null ? 0 : result instanceof Object[] ? ((Object[]) result).length : 1;
+        recorder.record(System.nanoTime() - start, rows, ErrorCounter.currentThreadCount() != errorsBefore);
+        return result;
+    }
+
+    private static int timedUpdate(Recorder recorder, IntSupplier call) {
+        long errorsBefore = ErrorCounter.currentThreadCount();
+        long start = System.nanoTime();
+        int rows;
+        try {
+            rows = call.getAsInt();
+        } catch (RuntimeException | Error e) {
+            recorder.record(System.nanoTime() - start, 0, true);
+            throw e;
+        }
+
+        recorder.record(System.nanoTime() - start, Math.max(0, rows), ErrorCounter.currentThreadCount() != errorsBefore);
+        return rows;
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+
+    /**
+     * JMX view of one method. Latencies are in microseconds.
+     */
+    public interface MethodMXBean {
+        long getCalls();
+
+        long getErrors();
+
+        long getRows();
+
+        double getMeanMicros();
+
+        double getP50Micros();
+
+        double getP99Micros();
+
+        double getP999Micros();
+
+        double getMaxMicros();
+    }
+
+    private static final class Recorder implements MethodMXBean {
+        private final String method;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LatencyHistogram latencies = new LatencyHistogram();
+
+        Recorder(String method) {
+            this.method = method;
+        }
+
+        void record(long nanos, long rowCount, boolean failed) {
+            calls.increment();
+            if (failed) {
+                errors.increment();
+            }
+            rows.add(rowCount);
+            totalNanos.add(nanos);
+            latencies.record(nanos);
+        }
+
+        MethodStats stats() {
+            return new MethodStats(method, calls.sum(), errors.sum(), rows.sum(), totalNanos.sum(),
+                    latencies.getValueAtPercentile(50), latencies.getValueAtPercentile(99),
+                    latencies.getValueAtPercentile(99.9), latencies.getMax());
+        }
+
+        @Override
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        @Override
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        @Override
+        public long getRows() {
+            return rows.sum();
+        }
+
+        @Override
+        public double getMeanMicros() {
+            long count = calls.sum();
+            return count == 0 ? 0.0 : micros(totalNanos.sum() / count);
+        }
+
+        @Override
+        public double getP50Micros() {
+            return micros(latencies.getValueAtPercentile(50));
+        }
+
+        @Override
+        public double getP99Micros() {
+            return micros(latencies.getValueAtPercentile(99));
+        }
+
+        @Override
+        public double getP999Micros() {
+            return micros(latencies.getValueAtPercentile(99.9));
+        }
+
+        @Override
+        public double getMaxMicros() {
+            return micros(latencies.getMax());
+        }
+    }
+
+    /**
+     * Point-in-time numbers of one method. Percentiles are accurate to about 3%.
+     */
+    public static class MethodStats {
+        private final String method;
+        private final long calls;
+        private final long errors;
+        private final long rows;
+        private final long totalNanos;
+        private final long p50Nanos;
+        private final long p99Nanos;
+        private final long p999Nanos;
+        private final long maxNanos;
+
+        public MethodStats(String method, long calls, long errors, long rows, long totalNanos,
+                           long p50Nanos, long p99Nanos, long p999Nanos, long maxNanos) {
+            this.method = method;
+            this.calls = calls;
+            this.errors = errors;
+            this.rows = rows;
+            this.totalNanos = totalNanos;
+            this.p50Nanos = p50Nanos;
+            this.p99Nanos = p99Nanos;
+            this.p999Nanos = p999Nanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMeanNanos() {
+            return calls == 0 ? 0 : totalNanos / calls;
+        }
+
+        public long getP50Nanos() {
+            return p50Nanos;
+        }
+
+        public long getP99Nanos() {
+            return p99Nanos;
+        }
+
+        public long getP999Nanos() {
+            return p999Nanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "InstrumentedCarPoolingSystem.MethodStats{" +
+                    "method=" + method +
+                    ", calls=" + calls +
+                    ", errors=" + errors +
+                    ", rows=" + rows +
+                    ", meanNanos=" + getMeanNanos() +
+                    ", p50Nanos=" + p50Nanos +
+                    ", p99Nanos=" + p99Nanos +
+                    ", p999Nanos=" + p999Nanos +
+                    ", maxNanos=" + maxNanos +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of nanosecond latencies with log-linear buckets, like HdrHistogram: values
+ * below 32 are exact, and every power of two above is split into 32 buckets, so a percentile is
+ * within about 3% of the true value across the whole long range. Recording is one atomic
+ * increment; reads while others record see each bucket up to date but not all buckets at the
+ * same instant.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = bucketOf(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Smallest recorded value v such that at least the given fraction of the values is <= v, up
+     * to bucket precision; 0 if nothing was recorded.
+     */
+    long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValueIn(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /*
+     * Below SUB_BUCKETS a value is its own bucket. Above, shift is how far the value must be
+     * shifted right to keep SUB_BUCKET_BITS + 1 significant bits, which leaves top in
+     * [SUB_BUCKETS, 2 * SUB_BUCKETS); each shift gets SUB_BUCKETS buckets after the exact ones.
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int top = (int) (value >>> shift);
+        return (shift << SUB_BUCKET_BITS) + top;
+    }
+
+    static long highestValueIn(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        long top = (bucket & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+        long highest = ((top + 1) << shift) - 1;
+        return highest < 0 ? Long.MAX_VALUE : highest;
+    }
+}
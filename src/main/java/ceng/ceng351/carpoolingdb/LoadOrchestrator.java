@@ -0,0 +1,345 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Loads the car-pooling tables in parallel while respecting their foreign keys.
+ *
+ * The dependency graph is read from the database metadata of the tables created by
+ * createTables(), so a table starts loading as soon as every table it references has finished
+ * (Passengers and Drivers both start right after Participants, for example). Each table is split
+ * into key ranges that are inserted concurrently, each on its own connection.
+ */
+public class LoadOrchestrator {
+
+    private final ConnectionFactory connectionFactory;
+    private final int threads;
+    private final int partitionsPerTable;
+    private final int batchSize;
+
+    // Tables to load, by upper-case name, in registration order
+    private final Map<String, TableLoad<?>> tables = new LinkedHashMap<>();
+
+    public LoadOrchestrator(ConnectionFactory connectionFactory, int threads, int partitionsPerTable, int batchSize) {
+        if (threads <= 0 || partitionsPerTable <= 0 || batchSize < 0) {
+            throw new IllegalArgumentException("threads and partitionsPerTable must be > 0, batchSize >= 0");
+        }
+        this.connectionFactory = connectionFactory;
+        this.threads = threads;
+        this.partitionsPerTable = partitionsPerTable;
+        this.batchSize = batchSize;
+    }
+
+    public LoadOrchestrator participants(Participant[] participants) {
+        return add("Participants", participants, Participant::getPIN, Participant[]::new,
+                CarPoolingSystem::insertParticipants);
+    }
+
+    public LoadOrchestrator passengers(Passenger[] passengers) {
+        return add("Passengers", passengers, Passenger::getPIN, Passenger[]::new,
+                CarPoolingSystem::insertPassengers);
+    }
+
+    public LoadOrchestrator drivers(Driver[] drivers) {
+        return add("Drivers", drivers, Driver::getPIN, Driver[]::new,
+                CarPoolingSystem::insertDrivers);
+    }
+
+    public LoadOrchestrator cars(Car[] cars) {
+        return add("Cars", cars, Car::getCarID, Car[]::new,
+                CarPoolingSystem::insertCars);
+    }
+
+    public LoadOrchestrator trips(Trip[] trips) {
+        return add("Trips", trips, Trip::getTripID, Trip[]::new,
+                CarPoolingSystem::insertTrips);
+    }
+
+    public LoadOrchestrator bookings(Booking[] bookings) {
+        return add("Bookings", bookings, Booking::getTripID, Booking[]::new,
+                CarPoolingSystem::insertBookings);
+    }
+
+    /**
+     * Loads every registered table into the (already created) tables, then rebuilds
+     * DriverStats if bookings were loaded.
+     *
+     * @return one report per table, in the order the tables finished loading.
+     */
+    public List<TableLoadReport> load() throws SQLException {
+        Map<String, Set<String>> dependencies = readDependencies();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<TableLoadReport> reports = new ArrayList<>();
+        long loadStart = System.nanoTime();
+
+        try {
+            Map<String, CompletableFuture<Void>> done = new HashMap<>();
+            for (String table : tables.keySet()) {
+                schedule(table, dependencies, done, reports, loadStart, executor, new HashSet<>());
+            }
+            CompletableFuture.allOf(done.values().toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new SQLException("Parallel load failed", cause);
+        } finally {
+            executor.shutdown();
+        }
+
+        // Each partition adds its own bookings to DriverStats; recount once they are all in, as
+        // BulkLoader.loadBookings() does, so the counts match Bookings whatever a partition hit
+        if (tables.containsKey("BOOKINGS")) {
+            try (Connection connection = connectionFactory.connect()) {
+                DriverStatsTable.rebuild(connection);
+                if (!connection.getAutoCommit()) {
+                    connection.commit();
+                }
+            }
+        }
+
+        return reports;
+    }
+
+    private <T> LoadOrchestrator add(String table, T[] rows, ToIntFunction<T> key, IntFunction<T[]> arrayFactory,
+                                     BiFunction<CarPoolingSystem, T[], Integer> inserter) {
+        tables.put(table.toUpperCase(Locale.ROOT), new TableLoad<>(table, rows, key, arrayFactory, inserter));
+        return this;
+    }
+
+    // Parent tables of each registered table, from the foreign keys declared in the database
+    private Map<String, Set<String>> readDependencies() throws SQLException {
+        Map<String, Set<String>> dependencies = new HashMap<>();
+
+        try (Connection connection = connectionFactory.connect()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+
+            try (ResultSet tableRows = metaData.getTables(null, null, "%", new String[]{"TABLE"})) {
+                while (tableRows.next()) {
+                    String table = tableRows.getString("TABLE_NAME");
+                    String key = table.toUpperCase(Locale.ROOT);
+                    if (!tables.containsKey(key)) {
+                        continue;
+                    }
+
+                    Set<String> parents = new HashSet<>();
+                    try (ResultSet importedKeys = metaData.getImportedKeys(
+                            tableRows.getString("TABLE_CAT"), tableRows.getString("TABLE_SCHEM"), table)) {
+                        while (importedKeys.next()) {
+                            String parent = importedKeys.getString("PKTABLE_NAME").toUpperCase(Locale.ROOT);
+                            // Parents that are not part of this load are already populated
+                            if (tables.containsKey(parent) && !parent.equals(key)) {
+                                parents.add(parent);
+                            }
+                        }
+                    }
+                    dependencies.put(key, parents);
+                }
+            }
+        }
+
+        return dependencies;
+    }
+
+    private CompletableFuture<Void> schedule(String table, Map<String, Set<String>> dependencies,
+                                             Map<String, CompletableFuture<Void>> done,
+                                             List<TableLoadReport> reports, long loadStart,
+                                             ExecutorService executor, Set<String> visiting) {
+        CompletableFuture<Void> scheduled = done.get(table);
+        if (scheduled != null) {
+            return scheduled;
+        }
+        if (!visiting.add(table)) {
+            throw new IllegalStateException("Foreign key cycle through " + table);
+        }
+
+        List<CompletableFuture<Void>> parents = new ArrayList<>();
+        for (String parent : dependencies.getOrDefault(table, new HashSet<>())) {
+            parents.add(schedule(parent, dependencies, done, reports, loadStart, executor, visiting));
+        }
+
+        TableLoad<?> load = tables.get(table);
+        CompletableFuture<Void> future = CompletableFuture.allOf(parents.toArray(new CompletableFuture<?>[0]))
+                .thenCompose(ignored -> load.run(this, executor, loadStart))
+                .thenAccept(report -> {
+                    synchronized (reports) {
+                        reports.add(report);
+                    }
+                });
+
+        done.put(table, future);
+        return future;
+    }
+
+    // Loads one slice of a table on its own connection
+    private <T> int insertPartition(T[] rows, BiFunction<CarPoolingSystem, T[], Integer> inserter) {
+        try (Connection connection = connectionFactory.connect()) {
+            CarPoolingSystem carPoolingSystem = new CarPoolingSystem();
+            carPoolingSystem.initialize(connection);
+            carPoolingSystem.setBatchSize(batchSize);
+            return inserter.apply(carPoolingSystem, rows);
+        } catch (SQLException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static final class TableLoad<T> {
+        private final String table;
+        private final T[] rows;
+        private final ToIntFunction<T> key;
+        private final IntFunction<T[]> arrayFactory;
+        private final BiFunction<CarPoolingSystem, T[], Integer> inserter;
+
+        TableLoad(String table, T[] rows, ToIntFunction<T> key, IntFunction<T[]> arrayFactory,
+                  BiFunction<CarPoolingSystem, T[], Integer> inserter) {
+            this.table = table;
+            this.rows = rows;
+            this.key = key;
+            this.arrayFactory = arrayFactory;
+            this.inserter = inserter;
+        }
+
+        CompletableFuture<TableLoadReport> run(LoadOrchestrator orchestrator, ExecutorService executor, long loadStart) {
+            long start = System.nanoTime();
+            List<T[]> partitions = partitionByKeyRange(orchestrator.partitionsPerTable);
+
+            List<CompletableFuture<Integer>> inserts = new ArrayList<>();
+            for (T[] partition : partitions) {
+                inserts.add(CompletableFuture.supplyAsync(
+                        () -> orchestrator.insertPartition(partition, inserter), executor));
+            }
+
+            return CompletableFuture.allOf(inserts.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+                int inserted = 0;
+                for (CompletableFuture<Integer> insert : inserts) {
+                    inserted += insert.join();
+                }
+                long end = System.nanoTime();
+                return new TableLoadReport(table, rows.length, inserted, partitions.size(),
+                        (start - loadStart) / 1_000_000, (end - start) / 1_000_000);
+            });
+        }
+
+        // Splits the rows into equal-width ranges of their key, keeping file order inside each range
+        List<T[]> partitionByKeyRange(int partitionCount) {
+            List<T[]> partitions = new ArrayList<>();
+            if (rows.length == 0) {
+                return partitions;
+            }
+
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (T row : rows) {
+                int k = key.applyAsInt(row);
+                min = Math.min(min, k);
+                max = Math.max(max, k);
+            }
+
+            long width = (max - min) / partitionCount + 1;
+            int[] counts = new int[partitionCount];
+            for (T row : rows) {
+                counts[(int) ((key.applyAsInt(row) - min) / width)]++;
+            }
+
+            List<T[]> slices = new ArrayList<>();
+            int[] filled = new int[partitionCount];
+            for (int p = 0; p < partitionCount; p++) {
+                slices.add(arrayFactory.apply(counts[p]));
+            }
+            for (T row : rows) {
+                int p = (int) ((key.applyAsInt(row) - min) / width);
+                slices.get(p)[filled[p]++] = row;
+            }
+
+            for (T[] slice : slices) {
+                if (slice.length > 0) {
+                    partitions.add(slice);
+                }
+            }
+            return partitions;
+        }
+    }
+
+    /**
+     * Timing of one table's load. startMillis is measured from the start of load().
+     */
+    public static class TableLoadReport {
+        private final String table;
+        private final int rows;
+        private final int rowsInserted;
+        private final int partitions;
+        private final long startMillis;
+        private final long elapsedMillis;
+
+        public TableLoadReport(String table, int rows, int rowsInserted, int partitions,
+                               long startMillis, long elapsedMillis) {
+            this.table = table;
+            this.rows = rows;
+            this.rowsInserted = rowsInserted;
+            this.partitions = partitions;
+            this.startMillis = startMillis;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public int getRowsInserted() {
+            return rowsInserted;
+        }
+
+        public int getPartitions() {
+            return partitions;
+        }
+
+        public long getStartMillis() {
+            return startMillis;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public double getRowsPerSecond() {
+            return rowsInserted * 1000.0 / Math.max(1, elapsedMillis);
+        }
+
+        @Override
+        public String toString() {
+            return "TableLoadReport{" +
+                    "table='" + table + '\'' +
+                    ", rows=" + rows +
+                    ", rowsInserted=" + rowsInserted +
+                    ", partitions=" + partitions +
+                    ", startMillis=" + startMillis +
+                    ", elapsedMillis=" + elapsedMillis +
+                    ", rowsPerSecond=" + String.format(Locale.US, "%.1f", getRowsPerSecond()) +
+                    '}';
+        }
+    }
+}
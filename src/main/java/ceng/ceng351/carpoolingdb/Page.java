@@ -0,0 +1,74 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a list query, in the query's order, and the token to ask for the page after it.
+ *
+ * The token holds the key of the last row of this page, so the next page starts right after
+ * that row (keyset pagination) however many pages came before, and the name of the list, so it
+ * is only accepted for the next page of the same list. It is null on the last page.
+ */
+public class Page<T> {
+
+    private final List<T> items;
+    private final String nextToken;
+
+    public Page(List<T> items, String nextToken) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextToken = nextToken;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * The token to pass as after for the next page, or null if this is the last page.
+     */
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+
+    @Override
+    public String toString() {
+        return "Page{" +
+                "items=" + items.size() +
+                ", nextToken=" + nextToken +
+                '}';
+    }
+
+    // Tokens name their list, so a token of one list is not taken for another list's, even when
+    // both are keyed by the same column
+    static String token(String list, int lastKey) {
+        String text = list + ":" + lastKey;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The key of the last row before the page token asks for, if it is a token of list. No page
+     * that has a next page ends at Integer.MAX_VALUE, so a token with that key is rejected too:
+     * the next key would wrap around to the first page.
+     */
+    static int lastKey(String list, String token) {
+        try {
+            String text = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            if (text.startsWith(list + ":")) {
+                int lastKey = Integer.parseInt(text.substring(list.length() + 1));
+                if (lastKey < Integer.MAX_VALUE) {
+                    return lastKey;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // Not Base64, or not a number after the list: fall through
+        }
+        throw new IllegalArgumentException("Not a " + list + " page token: " + token);
+    }
+}
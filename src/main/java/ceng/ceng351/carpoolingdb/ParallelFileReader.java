@@ -0,0 +1,183 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Reads data files from the file system by memory-mapping them and parsing newline-aligned
+ * chunks in parallel on a fork-join pool. Rows are returned in file order.
+ */
+public class ParallelFileReader {
+
+    // More chunks than threads so that a slow chunk does not leave the other threads idle
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    // A single mapping cannot exceed Integer.MAX_VALUE bytes
+    private static final long MAX_CHUNK_BYTES = 1L << 30;
+
+    private static final int ROWS_PER_DELIVERY = 4096;
+
+    private ParallelFileReader() {
+    }
+
+    public static Participant[] readParticipantsFile(Path path, int parallelism) throws IOException {
+        return read(path, parallelism, FileOperations::parseParticipant, Participant[]::new);
+    }
+
+    public static Passenger[] readPassengersFile(Path path, int parallelism) throws IOException {
+        return read(path, parallelism, FileOperations::parsePassenger, Passenger[]::new);
+    }
+
+    public static Driver[] readDriversFile(Path path, int parallelism) throws IOException {
+        return read(path, parallelism, FileOperations::parseDriver, Driver[]::new);
+    }
+
+    public static Car[] readCarsFile(Path path, int parallelism) throws IOException {
+        return read(path, parallelism, FileOperations::parseCar, Car[]::new);
+    }
+
+    public static Trip[] readTripsFile(Path path, int parallelism) throws IOException {
+        return read(path, parallelism, FileOperations::parseTrip, Trip[]::new);
+    }
+
+    public static Booking[] readBookingsFile(Path path, int parallelism) throws IOException {
+        return read(path, parallelism, FileOperations::parseBooking, Booking[]::new);
+    }
+
+    private static <T> T[] read(Path path, int parallelism, Function<TsvReader, T> parser,
+                                IntFunction<T[]> arrayFactory) throws IOException {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be > 0: " + parallelism);
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] boundaries = chunkBoundaries(channel, parallelism * CHUNKS_PER_THREAD);
+
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                List<ForkJoinTask<List<T>>> tasks = new ArrayList<>();
+                for (int i = 0; i + 1 < boundaries.length; i++) {
+                    long start = boundaries[i];
+                    long end = boundaries[i + 1];
+                    tasks.add(pool.submit(() -> parseChunk(channel, start, end, parser, arrayFactory)));
+                }
+
+                // Joining in submission order keeps the rows in file order
+                List<T> rows = new ArrayList<>();
+                for (ForkJoinTask<List<T>> task : tasks) {
+                    rows.addAll(task.get());
+                }
+                return rows.toArray(arrayFactory.apply(rows.size()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading " + path, e);
+            } catch (ExecutionException e) {
+                throw new IOException("Cannot read " + path, e.getCause());
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static <T> List<T> parseChunk(FileChannel channel, long start, long end,
+                                          Function<TsvReader, T> parser, IntFunction<T[]> arrayFactory)
+            throws IOException {
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        List<T> rows = new ArrayList<>();
+        // A failing chunk fails the whole read: skipping its rows would leave a hole in the file
+        FileOperations.readRowsOrThrow(new ByteBufferInputStream(mapped), false, ROWS_PER_DELIVERY,
+                parser, arrayFactory, chunk -> Collections.addAll(rows, chunk));
+        return rows;
+    }
+
+    /*
+     * Splits the file after its header line into about chunkCount ranges. Every range but the
+     * first starts right after a newline, so no line is ever split between two chunks.
+     */
+    static long[] chunkBoundaries(FileChannel channel, int chunkCount) throws IOException {
+        long size = channel.size();
+        long dataStart = nextLineStart(channel, 0, size);
+
+        long dataSize = size - dataStart;
+        long chunkBytes = Math.min(MAX_CHUNK_BYTES, Math.max(1, (dataSize + chunkCount - 1) / chunkCount));
+
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(dataStart);
+        long position = dataStart;
+        while (position < size) {
+            long next = position + chunkBytes >= size ? size : nextLineStart(channel, position + chunkBytes, size);
+            if (next - position > Integer.MAX_VALUE) {
+                throw new IOException("Line longer than " + Integer.MAX_VALUE + " bytes at offset " + position);
+            }
+            boundaries.add(next);
+            position = next;
+        }
+
+        long[] result = new long[boundaries.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = boundaries.get(i);
+        }
+        return result;
+    }
+
+    // Offset just past the first '\n' at or after from, or size if there is none
+    private static long nextLineStart(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(8192);
+        long position = from;
+
+        while (position < size) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    // Lets TsvReader pull bytes from a mapped region
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
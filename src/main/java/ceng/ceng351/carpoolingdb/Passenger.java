@@ -3,11 +3,11 @@ package ceng.ceng351.carpoolingdb;
 public class Passenger {
 
     private int PIN; // References Participant's PIN
-    private String membership_status;
+    private int membership_status;     // code in StringDictionary.MEMBERSHIP_STATUSES
 
     public Passenger(int PIN, String membership_status) {
         this.PIN = PIN;
-        this.membership_status = membership_status;
+        this.membership_status = StringDictionary.MEMBERSHIP_STATUSES.encode(membership_status);
     }
 
     public int getPIN() {
@@ -19,18 +19,22 @@ public class Passenger {
     }
 
     public String getMembership_status() {
-        return membership_status;
+        return StringDictionary.MEMBERSHIP_STATUSES.decode(membership_status);
     }
 
     public void setMembership_status(String membership_status) {
-        this.membership_status = membership_status;
+        this.membership_status = StringDictionary.MEMBERSHIP_STATUSES.encode(membership_status);
+    }
+
+    public int getMembershipStatusCode() {
+        return membership_status;
     }
 
     @Override
     public String toString() {
         return "Passenger{" +
                 "PIN=" + PIN +
-                ", membership_status='" + membership_status + '\'' +
+                ", membership_status='" + getMembership_status() + '\'' +
                 '}';
     }
 }
@@ -0,0 +1,243 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Thread-safe ICarPoolingSystem over a ConnectionPool.
+ *
+ * Every method borrows a connection for the duration of the call and runs the regular
+ * CarPoolingSystem implementation on it, so calls from different threads run in parallel on
+ * different connections. Each pooled connection keeps its own CarPoolingSystem instance.
+ */
+public class PooledCarPoolingSystem implements ICarPoolingSystem {
+
+    private final ConnectionPool pool;
+
+    // Guarded by itself
+    private final Map<Connection, CarPoolingSystem> systems = new HashMap<>();
+
+    private volatile int batchSize = 0;
+
+    public PooledCarPoolingSystem(ConnectionPool pool) {
+        this.pool = pool;
+        pool.addDropListener(this::forget);
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Batch size used by the insert* methods, see CarPoolingSystem.setBatchSize(int).
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 0) {
+            throw new IllegalArgumentException("batchSize must be >= 0: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Does nothing: connections come from the pool, and each call runs on the one it borrows.
+     * Decorators that pass initialize() on to their delegate can wrap this system all the same.
+     */
+    @Override
+    public void initialize(Connection connection) {
+    }
+
+    @Override
+    public Driver[] getAllDrivers() {
+        return withSystem(CarPoolingSystem::getAllDrivers, new Driver[0]);
+    }
+
+    @Override
+    public int createTables() {
+        return withSystem(CarPoolingSystem::createTables, 0);
+    }
+
+    @Override
+    public int dropTables() {
+        return withSystem(CarPoolingSystem::dropTables, 0);
+    }
+
+    @Override
+    public int insertParticipants(Participant[] participants) {
+        return withSystem(system -> system.insertParticipants(participants), 0);
+    }
+
+    @Override
+    public int insertPassengers(Passenger[] passengers) {
+        return withSystem(system -> system.insertPassengers(passengers), 0);
+    }
+
+    @Override
+    public int insertDrivers(Driver[] drivers) {
+        return withSystem(system -> system.insertDrivers(drivers), 0);
+    }
+
+    @Override
+    public int insertCars(Car[] cars) {
+        return withSystem(system -> system.insertCars(cars), 0);
+    }
+
+    @Override
+    public int insertTrips(Trip[] trips) {
+        return withSystem(system -> system.insertTrips(trips), 0);
+    }
+
+    @Override
+    public int insertBookings(Booking[] bookings) {
+        return withSystem(system -> system.insertBookings(bookings), 0);
+    }
+
+    @Override
+    public Participant[] getBothPassengersAndDrivers() {
+        return withSystem(CarPoolingSystem::getBothPassengersAndDrivers, new Participant[0]);
+    }
+
+    @Override
+    public QueryResult.DriverPINNameAgeRating[] getDriversWithNoCars() {
+        return withSystem(CarPoolingSystem::getDriversWithNoCars, new QueryResult.DriverPINNameAgeRating[0]);
+    }
+
+    @Override
+    public int deleteDriversWithNoCars() {
+        return withSystem(CarPoolingSystem::deleteDriversWithNoCars, 0);
+    }
+
+    @Override
+    public Car[] getCarsWithNoTrips() {
+        return withSystem(CarPoolingSystem::getCarsWithNoTrips, new Car[0]);
+    }
+
+    @Override
+    public Passenger[] getPassengersWithNoBooks() {
+        return withSystem(CarPoolingSystem::getPassengersWithNoBooks, new Passenger[0]);
+    }
+
+    @Override
+    public Trip[] getTripsFromToCitiesOnSpecificDate(String departure, String destination, String date) {
+        return withSystem(system -> system.getTripsFromToCitiesOnSpecificDate(departure, destination, date),
+                new Trip[0]);
+    }
+
+    @Override
+    public QueryResult.PassengerPINNameAgeMembershipStatus[] getPassengersWithBookingsToAllTripsForCity(String city) {
+        return withSystem(system -> system.getPassengersWithBookingsToAllTripsForCity(city),
+                new QueryResult.PassengerPINNameAgeMembershipStatus[0]);
+    }
+
+    @Override
+    public Integer[] getDriverCarsWithAtMost2Bookings(int driverPIN) {
+        return withSystem(system -> system.getDriverCarsWithAtMost2Bookings(driverPIN), new Integer[0]);
+    }
+
+    @Override
+    public Double getAvgAgeOfPassengersDepartFromCityBetweenTwoDates(String city, String start_date, String end_date) {
+        return withSystem(system -> system.getAvgAgeOfPassengersDepartFromCityBetweenTwoDates(city, start_date, end_date),
+                null);
+    }
+
+    @Override
+    public QueryResult.PassengerPINNameAgeMembershipStatus[] getPassengerInGivenTrip(int TripID) {
+        return withSystem(system -> system.getPassengerInGivenTrip(TripID),
+                new QueryResult.PassengerPINNameAgeMembershipStatus[0]);
+    }
+
+    @Override
+    public QueryResult.DriverScoreRatingNumberOfBookingsPIN[] getDriversScores() {
+        return withSystem(CarPoolingSystem::getDriversScores, new QueryResult.DriverScoreRatingNumberOfBookingsPIN[0]);
+    }
+
+    @Override
+    public QueryResult.CityAndAverageDriverRating[] getDriversAverageRatingsToEachDestinatedCity() {
+        return withSystem(CarPoolingSystem::getDriversAverageRatingsToEachDestinatedCity,
+                new QueryResult.CityAndAverageDriverRating[0]);
+    }
+
+    @Override
+    public QueryResult.MembershipStatusAndTotalBookings[] getTotalBookingsEachMembershipStatus() {
+        return withSystem(CarPoolingSystem::getTotalBookingsEachMembershipStatus,
+                new QueryResult.MembershipStatusAndTotalBookings[0]);
+    }
+
+    @Override
+    public int updateDriverRatings() {
+        return withSystem(CarPoolingSystem::updateDriverRatings, 0);
+    }
+
+    @Override
+    public Trip[] getTripsFromCity(String city) {
+        return withSystem(system -> system.getTripsFromCity(city), new Trip[0]);
+    }
+
+    @Override
+    public Trip[] getTripsWithNoBooks() {
+        return withSystem(CarPoolingSystem::getTripsWithNoBooks, new Trip[0]);
+    }
+
+    @Override
+    public QueryResult.DriverPINandTripIDandNumberOfBookings[] getTheMostBookedTripsPerDriver() {
+        return withSystem(CarPoolingSystem::getTheMostBookedTripsPerDriver,
+                new QueryResult.DriverPINandTripIDandNumberOfBookings[0]);
+    }
+
+    @Override
+    public QueryResult.FullCars[] getFullCars() {
+        return withSystem(CarPoolingSystem::getFullCars, new QueryResult.FullCars[0]);
+    }
+
+    // Runs the call on a borrowed connection; like CarPoolingSystem, failures are printed and the fallback returned
+    <T> T withSystem(Function<CarPoolingSystem, T> call, T fallback) {
+        Connection connection;
+        try {
+            connection = pool.borrow();
+        } catch (SQLException e) {
+            ErrorCounter.report(e);
+            return fallback;
+        }
+
+        try {
+            CarPoolingSystem system = systemFor(connection);
+            system.setBatchSize(batchSize);
+            return call.apply(system);
+        } finally {
+            CancellableCall cancellableCall = CancellableCall.current();
+            if (cancellableCall != null) {
+                cancellableCall.connectionReleased();
+            }
+            try {
+                StatementCapture.releasing(connection);
+            } finally {
+                pool.release(connection);
+            }
+        }
+    }
+
+    // The pool drops connection: close the statements its system cached and let both go
+    private void forget(Connection connection) {
+        CarPoolingSystem system;
+        synchronized (systems) {
+            system = systems.remove(connection);
+        }
+        if (system != null) {
+            system.clearStatementCache();
+        }
+    }
+
+    private CarPoolingSystem systemFor(Connection connection) {
+        synchronized (systems) {
+            CarPoolingSystem system = systems.get(connection);
+            if (system == null) {
+                system = new CarPoolingSystem();
+                system.initialize(connection);
+                systems.put(connection, system);
+            }
+            return system;
+        }
+    }
+}
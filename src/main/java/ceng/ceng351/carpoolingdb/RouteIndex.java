@@ -0,0 +1,193 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * In-memory copy of Trips for the two passenger searches: trips on a (departure, destination,
+ * date) and trips from a departure city.
+ *
+ * Trips are held as parallel int columns, text as StringDictionary codes. Each searched key maps
+ * to a posting list of row numbers in TripID order, so a search is two or three hash lookups and
+ * a copy of the list. Trips are never updated or deleted, so the index only grows.
+ */
+public final class RouteIndex {
+
+    static final String LOAD_SQL =
+            "SELECT t.TripID, t.CarID, t.date, dep.name AS departure, dest.name AS destination, " +
+                    "       t.num_seats_available " +
+                    "FROM Trips t " +
+                    "LEFT JOIN Dictionary dep ON dep.code = t.departure " +
+                    "LEFT JOIN Dictionary dest ON dest.code = t.destination";
+
+    private int size;
+    private int[] tripId = new int[0];
+    private int[] carId = new int[0];
+    private int[] epochDay = new int[0];
+    private int[] departure = new int[0];
+    private int[] destination = new int[0];
+    private int[] seats = new int[0];
+
+    // (departure, destination) -> route number, then (route number, epoch day) -> posting list,
+    // so both keys are exact without packing three ints into one long
+    private final KeyIndex routes = new KeyIndex();
+    private final KeyIndex routeDays = new KeyIndex();
+    private final KeyIndex departures = new KeyIndex();
+
+    private int[][] postings = new int[0][];
+    private int[] postingSizes = new int[0];
+    private int postingCount;
+
+    /**
+     * Adds the first rowCount trips, which were just inserted.
+     */
+    public synchronized void addTrips(Trip[] trips, int rowCount) {
+        for (int i = 0; i < rowCount; i++) {
+            Trip trip = trips[i];
+            addTrip(trip.getTripID(), trip.getCarID(), trip.getEpochDay(), trip.getDepartureCode(),
+                    trip.getDestinationCode(), trip.getNum_seats_available());
+        }
+    }
+
+    public synchronized void clear() {
+        size = 0;
+        routes.clear();
+        routeDays.clear();
+        departures.clear();
+        for (int i = 0; i < postingCount; i++) {
+            postings[i] = null;
+        }
+        postingCount = 0;
+    }
+
+    /**
+     * Replaces the contents of the index with the rows of Trips.
+     */
+    public synchronized void load(Connection connection) throws SQLException {
+        clear();
+
+        try (PreparedStatement preparedStatement = CancellableCall.track(connection.prepareStatement(LOAD_SQL));
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            // Columns by index, looked up once rather than for every row
+            int tripID = resultSet.findColumn("TripID");
+            int carID = resultSet.findColumn("CarID");
+            int date = resultSet.findColumn("date");
+            int departure = resultSet.findColumn("departure");
+            int destination = resultSet.findColumn("destination");
+            int numSeatsAvailable = resultSet.findColumn("num_seats_available");
+
+            while (resultSet.next()) {
+                addTrip(resultSet.getInt(tripID), resultSet.getInt(carID),
+                        (int) resultSet.getObject(date, LocalDate.class).toEpochDay(),
+                        StringDictionary.CITIES.encode(resultSet.getString(departure)),
+                        StringDictionary.CITIES.encode(resultSet.getString(destination)),
+                        resultSet.getInt(numSeatsAvailable));
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Trips from departure to destination on the given day, by ascending TripID.
+     */
+    public synchronized Trip[] getTrips(String departure, String destination, int epochDay) {
+        int route = routes.get(KeyIndex.key(StringDictionary.CITIES.lookup(departure),
+                StringDictionary.CITIES.lookup(destination)));
+        if (route == KeyIndex.NOT_FOUND) {
+            return new Trip[0];
+        }
+        return toTrips(routeDays.get(KeyIndex.key(route, epochDay)));
+    }
+
+    /**
+     * Trips from departure, by ascending TripID.
+     */
+    public synchronized Trip[] getTripsFrom(String departure) {
+        return toTrips(departures.get(StringDictionary.CITIES.lookup(departure)));
+    }
+
+    private void addTrip(int tripId, int carId, int epochDay, int departure, int destination, int seats) {
+        if (size == this.tripId.length) {
+            int capacity = Math.max(16, size * 2);
+            this.tripId = Arrays.copyOf(this.tripId, capacity);
+            this.carId = Arrays.copyOf(this.carId, capacity);
+            this.epochDay = Arrays.copyOf(this.epochDay, capacity);
+            this.departure = Arrays.copyOf(this.departure, capacity);
+            this.destination = Arrays.copyOf(this.destination, capacity);
+            this.seats = Arrays.copyOf(this.seats, capacity);
+        }
+
+        int row = size++;
+        this.tripId[row] = tripId;
+        this.carId[row] = carId;
+        this.epochDay[row] = epochDay;
+        this.departure[row] = departure;
+        this.destination[row] = destination;
+        this.seats[row] = seats;
+
+        long routeKey = KeyIndex.key(departure, destination);
+        int route = routes.get(routeKey);
+        if (route == KeyIndex.NOT_FOUND) {
+            route = routes.size();
+            routes.put(routeKey, route);
+        }
+        addToPosting(routeDays, KeyIndex.key(route, epochDay), row);
+        addToPosting(departures, departure, row);
+    }
+
+    private void addToPosting(KeyIndex postingIndex, long key, int row) {
+        int posting = postingIndex.get(key);
+        if (posting == KeyIndex.NOT_FOUND) {
+            posting = newPosting();
+            postingIndex.put(key, posting);
+        }
+
+        int[] rows = postings[posting];
+        int count = postingSizes[posting];
+        if (count == rows.length) {
+            rows = Arrays.copyOf(rows, count * 2);
+            postings[posting] = rows;
+        }
+
+        // Trips usually arrive in TripID order, so this rarely moves anything
+        int position = count;
+        while (position > 0 && tripId[rows[position - 1]] > tripId[row]) {
+            rows[position] = rows[position - 1];
+            position--;
+        }
+        rows[position] = row;
+        postingSizes[posting] = count + 1;
+    }
+
+    private int newPosting() {
+        if (postingCount == postings.length) {
+            int capacity = Math.max(16, postingCount * 2);
+            postings = Arrays.copyOf(postings, capacity);
+            postingSizes = Arrays.copyOf(postingSizes, capacity);
+        }
+        postings[postingCount] = new int[2];
+        postingSizes[postingCount] = 0;
+        return postingCount++;
+    }
+
+    private Trip[] toTrips(int posting) {
+        if (posting == KeyIndex.NOT_FOUND) {
+            return new Trip[0];
+        }
+
+        int[] rows = postings[posting];
+        Trip[] trips = new Trip[postingSizes[posting]];
+        for (int i = 0; i < trips.length; i++) {
+            int row = rows[i];
+            trips[i] = new Trip(tripId[row], carId[row], epochDay[row], departure[row], destination[row], seats[row]);
+        }
+        return trips;
+    }
+}
@@ -0,0 +1,13 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Binds the columns of one row to the parameters of an INSERT statement.
+ */
+@FunctionalInterface
+interface RowBinder<T> {
+
+    void bind(PreparedStatement preparedStatement, T row) throws SQLException;
+}
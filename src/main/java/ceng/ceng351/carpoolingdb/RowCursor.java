@@ -0,0 +1,58 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Forward-only, read-only cursor over a query, read one row at a time.
+ *
+ * Each cursor has a statement of its own rather than one from the StatementCache, because it
+ * stays open between calls and a cached statement would be re-executed, and its result closed,
+ * by the next query with the same SQL. fetchSize tells the driver how many rows to fetch per
+ * round trip, so only about that many rows are held in memory at once. The call that opens the
+ * cursor can cancel its statement until the cursor is closed (see CancellableCall).
+ */
+final class RowCursor<T> implements AutoCloseable {
+
+    private final PreparedStatement preparedStatement;
+    private final ResultSet resultSet;
+    private final RowReader<T> reader;
+
+    private RowCursor(PreparedStatement preparedStatement, ResultSet resultSet, RowReader<T> reader) {
+        this.preparedStatement = preparedStatement;
+        this.resultSet = resultSet;
+        this.reader = reader;
+    }
+
+    static <T> RowCursor<T> open(Connection connection, String sql, int fetchSize, RowMapper<T> mapper,
+                                 Object... parameters) throws SQLException {
+        PreparedStatement preparedStatement = CancellableCall.track(
+                connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY));
+        try {
+            preparedStatement.setFetchSize(fetchSize);
+            for (int i = 0; i < parameters.length; i++) {
+                preparedStatement.setObject(i + 1, parameters[i]);
+            }
+            ResultSet resultSet = preparedStatement.executeQuery();
+            return new RowCursor<>(preparedStatement, resultSet, mapper.bind(resultSet));
+        } catch (SQLException e) {
+            preparedStatement.close();
+            throw e;
+        }
+    }
+
+    /**
+     * The next row, or null after the last one.
+     */
+    T next() throws SQLException {
+        return resultSet.next() ? reader.read(resultSet) : null;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        // Closing the statement closes its result set as well
+        preparedStatement.close();
+    }
+}
@@ -0,0 +1,17 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the rows of a query to objects, reading their columns by index.
+ *
+ * bind() looks the columns it needs up by label once, in the ResultSet of one execution of the
+ * query, and returns a RowReader for the rows of that ResultSet which reads them by the indexes
+ * found. A getString("p_name") resolves the label again on every call, for every row.
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    RowReader<T> bind(ResultSet resultSet) throws SQLException;
+}
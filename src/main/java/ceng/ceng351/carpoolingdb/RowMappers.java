@@ -0,0 +1,161 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.time.LocalDate;
+
+/**
+ * The RowMappers of the objects CarPoolingSystem returns, by the column labels of its queries.
+ * The columns may come in any order and next to other columns.
+ */
+public final class RowMappers {
+
+    private RowMappers() {
+    }
+
+    // PIN, rating
+    public static final RowMapper<Driver> DRIVER = resultSet -> {
+        int pin = resultSet.findColumn("PIN");
+        int rating = resultSet.findColumn("rating");
+
+        return row -> new Driver(row.getInt(pin), row.getDouble(rating));
+    };
+
+    // PIN, p_name, age
+    public static final RowMapper<Participant> PARTICIPANT = resultSet -> {
+        int pin = resultSet.findColumn("PIN");
+        int pName = resultSet.findColumn("p_name");
+        int age = resultSet.findColumn("age");
+
+        return row -> new Participant(row.getInt(pin), row.getString(pName), row.getInt(age));
+    };
+
+    // PIN, membership_status
+    public static final RowMapper<Passenger> PASSENGER = resultSet -> {
+        int pin = resultSet.findColumn("PIN");
+        int membershipStatus = resultSet.findColumn("membership_status");
+
+        return row -> new Passenger(row.getInt(pin), row.getString(membershipStatus));
+    };
+
+    // CarID, PIN, color, brand
+    public static final RowMapper<Car> CAR = resultSet -> {
+        int carID = resultSet.findColumn("CarID");
+        int pin = resultSet.findColumn("PIN");
+        int color = resultSet.findColumn("color");
+        int brand = resultSet.findColumn("brand");
+
+        return row -> new Car(row.getInt(carID), row.getInt(pin), row.getString(color), row.getString(brand));
+    };
+
+    // TripID, CarID, date, departure, destination, num_seats_available
+    public static final RowMapper<Trip> TRIP = trips(null, null);
+
+    /**
+     * Trips of a query that selects no departure column, as every row departs from departure:
+     * TripID, CarID, date, destination, num_seats_available.
+     */
+    public static RowMapper<Trip> tripsFrom(String departure) {
+        return trips(departure, null);
+    }
+
+    /**
+     * Trips of a query that selects neither departure nor destination, as every row goes from
+     * departure to destination: TripID, CarID, date, num_seats_available.
+     */
+    public static RowMapper<Trip> tripsBetween(String departure, String destination) {
+        return trips(departure, destination);
+    }
+
+    // A null city is read from its column
+    private static RowMapper<Trip> trips(String departure, String destination) {
+        return resultSet -> {
+            int tripID = resultSet.findColumn("TripID");
+            int carID = resultSet.findColumn("CarID");
+            int date = resultSet.findColumn("date");
+            int departureColumn = departure == null ? resultSet.findColumn("departure") : 0;
+            int destinationColumn = destination == null ? resultSet.findColumn("destination") : 0;
+            int numSeatsAvailable = resultSet.findColumn("num_seats_available");
+
+            return row -> new Trip(row.getInt(tripID), row.getInt(carID),
+                    (int) row.getObject(date, LocalDate.class).toEpochDay(),
+                    departure == null ? row.getString(departureColumn) : departure,
+                    destination == null ? row.getString(destinationColumn) : destination,
+                    row.getInt(numSeatsAvailable));
+        };
+    }
+
+    // PIN, p_name, age, rating
+    public static final RowMapper<QueryResult.DriverPINNameAgeRating> DRIVER_PIN_NAME_AGE_RATING = resultSet -> {
+        int pin = resultSet.findColumn("PIN");
+        int pName = resultSet.findColumn("p_name");
+        int age = resultSet.findColumn("age");
+        int rating = resultSet.findColumn("rating");
+
+        return row -> new QueryResult.DriverPINNameAgeRating(row.getInt(pin), row.getString(pName), row.getInt(age),
+                row.getDouble(rating));
+    };
+
+    // PIN, p_name, age, membership_status
+    public static final RowMapper<QueryResult.PassengerPINNameAgeMembershipStatus> PASSENGER_PIN_NAME_AGE_MEMBERSHIP_STATUS =
+            resultSet -> {
+                int pin = resultSet.findColumn("PIN");
+                int pName = resultSet.findColumn("p_name");
+                int age = resultSet.findColumn("age");
+                int membershipStatus = resultSet.findColumn("membership_status");
+
+                return row -> new QueryResult.PassengerPINNameAgeMembershipStatus(row.getInt(pin), row.getString(pName),
+                        row.getInt(age), row.getString(membershipStatus));
+            };
+
+    // DriverPIN, TripID, numberOfBookings
+    public static final RowMapper<QueryResult.DriverPINandTripIDandNumberOfBookings> DRIVER_PIN_AND_TRIP_ID_AND_NUMBER_OF_BOOKINGS =
+            resultSet -> {
+                int driverPIN = resultSet.findColumn("DriverPIN");
+                int tripID = resultSet.findColumn("TripID");
+                int numberOfBookings = resultSet.findColumn("numberOfBookings");
+
+                return row -> new QueryResult.DriverPINandTripIDandNumberOfBookings(row.getInt(driverPIN),
+                        row.getInt(tripID), row.getInt(numberOfBookings));
+            };
+
+    // driver_score, rating, numberOfBookings, DriverPIN
+    public static final RowMapper<QueryResult.DriverScoreRatingNumberOfBookingsPIN> DRIVER_SCORE_RATING_NUMBER_OF_BOOKINGS_PIN =
+            resultSet -> {
+                int driverScore = resultSet.findColumn("driver_score");
+                int rating = resultSet.findColumn("rating");
+                int numberOfBookings = resultSet.findColumn("numberOfBookings");
+                int driverPIN = resultSet.findColumn("DriverPIN");
+
+                return row -> new QueryResult.DriverScoreRatingNumberOfBookingsPIN(row.getDouble(driverScore),
+                        row.getDouble(rating), row.getInt(numberOfBookings), row.getInt(driverPIN));
+            };
+
+    // destination, avg_rating
+    public static final RowMapper<QueryResult.CityAndAverageDriverRating> CITY_AND_AVERAGE_DRIVER_RATING = resultSet -> {
+        int destination = resultSet.findColumn("destination");
+        int avgRating = resultSet.findColumn("avg_rating");
+
+        return row -> new QueryResult.CityAndAverageDriverRating(row.getString(destination), row.getDouble(avgRating));
+    };
+
+    // membership_status, total_bookings
+    public static final RowMapper<QueryResult.MembershipStatusAndTotalBookings> MEMBERSHIP_STATUS_AND_TOTAL_BOOKINGS =
+            resultSet -> {
+                int membershipStatus = resultSet.findColumn("membership_status");
+                int totalBookings = resultSet.findColumn("total_bookings");
+
+                return row -> new QueryResult.MembershipStatusAndTotalBookings(row.getString(membershipStatus),
+                        row.getInt(totalBookings));
+            };
+
+    // TripID, CarID, driver_name, color, brand
+    public static final RowMapper<QueryResult.FullCars> FULL_CARS = resultSet -> {
+        int tripID = resultSet.findColumn("TripID");
+        int carID = resultSet.findColumn("CarID");
+        int driverName = resultSet.findColumn("driver_name");
+        int color = resultSet.findColumn("color");
+        int brand = resultSet.findColumn("brand");
+
+        return row -> new QueryResult.FullCars(row.getInt(tripID), row.getInt(carID), row.getString(driverName),
+                row.getString(color), row.getString(brand));
+    };
+}
@@ -0,0 +1,13 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads the current row of a ResultSet into an object.
+ */
+@FunctionalInterface
+public interface RowReader<T> {
+
+    T read(ResultSet resultSet) throws SQLException;
+}
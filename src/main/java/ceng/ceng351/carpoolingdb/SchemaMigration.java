@@ -0,0 +1,190 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Locale;
+
+/**
+ * Upgrades databases created by earlier versions of createTables() to the current schema.
+ * Each migration checks the current state first, so running it twice does nothing.
+ */
+public class SchemaMigration {
+
+    private final Connection connection;
+
+    public SchemaMigration(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Converts Trips.date from the old VARCHAR(20) column to DATE. The stored values are ISO
+     * yyyy-MM-dd strings, which both H2 and MySQL convert in place.
+     *
+     * @return true if the column was converted, false if it already was a DATE.
+     */
+    public boolean migrateTripDates() throws SQLException {
+        if (columnType("Trips", "date") == Types.DATE) {
+            return false;
+        }
+
+        execute(isMySql()
+                ? "ALTER TABLE Trips MODIFY date DATE"
+                : "ALTER TABLE Trips ALTER COLUMN date SET DATA TYPE DATE");
+        return true;
+    }
+
+    /**
+     * Makes Trips.date NOT NULL, as createTables() declares it: a Trip always has a date, and
+     * the queries and indexes that read Trips rely on it. Fails without changing anything if
+     * some trips have no date; give them one first. Run it after migrateTripDates().
+     *
+     * @return true if the column was changed, false if it already was NOT NULL.
+     */
+    public boolean migrateTripDatesNotNull() throws SQLException {
+        if (columnAttribute("Trips", "date", "NULLABLE") == DatabaseMetaData.columnNoNulls) {
+            return false;
+        }
+
+        try (PreparedStatement preparedStatement =
+                     this.connection.prepareStatement("SELECT COUNT(*) FROM Trips WHERE date IS NULL");
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            resultSet.next();
+            long undated = resultSet.getLong(1);
+            if (undated > 0) {
+                throw new SQLException(undated + " trips have no date");
+            }
+        }
+
+        execute(isMySql()
+                ? "ALTER TABLE Trips MODIFY date DATE NOT NULL"
+                : "ALTER TABLE Trips ALTER COLUMN date SET NOT NULL");
+        return true;
+    }
+
+    /**
+     * Converts the text columns of the old schema to codes in the Dictionary table (see
+     * DictionaryTable): every distinct value is added to Dictionary and the column is replaced
+     * by an INT column holding its code. The secondary indexes are rebuilt afterwards.
+     *
+     * @return the number of columns converted.
+     */
+    public int migrateDictionaryColumns() throws SQLException {
+        Object[][] columns = {
+                {"Passengers", "membership_status", DictionaryTable.MEMBERSHIP_STATUS},
+                {"Cars", "color", DictionaryTable.COLOR},
+                {"Cars", "brand", DictionaryTable.BRAND},
+                {"Trips", "departure", DictionaryTable.CITY},
+                {"Trips", "destination", DictionaryTable.CITY},
+                {"Bookings", "booking_status", DictionaryTable.BOOKING_STATUS}
+        };
+
+        if (!tableExists("Dictionary")) {
+            execute(DictionaryTable.CREATE_SQL);
+        }
+
+        IndexManager indexManager = new IndexManager(this.connection);
+        indexManager.dropIndexes();
+
+        int converted = 0;
+        for (Object[] column : columns) {
+            String table = (String) column[0];
+            String name = (String) column[1];
+            int category = (Integer) column[2];
+
+            if (columnType(table, name) == Types.INTEGER) {
+                continue;
+            }
+
+            execute("INSERT INTO Dictionary (category, name) " +
+                    "SELECT DISTINCT " + category + ", t." + name + " FROM " + table + " t " +
+                    "WHERE t." + name + " IS NOT NULL AND NOT EXISTS (" +
+                    "    SELECT 1 FROM Dictionary d WHERE d.category = " + category + " AND d.name = t." + name +
+                    ")");
+            execute("ALTER TABLE " + table + " ADD COLUMN " + name + "_code INT");
+            execute("UPDATE " + table + " t SET " + name + "_code = (" +
+                    "    SELECT code FROM Dictionary d WHERE d.category = " + category + " AND d.name = t." + name +
+                    ")");
+            execute("ALTER TABLE " + table + " DROP COLUMN " + name);
+            execute(isMySql()
+                    ? "ALTER TABLE " + table + " RENAME COLUMN " + name + "_code TO " + name
+                    : "ALTER TABLE " + table + " ALTER COLUMN " + name + "_code RENAME TO " + name);
+            converted++;
+        }
+
+        indexManager.createIndexes();
+        return converted;
+    }
+
+    /**
+     * Creates the DriverStats table of getDriversScores() (see DriverStatsTable) and fills it
+     * from the existing bookings.
+     *
+     * @return true if the table was created, false if it already existed.
+     */
+    public boolean migrateDriverStats() throws SQLException {
+        if (tableExists("DriverStats")) {
+            return false;
+        }
+
+        execute(DriverStatsTable.CREATE_SQL);
+        DriverStatsTable.rebuild(this.connection);
+        return true;
+    }
+
+    private boolean isMySql() throws SQLException {
+        return isMySql(this.connection);
+    }
+
+    // MySQL and MariaDB share a dialect where H2's differs, e.g. for ALTER TABLE and DROP INDEX
+    static boolean isMySql(Connection connection) throws SQLException {
+        String productName = connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+        return productName.contains("mysql") || productName.contains("mariadb");
+    }
+
+    private boolean tableExists(String table) throws SQLException {
+        DatabaseMetaData metaData = this.connection.getMetaData();
+        if (metaData.storesUpperCaseIdentifiers()) {
+            table = table.toUpperCase(Locale.ROOT);
+        } else if (metaData.storesLowerCaseIdentifiers()) {
+            table = table.toLowerCase(Locale.ROOT);
+        }
+
+        try (ResultSet tables = metaData.getTables(null, null, table, new String[]{"TABLE"})) {
+            return tables.next();
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (PreparedStatement preparedStatement = this.connection.prepareStatement(sql)) {
+            preparedStatement.executeUpdate();
+        }
+    }
+
+    // java.sql.Types code of a column
+    private int columnType(String table, String column) throws SQLException {
+        return columnAttribute(table, column, "DATA_TYPE");
+    }
+
+    // An int column of DatabaseMetaData.getColumns(), e.g. DATA_TYPE or NULLABLE
+    private int columnAttribute(String table, String column, String attribute) throws SQLException {
+        DatabaseMetaData metaData = this.connection.getMetaData();
+        if (metaData.storesUpperCaseIdentifiers()) {
+            table = table.toUpperCase(Locale.ROOT);
+            column = column.toUpperCase(Locale.ROOT);
+        } else if (metaData.storesLowerCaseIdentifiers()) {
+            table = table.toLowerCase(Locale.ROOT);
+            column = column.toLowerCase(Locale.ROOT);
+        }
+
+        try (ResultSet columns = metaData.getColumns(null, null, table, column)) {
+            if (!columns.next()) {
+                throw new SQLException("Column " + table + "." + column + " does not exist");
+            }
+            return columns.getInt(attribute);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Where SlowQueryLoggingCarPoolingSystem writes the calls that took longer than their threshold,
+ * and which calls it looks at.
+ *
+ * Every method has the default threshold unless setThreshold(method, ...) gives it its own. Only
+ * a sampleRate fraction of the calls is timed and has its statements captured; the others run
+ * as if there were no log. Capturing adds a few hundred nanoseconds to a call, which matters
+ * only for the cheapest lookups, and a plan that went bad after the data grew keeps being slow,
+ * so the default of 1 call in 10 still finds it soon.
+ *
+ * Entries are appended to file; when the next entry would make it larger than maxFileBytes, file
+ * is renamed to file.1 (file.1 to file.2 and so on, dropping the oldest beyond maxFiles) and a
+ * new file is started.
+ *
+ * Thread-safe; one log can be shared by several systems.
+ */
+public class SlowQueryLog {
+
+    public static final long DEFAULT_THRESHOLD_MILLIS = 100;
+    public static final double DEFAULT_SAMPLE_RATE = 0.1;
+
+    private final Path file;
+    private final long maxFileBytes;
+    private final int maxFiles;
+
+    private volatile long defaultThresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_THRESHOLD_MILLIS);
+    private final Map<String, Long> thresholdNanos = new ConcurrentHashMap<>();
+    private volatile double sampleRate = DEFAULT_SAMPLE_RATE;
+
+    private final AtomicLong sampledCalls = new AtomicLong();
+    private final AtomicLong entries = new AtomicLong();
+
+    public SlowQueryLog(Path file, long maxFileBytes, int maxFiles) {
+        if (maxFileBytes <= 0) {
+            throw new IllegalArgumentException("maxFileBytes must be > 0: " + maxFileBytes);
+        }
+        if (maxFiles < 1) {
+            throw new IllegalArgumentException("maxFiles must be >= 1: " + maxFiles);
+        }
+        this.file = file;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Threshold of the methods without one of their own.
+     */
+    public void setThreshold(long threshold, TimeUnit unit) {
+        defaultThresholdNanos = toNanos(threshold, unit);
+    }
+
+    /**
+     * Threshold of one ICarPoolingSystem method, by name, e.g. "getDriversScores".
+     */
+    public void setThreshold(String method, long threshold, TimeUnit unit) {
+        thresholdNanos.put(method, toNanos(threshold, unit));
+    }
+
+    /**
+     * Fraction of the calls that are checked, from 0 (none) to 1 (all).
+     */
+    public void setSampleRate(double sampleRate) {
+        if (!(sampleRate >= 0 && sampleRate <= 1)) {
+            throw new IllegalArgumentException("sampleRate must be in [0, 1]: " + sampleRate);
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    public long getSampledCalls() {
+        return sampledCalls.get();
+    }
+
+    public long getEntries() {
+        return entries.get();
+    }
+
+    boolean sample() {
+        double rate = sampleRate;
+        if (rate < 1 && (rate == 0 || ThreadLocalRandom.current().nextDouble() >= rate)) {
+            return false;
+        }
+        sampledCalls.incrementAndGet();
+        return true;
+    }
+
+    long thresholdNanos(String method) {
+        Long threshold = thresholdNanos.get(method);
+        return threshold != null ? threshold : defaultThresholdNanos;
+    }
+
+    /**
+     * Appends one entry, rolling the files over first if it would not fit. A failing write is
+     * reported and the entry dropped; it never fails the call that was logged.
+     */
+    synchronized void write(String entry) {
+        byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+        try {
+            if (Files.exists(file) && Files.size(file) + bytes.length > maxFileBytes) {
+                roll();
+            }
+            Files.write(file, bytes, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            entries.incrementAndGet();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void roll() throws IOException {
+        if (maxFiles == 1) {
+            Files.delete(file);
+            return;
+        }
+        Files.deleteIfExists(rolled(maxFiles - 1));
+        for (int i = maxFiles - 2; i >= 1; i--) {
+            if (Files.exists(rolled(i))) {
+                Files.move(rolled(i), rolled(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(file, rolled(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path rolled(int generation) {
+        return file.resolveSibling(file.getFileName() + "." + generation);
+    }
+
+    private static long toNanos(long threshold, TimeUnit unit) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("threshold must be >= 0: " + threshold);
+        }
+        return unit.toNanos(threshold);
+    }
+}
@@ -0,0 +1,349 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Locale;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * ICarPoolingSystem decorator that writes the calls slower than their threshold to a
+ * SlowQueryLog, with what H2 did for them.
+ *
+ * A sampled call runs with a StatementCapture session open, so every statement the delegate
+ * prepares through its StatementCache is recorded with the parameters it was executed with. If
+ * the call went over its threshold, each statement is explained on the connection it ran on,
+ * with the same parameters, and the entry lists the elapsed time, the rows produced, and per
+ * statement the SQL text, the parameters, the number of executions and the plan.
+ *
+ * The plans have to be taken while the call still holds that connection. Over a
+ * PooledCarPoolingSystem that is just before the connection goes back to the pool: if the call
+ * is over its threshold by then, its statements are explained there, and the time that takes is
+ * not counted in the call's. A call that only goes over its threshold after that is logged
+ * without plans. Other delegates keep their connection, which is used after the call. Queries get
+ * EXPLAIN ANALYZE, which runs them once more to count the rows each step read; INSERT, UPDATE,
+ * DELETE and MERGE get a plain EXPLAIN so their changes are not made twice.
+ *
+ * Statements prepared outside of a StatementCache (createTables(), dropTables(), the index
+ * loads) and backends without SQL such as InMemoryCarPoolingSystem still get an entry, without
+ * statements.
+ */
+public class SlowQueryLoggingCarPoolingSystem implements ICarPoolingSystem {
+
+    private final ICarPoolingSystem delegate;
+    private final SlowQueryLog log;
+
+    public SlowQueryLoggingCarPoolingSystem(ICarPoolingSystem delegate, SlowQueryLog log) {
+        this.delegate = delegate;
+        this.log = log;
+    }
+
+    public ICarPoolingSystem getDelegate() {
+        return delegate;
+    }
+
+    public SlowQueryLog getLog() {
+        return log;
+    }
+
+    @Override
+    public void initialize(Connection connection) {
+        delegate.initialize(connection);
+    }
+
+    @Override
+    public Driver[] getAllDrivers() {
+        return logged("getAllDrivers", delegate::getAllDrivers);
+    }
+
+    @Override
+    public int createTables() {
+        return loggedUpdate("createTables", delegate::createTables);
+    }
+
+    @Override
+    public int dropTables() {
+        return loggedUpdate("dropTables", delegate::dropTables);
+    }
+
+    @Override
+    public int insertParticipants(Participant[] participants) {
+        return loggedUpdate("insertParticipants", () -> delegate.insertParticipants(participants));
+    }
+
+    @Override
+    public int insertPassengers(Passenger[] passengers) {
+        return loggedUpdate("insertPassengers", () -> delegate.insertPassengers(passengers));
+    }
+
+    @Override
+    public int insertDrivers(Driver[] drivers) {
+        return loggedUpdate("insertDrivers", () -> delegate.insertDrivers(drivers));
+    }
+
+    @Override
+    public int insertCars(Car[] cars) {
+        return loggedUpdate("insertCars", () -> delegate.insertCars(cars));
+    }
+
+    @Override
+    public int insertTrips(Trip[] trips) {
+        return loggedUpdate("insertTrips", () -> delegate.insertTrips(trips));
+    }
+
+    @Override
+    public int insertBookings(Booking[] bookings) {
+        return loggedUpdate("insertBookings", () -> delegate.insertBookings(bookings));
+    }
+
+    @Override
+    public Participant[] getBothPassengersAndDrivers() {
+        return logged("getBothPassengersAndDrivers", delegate::getBothPassengersAndDrivers);
+    }
+
+    @Override
+    public QueryResult.DriverPINNameAgeRating[] getDriversWithNoCars() {
+        return logged("getDriversWithNoCars", delegate::getDriversWithNoCars);
+    }
+
+    @Override
+    public int deleteDriversWithNoCars() {
+        return loggedUpdate("deleteDriversWithNoCars", delegate::deleteDriversWithNoCars);
+    }
+
+    @Override
+    public Car[] getCarsWithNoTrips() {
+        return logged("getCarsWithNoTrips", delegate::getCarsWithNoTrips);
+    }
+
+    @Override
+    public Passenger[] getPassengersWithNoBooks() {
+        return logged("getPassengersWithNoBooks", delegate::getPassengersWithNoBooks);
+    }
+
+    @Override
+    public Trip[] getTripsFromToCitiesOnSpecificDate(String departure, String destination, String date) {
+        return logged("getTripsFromToCitiesOnSpecificDate",
+                () -> delegate.getTripsFromToCitiesOnSpecificDate(departure, destination, date));
+    }
+
+    @Override
+    public QueryResult.PassengerPINNameAgeMembershipStatus[] getPassengersWithBookingsToAllTripsForCity(String city) {
+        return logged("getPassengersWithBookingsToAllTripsForCity",
+                () -> delegate.getPassengersWithBookingsToAllTripsForCity(city));
+    }
+
+    @Override
+    public Integer[] getDriverCarsWithAtMost2Bookings(int driverPIN) {
+        return logged("getDriverCarsWithAtMost2Bookings", () -> delegate.getDriverCarsWithAtMost2Bookings(driverPIN));
+    }
+
+    @Override
+    public Double getAvgAgeOfPassengersDepartFromCityBetweenTwoDates(String city, String start_date, String end_date) {
+        return logged("getAvgAgeOfPassengersDepartFromCityBetweenTwoDates",
+                () -> delegate.getAvgAgeOfPassengersDepartFromCityBetweenTwoDates(city, start_date, end_date));
+    }
+
+    @Override
+    public QueryResult.PassengerPINNameAgeMembershipStatus[] getPassengerInGivenTrip(int TripID) {
+        return logged("getPassengerInGivenTrip", () -> delegate.getPassengerInGivenTrip(TripID));
+    }
+
+    @Override
+    public QueryResult.DriverScoreRatingNumberOfBookingsPIN[] getDriversScores() {
+        return logged("getDriversScores", delegate::getDriversScores);
+    }
+
+    @Override
+    public QueryResult.CityAndAverageDriverRating[] getDriversAverageRatingsToEachDestinatedCity() {
+        return logged("getDriversAverageRatingsToEachDestinatedCity", delegate::getDriversAverageRatingsToEachDestinatedCity);
+    }
+
+    @Override
+    public QueryResult.MembershipStatusAndTotalBookings[] getTotalBookingsEachMembershipStatus() {
+        return logged("getTotalBookingsEachMembershipStatus", delegate::getTotalBookingsEachMembershipStatus);
+    }
+
+    @Override
+    public int updateDriverRatings() {
+        return loggedUpdate("updateDriverRatings", delegate::updateDriverRatings);
+    }
+
+    @Override
+    public Trip[] getTripsFromCity(String city) {
+        return logged("getTripsFromCity", () -> delegate.getTripsFromCity(city));
+    }
+
+    @Override
+    public Trip[] getTripsWithNoBooks() {
+        return logged("getTripsWithNoBooks", delegate::getTripsWithNoBooks);
+    }
+
+    @Override
+    public QueryResult.DriverPINandTripIDandNumberOfBookings[] getTheMostBookedTripsPerDriver() {
+        return logged("getTheMostBookedTripsPerDriver", delegate::getTheMostBookedTripsPerDriver);
+    }
+
+    @Override
+    public QueryResult.FullCars[] getFullCars() {
+        return logged("getFullCars", delegate::getFullCars);
+    }
+
+    // Rows are the length of an array result, the count of an update, or 1 for a single non-null value
+    private <T> T logged(String method, Supplier<T> call) {
+        if (!log.sample()) {
+            return call.get();
+        }
+
+        long thresholdNanos = log.thresholdNanos(method);
+        T result;
+        long nanos;
+        StatementCapture.Session session = StatementCapture.open();
+        PlanCapture planCapture = new PlanCapture(session, thresholdNanos);
+        session.setReleaseListener(planCapture::connectionReleasing);
+        try {
+            result = call.get();
+            nanos = planCapture.elapsedNanos();
+        } finally {
+            session.close();
+        }
+
+        if (nanos > thresholdNanos) {
+            long rows = result == null ? 0
+                    : result instanceof Object[] ? ((Object[]) result).length
+                    : result instanceof Integer ? Math.max(0, (Integer) result)
+                    : 1;
+            log.write(entry(method, nanos, rows, session));
+        }
+        return result;
+    }
+
+    private int loggedUpdate(String method, IntSupplier call) {
+        return logged(method, call::getAsInt);
+    }
+
+    private static String entry(String method, long nanos, long rows, StatementCapture.Session session) {
+        StringBuilder entry = new StringBuilder();
+        entry.append(String.format(Locale.US, "# %s %s %.3f ms, %d rows, thread %s%n",
+                Instant.now(), method, nanos / 1e6, rows, Thread.currentThread().getName()));
+
+        if (session.getStatements().isEmpty()) {
+            entry.append("(no statements captured)").append(System.lineSeparator());
+        }
+        for (StatementCapture.CapturedStatement statement : session.getStatements()) {
+            entry.append("SQL: ").append(statement.getSql()).append(System.lineSeparator());
+            entry.append("Parameters: ").append(formatParameters(statement.getParameters())).append(System.lineSeparator());
+            entry.append("Executions: ").append(statement.getExecutions()).append(System.lineSeparator());
+            entry.append("Plan:").append(System.lineSeparator());
+            for (String line : planOf(statement).split("\r?\n")) {
+                entry.append("    ").append(line).append(System.lineSeparator());
+            }
+        }
+        return entry.append(System.lineSeparator()).toString();
+    }
+
+    private static String formatParameters(Object[] parameters) {
+        StringBuilder text = new StringBuilder("[");
+        for (int i = 0; i < parameters.length; i++) {
+            if (i > 0) {
+                text.append(", ");
+            }
+            Object value = parameters[i];
+            text.append(i + 1).append(": ");
+            if (value == null) {
+                text.append("NULL");
+            } else if (value instanceof CharSequence || value instanceof Date) {
+                text.append('\'').append(value.toString().replace("'", "''")).append('\'');
+            } else {
+                text.append(value);
+            }
+        }
+        return text.append(']').toString();
+    }
+
+    private static String planOf(StatementCapture.CapturedStatement statement) {
+        if (statement.getPlan() != null) {
+            return statement.getPlan();
+        }
+        if (statement.isReleased()) {
+            return "(not explained: the connection went back to the pool before the threshold was reached)";
+        }
+        return explain(statement);
+    }
+
+    private static String explain(StatementCapture.CapturedStatement statement) {
+        Connection connection = statement.getConnection();
+        if (connection == null) {
+            return "(not executed)";
+        }
+
+        String sql = statement.getSql().trim();
+        String keyword = sql.split("\\s+", 2)[0].toUpperCase(Locale.ROOT);
+        String explain;
+        if (keyword.equals("SELECT") || keyword.equals("WITH")) {
+            explain = "EXPLAIN ANALYZE ";
+        } else if (keyword.equals("INSERT") || keyword.equals("UPDATE") || keyword.equals("DELETE") || keyword.equals("MERGE")) {
+            explain = "EXPLAIN ";
+        } else {
+            return "(no plan for " + keyword + " statements)";
+        }
+
+        StringBuilder plan = new StringBuilder();
+        try (PreparedStatement preparedStatement = connection.prepareStatement(explain + sql)) {
+            Object[] parameters = statement.getParameters();
+            for (int i = 0; i < parameters.length; i++) {
+                preparedStatement.setObject(i + 1, parameters[i]);
+            }
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                int columns = resultSet.getMetaData().getColumnCount();
+                while (resultSet.next()) {
+                    for (int column = 1; column <= columns; column++) {
+                        plan.append(column > 1 ? "\t" : "").append(resultSet.getString(column));
+                    }
+                    plan.append('\n');
+                }
+            }
+        } catch (SQLException e) {
+            return "EXPLAIN failed: " + e.getMessage();
+        }
+        return plan.toString();
+    }
+
+    /**
+     * Explains the statements of a call on their connection before it goes back to a pool, if
+     * the call is already over its threshold then. Time spent explaining is left out of the
+     * call's elapsed time.
+     */
+    private static final class PlanCapture {
+        private final StatementCapture.Session session;
+        private final long thresholdNanos;
+        private final long start = System.nanoTime();
+        private long explainNanos;
+
+        PlanCapture(StatementCapture.Session session, long thresholdNanos) {
+            this.session = session;
+            this.thresholdNanos = thresholdNanos;
+        }
+
+        long elapsedNanos() {
+            return System.nanoTime() - start - explainNanos;
+        }
+
+        void connectionReleasing(Connection connection) {
+            if (elapsedNanos() <= thresholdNanos) {
+                return;
+            }
+            long explainStart = System.nanoTime();
+            for (StatementCapture.CapturedStatement statement : session.getStatements()) {
+                if (statement.getConnection() == connection && !statement.isReleased() && statement.getPlan() == null) {
+                    statement.setPlan(explain(statement));
+                }
+            }
+            explainNanos += System.nanoTime() - explainStart;
+        }
+    }
+}
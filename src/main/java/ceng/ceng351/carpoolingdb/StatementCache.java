@@ -0,0 +1,193 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bounded cache of the prepared statements of one connection, keyed by their SQL.
+ *
+ * prepare() hands out the cached statement when there is one, so a repeated query only binds
+ * its parameters and executes. The least recently used statement is closed once more than
+ * maxSize distinct statements are cached. A cache of size 0 prepares and closes every statement,
+ * like plain JDBC code.
+ *
+ * Not thread-safe: like the Connection it belongs to, it is used by one caller at a time.
+ */
+public class StatementCache {
+
+    // Room for all 36 statements of CarPoolingSystem, page queries included, so none is evicted
+    static final int DEFAULT_MAX_SIZE = 64;
+
+    private final Connection connection;
+    private int maxSize;
+
+    // Access order, so the eldest entry is the least recently used statement
+    private final LinkedHashMap<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+    // The values of statements, so release() tells a cached statement in O(1)
+    private final Set<PreparedStatement> cached = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    StatementCache(Connection connection, int maxSize) {
+        this.connection = connection;
+        setMaxSize(maxSize);
+    }
+
+    /**
+     * The cached statement for sql, or a newly prepared one. Pass it back with release() when done.
+     * While a StatementCapture session is open on this thread the statement comes wrapped, so its
+     * parameters and executions are recorded; while a CancellableCall is entered, the call can
+     * cancel it until release().
+     */
+    PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement preparedStatement = statements.get(sql);
+
+        if (preparedStatement != null && !preparedStatement.isClosed()) {
+            hits++;
+        } else {
+            misses++;
+            preparedStatement = connection.prepareStatement(sql);
+            if (maxSize > 0) {
+                PreparedStatement replaced = statements.put(sql, preparedStatement);
+                if (replaced != null) {
+                    cached.remove(replaced);
+                }
+                cached.add(preparedStatement);
+                evictOverflow();
+            }
+        }
+
+        CancellableCall call = CancellableCall.current();
+        if (call != null) {
+            call.started(preparedStatement);
+        }
+        return StatementCapture.wrap(sql, preparedStatement);
+    }
+
+    /**
+     * Ends one use of a statement from prepare(). Cached statements stay open with their
+     * parameters cleared; statements that are not cached are closed. Call it in a finally block,
+     * so a statement that failed is released as well.
+     */
+    void release(PreparedStatement preparedStatement) throws SQLException {
+        preparedStatement = StatementCapture.unwrap(preparedStatement);
+        CancellableCall call = CancellableCall.current();
+        if (call != null) {
+            call.finished(preparedStatement);
+        }
+        if (cached.contains(preparedStatement)) {
+            preparedStatement.clearParameters();
+        } else {
+            preparedStatement.close();
+        }
+    }
+
+    /**
+     * Closes every cached statement, e.g. after the tables they refer to were dropped.
+     */
+    void clear() {
+        for (PreparedStatement preparedStatement : statements.values()) {
+            closeQuietly(preparedStatement);
+        }
+        statements.clear();
+        cached.clear();
+    }
+
+    void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must be >= 0: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        evictOverflow();
+    }
+
+    Stats getStats() {
+        return new Stats(maxSize, statements.size(), hits, misses, evictions);
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, PreparedStatement>> eldest = statements.entrySet().iterator();
+        while (statements.size() > maxSize) {
+            PreparedStatement evicted = eldest.next().getValue();
+            closeQuietly(evicted);
+            cached.remove(evicted);
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement preparedStatement) {
+        try {
+            preparedStatement.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Point-in-time cache metrics.
+     */
+    public static class Stats {
+        private final int maxSize;
+        private final int size;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+
+        public Stats(int maxSize, int size, long hits, long misses, long evictions) {
+            this.maxSize = maxSize;
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0.0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return "StatementCache.Stats{" +
+                    "maxSize=" + maxSize +
+                    ", size=" + size +
+                    ", hits=" + hits +
+                    ", misses=" + misses +
+                    ", evictions=" + evictions +
+                    ", hitRate=" + String.format(Locale.US, "%.3f", getHitRate()) +
+                    '}';
+        }
+    }
+}
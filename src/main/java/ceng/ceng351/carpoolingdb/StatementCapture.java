@@ -0,0 +1,239 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Records which statements a call runs and with which parameters, for SlowQueryLoggingCarPoolingSystem.
+ *
+ * While a Session is open on a thread, StatementCache.prepare() hands out statements wrapped by
+ * wrap(), which note every set*(index, value) call and the parameters of every execution. With no
+ * session open, wrap() returns the statement as it is, so the only cost outside of a session is
+ * a thread local lookup per prepare().
+ *
+ * Code that lends connections out, like PooledCarPoolingSystem, calls releasing() before it takes
+ * one back, so the session can still use that connection for the statements that ran on it.
+ */
+final class StatementCapture {
+
+    private static final ThreadLocal<Session> CURRENT = new ThreadLocal<>();
+
+    // Proxy.newProxyInstance() looks the proxy class up on every call
+    private static final Constructor<?> PROXY_CONSTRUCTOR = proxyConstructor();
+
+    private StatementCapture() {
+    }
+
+    /**
+     * Starts capturing on the current thread. Close the session on the same thread; the session
+     * open before, if any, is current again afterwards.
+     */
+    static Session open() {
+        Session session = new Session(CURRENT.get());
+        CURRENT.set(session);
+        return session;
+    }
+
+    static PreparedStatement wrap(String sql, PreparedStatement preparedStatement) {
+        Session session = CURRENT.get();
+        if (session == null) {
+            return preparedStatement;
+        }
+        CapturedStatement captured = session.statements.computeIfAbsent(sql, CapturedStatement::new);
+        try {
+            return (PreparedStatement) PROXY_CONSTRUCTOR.newInstance(new Recorder(preparedStatement, captured));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Tells the session of the current thread, if any, that connection is about to be handed
+     * back; it must not be used for the captured statements afterwards.
+     */
+    static void releasing(Connection connection) {
+        Session session = CURRENT.get();
+        if (session != null) {
+            session.releasing(connection);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Constructor<?> proxyConstructor() {
+        try {
+            return Proxy.getProxyClass(StatementCapture.class.getClassLoader(), PreparedStatement.class)
+                    .getConstructor(InvocationHandler.class);
+        } catch (NoSuchMethodException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * The statement wrap() was given, or preparedStatement itself if it is not a wrapper.
+     */
+    static PreparedStatement unwrap(PreparedStatement preparedStatement) {
+        if (Proxy.isProxyClass(preparedStatement.getClass())) {
+            InvocationHandler handler = Proxy.getInvocationHandler(preparedStatement);
+            if (handler instanceof Recorder) {
+                return ((Recorder) handler).target;
+            }
+        }
+        return preparedStatement;
+    }
+
+    static final class Session implements AutoCloseable {
+        private final Session previous;
+
+        // By SQL text, in the order first prepared; a statement run many times is one entry
+        private final Map<String, CapturedStatement> statements = new LinkedHashMap<>();
+
+        private Consumer<Connection> releaseListener;
+
+        private Session(Session previous) {
+            this.previous = previous;
+        }
+
+        Collection<CapturedStatement> getStatements() {
+            return statements.values();
+        }
+
+        /**
+         * Called with a connection before it is handed back, while the statements that ran on it
+         * can still be run again there.
+         */
+        void setReleaseListener(Consumer<Connection> releaseListener) {
+            this.releaseListener = releaseListener;
+        }
+
+        private void releasing(Connection connection) {
+            if (releaseListener != null) {
+                releaseListener.accept(connection);
+            }
+            for (CapturedStatement statement : statements.values()) {
+                if (statement.connection == connection) {
+                    statement.released = true;
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * One SQL text run during a session: how often it was executed (or added to a batch), and
+     * the parameters of the last execution, on the connection it ran on. A plan can be attached
+     * while that connection is still held.
+     */
+    static final class CapturedStatement {
+        private final String sql;
+        private Connection connection;
+        private Object[] bound = new Object[0];
+        private Object[] parameters = new Object[0];
+        private int executions;
+        private boolean released;
+        private String plan;
+
+        private CapturedStatement(String sql) {
+            this.sql = sql;
+        }
+
+        String getSql() {
+            return sql;
+        }
+
+        Connection getConnection() {
+            return connection;
+        }
+
+        /**
+         * Parameter values of the last execution; index 0 holds parameter 1.
+         */
+        Object[] getParameters() {
+            return parameters.clone();
+        }
+
+        int getExecutions() {
+            return executions;
+        }
+
+        /**
+         * Whether the connection it ran on was handed back, so getConnection() must not be used.
+         */
+        boolean isReleased() {
+            return released;
+        }
+
+        String getPlan() {
+            return plan;
+        }
+
+        void setPlan(String plan) {
+            this.plan = plan;
+        }
+
+        private void bind(int index, Object value) {
+            if (index > bound.length) {
+                bound = Arrays.copyOf(bound, index);
+            }
+            bound[index - 1] = value;
+        }
+
+        private void executed() {
+            parameters = bound.clone();
+            executions++;
+        }
+    }
+
+    private static final class Recorder implements InvocationHandler {
+        private final PreparedStatement target;
+        private final CapturedStatement captured;
+
+        Recorder(PreparedStatement target, CapturedStatement captured) {
+            this.target = target;
+            this.captured = captured;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                // setNull(index, sqlType) binds no value
+                captured.bind((Integer) args[0], name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("clearParameters")) {
+                captured.bound = new Object[0];
+            } else if (isExecution(name, args)) {
+                if (captured.connection == null) {
+                    captured.connection = target.getConnection();
+                }
+                captured.executed();
+            }
+
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        // executeBatch() runs rows already counted by addBatch()
+        private static boolean isExecution(String name, Object[] args) {
+            if (name.equals("addBatch")) {
+                return args == null || args.length == 0;
+            }
+            return name.startsWith("execute") && !name.endsWith("Batch") && (args == null || args.length == 0);
+        }
+    }
+}
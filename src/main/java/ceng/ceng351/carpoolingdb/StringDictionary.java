@@ -0,0 +1,110 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps the values of a low-cardinality text column to small int codes and back.
+ *
+ * The domain classes keep the code instead of the String, so each distinct city, status, brand
+ * or color exists once in memory and comparing two values is an int comparison. Codes are
+ * handed out in order of first use and stay valid for the lifetime of the JVM; they are not the
+ * codes stored in the database (see DictionaryTable).
+ */
+public final class StringDictionary {
+
+    public static final StringDictionary CITIES = new StringDictionary("cities");
+    public static final StringDictionary BOOKING_STATUSES = new StringDictionary("booking statuses");
+    public static final StringDictionary MEMBERSHIP_STATUSES = new StringDictionary("membership statuses");
+    public static final StringDictionary BRANDS = new StringDictionary("brands");
+    public static final StringDictionary COLORS = new StringDictionary("colors");
+
+    // Code of null
+    public static final int NULL_CODE = -1;
+
+    // Returned by lookup() for values that no column can hold
+    public static final int NO_CODE = -2;
+
+    private final String name;
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+
+    // Replaced, never modified, so decode() needs no lock
+    private volatile String[] values = new String[0];
+
+    public StringDictionary(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Code of value, adding it to the dictionary if it is new.
+     */
+    public int encode(String value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        return add(value);
+    }
+
+    /**
+     * Code of value without adding it: NO_CODE for null or a value that was never encoded, so
+     * that, as in SQL, comparing it with a column matches nothing.
+     */
+    public int lookup(String value) {
+        if (value == null) {
+            return NO_CODE;
+        }
+
+        Integer code = codes.get(value);
+        return code == null ? NO_CODE : code;
+    }
+
+    public String decode(int code) {
+        if (code == NULL_CODE) {
+            return null;
+        }
+
+        String[] current = values;
+        if (code < 0 || code >= current.length) {
+            throw new IllegalArgumentException("Unknown code " + code + " in dictionary of " + name);
+        }
+        return current[code];
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private synchronized int add(String value) {
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+
+        String[] current = values;
+        String[] extended = Arrays.copyOf(current, current.length + 1);
+        extended[current.length] = value;
+
+        // Publish the value before its code, so a code seen by another thread always decodes
+        values = extended;
+        codes.put(value, current.length);
+        return current.length;
+    }
+
+    @Override
+    public String toString() {
+        return "StringDictionary{" +
+                "name='" + name + '\'' +
+                ", size=" + size() +
+                '}';
+    }
+}
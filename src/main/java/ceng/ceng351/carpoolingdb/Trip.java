@@ -1,18 +1,39 @@
 package ceng.ceng351.carpoolingdb;
 
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
 public class Trip {
 
     private int TripID;
     private int CarID;
-    private String date;
-    private String departure;
-    private String destination;
+    private int epochDay;       // days since 1970-01-01, see getDate() for the ISO form
+    private int departure;      // code in StringDictionary.CITIES
+    private int destination;    // code in StringDictionary.CITIES
     private int num_seats_available;
 
+    /**
+     * @param date ISO yyyy-MM-dd date of the trip, which is kept as its epoch day
+     * @throws DateTimeParseException if date is null or not an ISO date
+     */
     public Trip(int TripID, int CarID, String date, String departure, String destination, int num_seats_available) {
+        this(TripID, CarID, (int) parseDate(date).toEpochDay(), departure, destination, num_seats_available);
+    }
+
+    public Trip(int TripID, int CarID, int epochDay, String departure, String destination, int num_seats_available) {
         this.TripID = TripID;
         this.CarID = CarID;
-        this.date = date;
+        this.epochDay = epochDay;
+        this.departure = StringDictionary.CITIES.encode(departure);
+        this.destination = StringDictionary.CITIES.encode(destination);
+        this.num_seats_available = num_seats_available;
+    }
+
+    // departure and destination are codes in StringDictionary.CITIES
+    Trip(int TripID, int CarID, int epochDay, int departure, int destination, int num_seats_available) {
+        this.TripID = TripID;
+        this.CarID = CarID;
+        this.epochDay = epochDay;
         this.departure = departure;
         this.destination = destination;
         this.num_seats_available = num_seats_available;
@@ -35,27 +56,61 @@ public class Trip {
     }
 
     public String getDate() {
-        return date;
+        return getLocalDate().toString();
     }
 
+    /**
+     * @throws DateTimeParseException if date is null or not an ISO yyyy-MM-dd date
+     */
     public void setDate(String date) {
-        this.date = date;
+        this.epochDay = (int) parseDate(date).toEpochDay();
+    }
+
+    /**
+     * LocalDate.parse() that also fails with a DateTimeParseException, not a NullPointerException,
+     * on null, so callers that report bad dates catch a missing one as well.
+     */
+    static LocalDate parseDate(String date) {
+        if (date == null) {
+            throw new DateTimeParseException("Date is null", "", 0);
+        }
+        return LocalDate.parse(date);
+    }
+
+    public LocalDate getLocalDate() {
+        return LocalDate.ofEpochDay(epochDay);
+    }
+
+    public int getEpochDay() {
+        return epochDay;
+    }
+
+    public void setEpochDay(int epochDay) {
+        this.epochDay = epochDay;
     }
   
     public String getDeparture() {
-        return departure;
+        return StringDictionary.CITIES.decode(departure);
     }
   
     public void setDeparture(String departure) {
-        this.departure = departure;
+        this.departure = StringDictionary.CITIES.encode(departure);
+    }
+
+    public int getDepartureCode() {
+        return departure;
     }
   
     public String getDestination() {
-        return destination;
+        return StringDictionary.CITIES.decode(destination);
     }
   
     public void setDestination(String destination) {
-        this.destination = destination;
+        this.destination = StringDictionary.CITIES.encode(destination);
+    }
+
+    public int getDestinationCode() {
+        return destination;
     }
   
     public int getNum_seats_available() {
@@ -71,9 +126,9 @@ public class Trip {
         return "Trip{" +
                 "TripID=" + TripID +
                 ", CarID=" + CarID +
-                ", date='" + date + '\'' +
-                ", departure='" + departure + '\'' +
-                ", destination='" + destination + '\'' +
+                ", date='" + getDate() + '\'' +
+                ", departure='" + getDeparture() + '\'' +
+                ", destination='" + getDestination() + '\'' +
                 ", num_seats_available=" + num_seats_available +
                 '}';
     }
@@ -0,0 +1,281 @@
+package ceng.ceng351.carpoolingdb;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Byte-level reader for the tab-separated data files.
+ *
+ * Lines are located directly in a reusable byte buffer and only the offsets of their fields are
+ * recorded. Numeric fields are decoded from the bytes in place; a String is created only when
+ * getString() is called for a text column.
+ */
+final class TsvReader implements Closeable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    // Powers of ten that are exact doubles, for the fast decimal path in getDouble()
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private final InputStream in;
+
+    private byte[] buffer;
+    private int position;       // start of the next unread line
+    private int limit;          // end of valid bytes in buffer
+    private boolean endOfInput;
+
+    private int[] fieldStarts = new int[8];
+    private int[] fieldEnds = new int[8];
+    private int fieldCount;
+    private int rowStart;
+    private int rowEnd;
+
+    TsvReader(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    TsvReader(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Advances to the next line.
+     *
+     * @return false once the input is exhausted.
+     */
+    boolean nextRow() throws IOException {
+        int newline = indexOfNewline(position);
+
+        while (newline < 0 && !endOfInput) {
+            // Bytes already searched keep their offset from the (new) line start after fill()
+            int searched = limit - position;
+            fill();
+            newline = indexOfNewline(position + searched);
+        }
+
+        if (newline < 0) {
+            // Last line without a trailing newline
+            if (position >= limit) {
+                return false;
+            }
+            newline = limit;
+        }
+
+        rowStart = position;
+        rowEnd = newline;
+        position = newline < limit ? newline + 1 : limit;
+
+        if (rowEnd > rowStart && buffer[rowEnd - 1] == '\r') {
+            rowEnd--;
+        }
+
+        splitFields();
+        return true;
+    }
+
+    int fieldCount() {
+        return fieldCount;
+    }
+
+    int getInt(int field) {
+        int start = fieldStarts[field];
+        int end = fieldEnds[field];
+
+        if (start == end) {
+            throw numberFormat(field);
+        }
+
+        boolean negative = false;
+        int i = start;
+        if (buffer[i] == '-' || buffer[i] == '+') {
+            negative = buffer[i] == '-';
+            if (++i == end) {
+                throw numberFormat(field);
+            }
+        }
+
+        // Accumulate negatively so that Integer.MIN_VALUE parses without overflow
+        int min = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        int result = 0;
+        for (; i < end; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9 || result < min / 10) {
+                throw numberFormat(field);
+            }
+            result *= 10;
+            if (result < min + digit) {
+                throw numberFormat(field);
+            }
+            result -= digit;
+        }
+
+        return negative ? result : -result;
+    }
+
+    double getDouble(int field) {
+        int start = fieldStarts[field];
+        int end = fieldEnds[field];
+
+        // Fast path: [sign] digits [. digits] with a mantissa and scale that are exact as doubles,
+        // so a single correctly rounded division gives the same result as Double.parseDouble
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+            negative = buffer[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean seenPoint = false;
+        boolean simple = i < end;
+
+        for (; i < end && simple; i++) {
+            byte b = buffer[i];
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                if (++digits > 18) {
+                    simple = false;
+                }
+                if (seenPoint) {
+                    scale++;
+                }
+            } else if (b == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                simple = false;
+            }
+        }
+
+        if (simple && digits > 0 && mantissa < MAX_EXACT_MANTISSA && scale < POWERS_OF_TEN.length) {
+            double value = mantissa / POWERS_OF_TEN[scale];
+            return negative ? -value : value;
+        }
+
+        // Exponents, long mantissas, NaN, ...: let the JDK handle them
+        return Double.parseDouble(getString(field));
+    }
+
+    /**
+     * An ISO yyyy-MM-dd date as days since 1970-01-01, decoded without creating a String.
+     */
+    int getEpochDay(int field) {
+        int start = fieldStarts[field];
+
+        if (fieldEnds[field] - start == 10 && buffer[start + 4] == '-' && buffer[start + 7] == '-') {
+            int year = digits(start, 4);
+            int month = digits(start + 5, 2);
+            int day = digits(start + 8, 2);
+            if (year >= 0 && month >= 0 && day >= 0) {
+                // LocalDate.of validates the month and day
+                return (int) LocalDate.of(year, month, day).toEpochDay();
+            }
+        }
+
+        // Other formats: let the JDK handle them (and report them)
+        return (int) LocalDate.parse(getString(field)).toEpochDay();
+    }
+
+    String getString(int field) {
+        return new String(buffer, fieldStarts[field], fieldEnds[field] - fieldStarts[field], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The current line as text, for error messages.
+     */
+    String rowText() {
+        return new String(buffer, rowStart, rowEnd - rowStart, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // Value of count decimal digits at offset, or -1 if one of them is not a digit
+    private int digits(int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private int indexOfNewline(int from) {
+        for (int i = from; i < limit; i++) {
+            if (buffer[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Moves the unread tail to the front of the buffer (growing it for very long lines) and reads more
+    private void fill() throws IOException {
+        int remaining = limit - position;
+
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+        } else if (remaining == buffer.length) {
+            byte[] larger = new byte[buffer.length * 2];
+            System.arraycopy(buffer, 0, larger, 0, remaining);
+            buffer = larger;
+        }
+        position = 0;
+        limit = remaining;
+
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            endOfInput = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    private void splitFields() {
+        fieldCount = 0;
+        int start = rowStart;
+
+        for (int i = rowStart; i <= rowEnd; i++) {
+            if (i == rowEnd || buffer[i] == '\t') {
+                if (fieldCount == fieldStarts.length) {
+                    int[] starts = new int[fieldCount * 2];
+                    int[] ends = new int[fieldCount * 2];
+                    System.arraycopy(fieldStarts, 0, starts, 0, fieldCount);
+                    System.arraycopy(fieldEnds, 0, ends, 0, fieldCount);
+                    fieldStarts = starts;
+                    fieldEnds = ends;
+                }
+                fieldStarts[fieldCount] = start;
+                fieldEnds[fieldCount] = i;
+                fieldCount++;
+                start = i + 1;
+            }
+        }
+
+        // Same field count as String.split("\t"): trailing empty fields are dropped
+        if (fieldCount > 1) {
+            while (fieldCount > 0 && fieldStarts[fieldCount - 1] == fieldEnds[fieldCount - 1]) {
+                fieldCount--;
+            }
+        }
+    }
+
+    private NumberFormatException numberFormat(int field) {
+        return new NumberFormatException("For input string: \"" + getString(field) + "\"");
+    }
+}
@@ -0,0 +1,125 @@
+package ceng.ceng351.carpoolingdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class AgeByDateIndexTest {
+
+    private static final double DELTA = 1e-9;
+
+    private AgeByDateIndex index;
+
+    @Before
+    public void setUp() {
+        index = new AgeByDateIndex();
+        index.addParticipants(new Participant[]{
+                new Participant(1, "A", 20),
+                new Participant(2, "B", 40),
+                new Participant(3, "C", 60)
+        }, 3);
+    }
+
+    @Test
+    public void noBookingsIsNull() {
+        addTrip(1, "Chicago", 100);
+
+        assertNull(index.averageAge("Chicago", 0, 1000));
+        assertNull(index.averageAge("Nowhere", 0, 1000));
+    }
+
+    @Test
+    public void onlyConfirmedBookingsCount() {
+        addTrip(1, "Chicago", 100);
+        index.addBookings(new Booking[]{
+                new Booking(1, 1, "Confirmed"),
+                new Booking(1, 2, "Cancelled"),
+                new Booking(1, 3, "Pending")
+        }, 3);
+
+        assertEquals(20.0, index.averageAge("Chicago", 100, 100), DELTA);
+    }
+
+    @Test
+    public void rangeGrowsToTheRight() {
+        addTrip(1, "Chicago", 0);
+        confirm(1, 1);
+        // Far past the first 64 days, so the trees are rebuilt around both
+        addTrip(2, "Chicago", 5_000);
+        confirm(2, 3);
+
+        assertEquals(20.0, index.averageAge("Chicago", 0, 0), DELTA);
+        assertEquals(60.0, index.averageAge("Chicago", 1, 5_000), DELTA);
+        assertEquals(40.0, index.averageAge("Chicago", -10, 10_000), DELTA);
+        assertNull(index.averageAge("Chicago", 5_001, 10_000));
+    }
+
+    @Test
+    public void rangeGrowsToTheLeftIntoNegativeDays() {
+        addTrip(1, "Chicago", 1_000);
+        confirm(1, 3);
+        // Before 1970-01-01, so the epoch day is negative
+        addTrip(2, "Chicago", -3_000);
+        confirm(2, 1);
+        addTrip(3, "Chicago", -3_001);
+        confirm(3, 2);
+
+        assertEquals(60.0, index.averageAge("Chicago", 1_000, 1_000), DELTA);
+        assertEquals(20.0, index.averageAge("Chicago", -3_000, -3_000), DELTA);
+        assertEquals(30.0, index.averageAge("Chicago", -5_000, 0), DELTA);
+        assertEquals(40.0, index.averageAge("Chicago", -3_001, 1_000), DELTA);
+        assertNull(index.averageAge("Chicago", -2_999, 999));
+    }
+
+    @Test
+    public void growsBothWaysAndKeepsEarlierTotals() {
+        int[] days = {0, 63, -1, 64, -200, 1_000, -70_000, 70_000};
+        long ageSum = 0;
+        for (int i = 0; i < days.length; i++) {
+            int pin = i % 3 + 1;
+            addTrip(i + 1, "Chicago", days[i]);
+            confirm(i + 1, pin);
+            ageSum += pin * 20;
+
+            // Every day added so far is still counted, however the range grew since
+            for (int j = 0; j <= i; j++) {
+                assertEquals((j % 3 + 1) * 20.0, index.averageAge("Chicago", days[j], days[j]), DELTA);
+            }
+            assertEquals((double) ageSum / (i + 1),
+                    index.averageAge("Chicago", Integer.MIN_VALUE / 2, Integer.MAX_VALUE / 2), DELTA);
+        }
+    }
+
+    @Test
+    public void citiesAreKeptApart() {
+        addTrip(1, "Chicago", 10);
+        addTrip(2, "Seattle", 10);
+        confirm(1, 1);
+        confirm(2, 3);
+
+        assertEquals(20.0, index.averageAge("Chicago", 0, 20), DELTA);
+        assertEquals(60.0, index.averageAge("Seattle", 0, 20), DELTA);
+    }
+
+    @Test
+    public void clearForgetsEverything() {
+        addTrip(1, "Chicago", 10);
+        confirm(1, 1);
+        index.clear();
+
+        assertNull(index.averageAge("Chicago", 0, 20));
+        // Bookings of trips and participants it no longer knows are skipped
+        confirm(1, 1);
+        assertNull(index.averageAge("Chicago", 0, 20));
+    }
+
+    private void addTrip(int tripId, String departure, int epochDay) {
+        index.addTrips(new Trip[]{new Trip(tripId, 1, epochDay, departure, "Boston", 3)}, 1);
+    }
+
+    private void confirm(int tripId, int pin) {
+        index.addBookings(new Booking[]{new Booking(tripId, pin, "Confirmed")}, 1);
+    }
+}
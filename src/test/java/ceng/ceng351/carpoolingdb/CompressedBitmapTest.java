@@ -0,0 +1,118 @@
+package ceng.ceng351.carpoolingdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CompressedBitmapTest {
+
+    // Values per container before it turns from a sorted array into a bitmap
+    private static final int ARRAY_CONTAINER_MAX = 4096;
+
+    @Test
+    public void emptyBitmap() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+
+        assertTrue(bitmap.isEmpty());
+        assertEquals(0, bitmap.getCardinality());
+        assertFalse(bitmap.contains(0));
+        assertTrue(bitmap.isSubsetOf(new CompressedBitmap()));
+    }
+
+    @Test
+    public void addReportsDuplicates() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+
+        assertTrue(bitmap.add(5));
+        assertFalse(bitmap.add(5));
+        assertEquals(1, bitmap.getCardinality());
+    }
+
+    @Test
+    public void arrayContainerTurnsIntoBitmapPastItsLimit() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        // Every other value, added from the top down so each one is inserted at the front
+        for (int i = ARRAY_CONTAINER_MAX; i >= 0; i--) {
+            assertTrue(bitmap.add(i * 2));
+        }
+
+        assertEquals(ARRAY_CONTAINER_MAX + 1, bitmap.getCardinality());
+        for (int i = 0; i <= ARRAY_CONTAINER_MAX; i++) {
+            assertTrue(bitmap.contains(i * 2));
+            assertFalse(bitmap.contains(i * 2 + 1));
+        }
+
+        // Duplicates are still told apart once the container is a bitmap
+        assertFalse(bitmap.add(0));
+        assertFalse(bitmap.add(ARRAY_CONTAINER_MAX * 2));
+        assertEquals(ARRAY_CONTAINER_MAX + 1, bitmap.getCardinality());
+    }
+
+    @Test
+    public void containersAreKeptApartByHighBits() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        int[] values = {70_000, 3, 1 << 20, -1, Integer.MIN_VALUE, 65_535, 65_536};
+        for (int value : values) {
+            assertTrue(bitmap.add(value));
+        }
+
+        assertEquals(values.length, bitmap.getCardinality());
+        for (int value : values) {
+            assertTrue(bitmap.contains(value));
+        }
+        assertFalse(bitmap.contains(70_000 + 65_536));
+        assertFalse(bitmap.contains(4));
+    }
+
+    @Test
+    public void subsetAcrossContainerKinds() {
+        CompressedBitmap dense = new CompressedBitmap();
+        for (int i = 0; i <= ARRAY_CONTAINER_MAX * 2; i++) {
+            dense.add(i);
+        }
+        CompressedBitmap sparse = new CompressedBitmap();
+        sparse.add(10);
+        sparse.add(ARRAY_CONTAINER_MAX * 2);
+
+        // Array in bitmap, and bitmap not in array
+        assertTrue(sparse.isSubsetOf(dense));
+        assertFalse(dense.isSubsetOf(sparse));
+
+        // Bitmap in bitmap
+        CompressedBitmap denseEvens = new CompressedBitmap();
+        for (int i = 0; i <= ARRAY_CONTAINER_MAX * 2; i += 2) {
+            denseEvens.add(i);
+        }
+        assertTrue(denseEvens.isSubsetOf(dense));
+        assertFalse(dense.isSubsetOf(denseEvens));
+
+        // Bitmap in array: the array side holds all of the bitmap's values but one
+        CompressedBitmap almost = new CompressedBitmap();
+        for (int i = 0; i < ARRAY_CONTAINER_MAX; i++) {
+            almost.add(i);
+        }
+        CompressedBitmap justOver = new CompressedBitmap();
+        for (int i = 0; i <= ARRAY_CONTAINER_MAX; i++) {
+            justOver.add(i);
+        }
+        assertTrue(almost.isSubsetOf(justOver));
+        assertFalse(justOver.isSubsetOf(almost));
+    }
+
+    @Test
+    public void subsetNeedsEveryContainer() {
+        CompressedBitmap small = new CompressedBitmap();
+        small.add(1);
+        small.add(1 << 16);
+        CompressedBitmap large = new CompressedBitmap();
+        large.add(1);
+        large.add(2);
+        large.add(3);
+
+        assertFalse(small.isSubsetOf(large));
+        large.add(1 << 16);
+        assertTrue(small.isSubsetOf(large));
+    }
+}
@@ -0,0 +1,92 @@
+package ceng.ceng351.carpoolingdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Test;
+
+public class KeyIndexTest {
+
+    @Test
+    public void missingKeyIsNotFound() {
+        KeyIndex index = new KeyIndex();
+        assertEquals(KeyIndex.NOT_FOUND, index.get(42));
+
+        index.put(42, 0);
+        assertEquals(0, index.get(42));
+        assertEquals(KeyIndex.NOT_FOUND, index.get(43));
+    }
+
+    @Test
+    public void putReplacesExistingMapping() {
+        KeyIndex index = new KeyIndex();
+        index.put(7, 1);
+        index.put(7, 2);
+
+        assertEquals(2, index.get(7));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void keepsEveryMappingAcrossRehashes() {
+        // Starts at 16 slots and doubles at half load, so this rehashes about a dozen times
+        KeyIndex index = new KeyIndex();
+        int count = 50_000;
+        for (int i = 0; i < count; i++) {
+            index.put(i * 31L - 1000, i);
+        }
+
+        assertEquals(count, index.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, index.get(i * 31L - 1000));
+        }
+        assertEquals(KeyIndex.NOT_FOUND, index.get(-1001));
+    }
+
+    @Test
+    public void presizedIndexHoldsMoreThanExpected() {
+        KeyIndex index = new KeyIndex(3);
+        for (int i = 0; i < 100; i++) {
+            index.put(KeyIndex.key(i, -i), i);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, index.get(KeyIndex.key(i, -i)));
+        }
+    }
+
+    @Test
+    public void compositeKeysKeepBothHalves() {
+        KeyIndex index = new KeyIndex();
+        index.put(KeyIndex.key(1, 2), 0);
+        index.put(KeyIndex.key(2, 1), 1);
+        index.put(KeyIndex.key(1, -1), 2);
+
+        assertEquals(0, index.get(KeyIndex.key(1, 2)));
+        assertEquals(1, index.get(KeyIndex.key(2, 1)));
+        assertEquals(2, index.get(KeyIndex.key(1, -1)));
+        assertEquals(KeyIndex.NOT_FOUND, index.get(KeyIndex.key(0, -1)));
+    }
+
+    @Test
+    public void clearEmptiesAndAllowsReuse() {
+        KeyIndex index = new KeyIndex();
+        for (int i = 0; i < 1000; i++) {
+            index.put(i, i);
+        }
+        index.clear();
+
+        assertEquals(0, index.size());
+        assertEquals(KeyIndex.NOT_FOUND, index.get(5));
+
+        index.put(5, 9);
+        assertEquals(9, index.get(5));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void rejectsNegativeValues() {
+        KeyIndex index = new KeyIndex();
+        assertThrows(IllegalArgumentException.class, () -> index.put(1, KeyIndex.NOT_FOUND));
+    }
+}